@@ -19,7 +19,29 @@ import org.apache.hadoop.conf.Configuration;
 public class OctopusConfiguration extends Configuration {
     public static final String MASTER_SERVER_ADDRESS = "master.server.address";
     public static final String MASTER_SESSION_MAX = "master.session.max";
+    public static final String MASTER_SESSION_MODE = "master.session.mode";
+    public static final String MASTER_SESSION_SELECTOR_COUNT = "master.session.selector.count";
+    public static final String MASTER_SESSION_SEND_BUFFER_SIZE = "master.session.sendbuffer.size";
+    public static final String MASTER_SESSION_RECV_BUFFER_SIZE = "master.session.recvbuffer.size";
+    public static final String MASTER_SESSION_FLUSH_INTERVAL = "master.session.flush.interval";
+    public static final String MASTER_SESSION_TCP_NODELAY = "master.session.tcp.nodelay";
+    public static final String MASTER_SESSION_SOCKET_SNDBUF = "master.session.socket.sndbuf";
+    public static final String MASTER_SESSION_SOCKET_RCVBUF = "master.session.socket.rcvbuf";
+    public static final String MASTER_SESSION_COPY_CHUNK_SIZE = "master.session.copy.chunk.size";
     public static final String MASTER_CONNECTION_POOL_MAX = "master.connection.pool.max";
+    public static final String MASTER_CONNECTION_POOL_MAX_IDLE = "master.connection.pool.max.idle";
+    public static final String MASTER_CONNECTION_POOL_MIN_IDLE = "master.connection.pool.min.idle";
+    public static final String MASTER_CONNECTION_POOL_MAX_WAIT = "master.connection.pool.max.wait";
+    public static final String MASTER_CONNECTION_POOL_VALIDATION_INTERVAL = "master.connection.pool.validation.interval";
+    public static final String MASTER_CONNECTION_POOL_STATEMENT_CACHE_SIZE = "master.connection.pool.statement.cache.size";
+    public static final String MASTER_COPY_FROM_BATCH_SIZE = "master.copy.from.batch.size";
+    public static final String MASTER_COPY_FROM_COMMIT_INTERVAL = "master.copy.from.commit.interval";
+    public static final String MASTER_PLAN_CACHE_SIZE = "master.plan.cache.size";
+    public static final String MASTER_BYPASS_FETCH_SIZE = "master.bypass.fetch.size";
+    public static final String MASTER_BYPASS_PIPELINE_DEPTH = "master.bypass.pipeline.depth";
+    public static final String MASTER_BYPASS_PIPELINE_THREADS = "master.bypass.pipeline.threads";
+    public static final String MASTER_BYPASS_SPOOL_DIR = "master.bypass.spool.dir";
+    public static final String MASTER_BYPASS_SPOOL_MAX_SIZE = "master.bypass.spool.max.size";
     public static final String METASTORE_CLASS = "metastore.class";
 
     static {
@@ -25,6 +25,7 @@ ddlStmts
 ddlStmt
     : parameterSet
     | alterSystem
+    | alterDataSource
     | createUser
     | alterUser
     | dropUser
@@ -88,6 +89,18 @@ dropDataSourceClause
     : K_DROP K_DATASOURCE dataSourceName
     ;
 
+alterDataSource
+    : K_ALTER K_DATASOURCE dataSourceName K_SET K_POOL poolOption ( ',' poolOption )*
+    ;
+
+poolOption
+    : poolOptionName ( K_TO | '=' ) ( NUMERIC_LITERAL | K_DEFAULT )
+    ;
+
+poolOptionName
+    : IDENTIFIER
+    ;
+
 dataSourceName
     : IDENTIFIER
     ;
@@ -169,6 +182,7 @@ systemPrivileges
 systemPrivilege
     : K_ALTER K_SYSTEM                      # SysPrivAlterSystem
     | K_SELECT K_ANY K_TABLE                # SysPrivSelectAnyTable
+    | K_INSERT K_ANY K_TABLE                # SysPrivInsertAnyTable
     | K_CREATE K_USER                       # SysPrivCreateUser
     | K_ALTER K_USER                        # SysPrivAlterUser
     | K_DROP K_USER                         # SysPrivDropUser
@@ -185,6 +199,7 @@ objectPrivileges
 
 objectPrivilege
     : K_SELECT                  # ObjPrivSelect
+    | K_INSERT                  # ObjPrivInsert
     | K_COMMENT                 # ObjPrivComment
     | K_ALL ( K_PRIVILEGES )?   # ObjPrivAllPrivs
     ;
@@ -322,6 +337,7 @@ K_FOR : F O R ;
 K_FROM : F R O M ;
 K_GRANT : G R A N T ;
 K_IDENTIFIED : I D E N T I F I E D ;
+K_INSERT : I N S E R T ;
 K_IS : I S ;
 K_ISOLATION : I S O L A T I O N ;
 K_LEVEL : L E V E L ;
@@ -330,6 +346,7 @@ K_OBJECT : O B J E C T ;
 K_OFF : O F F ;
 K_ON : O N ;
 K_ONLY : O N L Y ;
+K_POOL : P O O L ;
 K_PRIVILEGE : P R I V I L E G E ;
 K_PRIVILEGES : P R I V I L E G E S ;
 K_READ : R E A D ;
@@ -0,0 +1,94 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.engine;
+
+import org.apache.calcite.sql.SqlDialect;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.util.SqlShuttle;
+
+/*
+ * Where and how a validated query is executed. It is computed once per
+ * CachedStatement and reused by every Bind until the schema changes.
+ */
+final class ByPassQuery {
+    private final String dataSourceName;
+    private final boolean hive;
+    private final String queryString;
+    private final ResultStreaming streaming;
+    private final long schemaVersion;
+
+    private ByPassQuery(String dataSourceName, boolean hive, String queryString,
+                        ResultStreaming streaming, long schemaVersion) {
+        this.dataSourceName = dataSourceName;
+        this.hive = hive;
+        this.queryString = queryString;
+        this.streaming = streaming;
+        this.schemaVersion = schemaVersion;
+    }
+
+    /*
+     * Complex or MetaModel queries are processed by Calcite via Avatica JDBC driver.
+     * So they are not converted to DSN form.
+     */
+    static ByPassQuery ofCalcite(SqlNode validatedQuery, long schemaVersion) {
+        SqlDialect dialect = SqlDialect.DatabaseProduct.POSTGRESQL.getDialect();
+        String sql = validatedQuery.toSqlString(dialect).getSql();
+        return new ByPassQuery(null, false, sql, ResultStreaming.DEFAULT, schemaVersion);
+    }
+
+    static ByPassQuery ofDataSource(SqlNode validatedQuery, String dataSourceName,
+                                    String connectionString, long schemaVersion) {
+        /*
+         * NOTE: Deep-copy validatedQuery because TableNameTranslator.toDSN()
+         *       changes identifiers of validatedQuery itself and
+         *       validatedQuery may be shared through the plan cache.
+         */
+        SqlNode cloned = validatedQuery.accept(new SqlShuttle() {
+            @Override
+            public SqlNode visit(SqlIdentifier id) {
+                return id.clone(id.getParserPosition());
+            }
+        });
+        TableNameTranslator.toDSN(cloned);
+        boolean hive = connectionString.startsWith("jdbc:hive2:");
+        SqlDialect.DatabaseProduct dp = hive
+                ? SqlDialect.DatabaseProduct.HIVE : SqlDialect.DatabaseProduct.POSTGRESQL;
+        String sql = cloned.toSqlString(dp.getDialect()).getSql();
+        return new ByPassQuery(dataSourceName, hive, sql,
+                ResultStreaming.of(connectionString), schemaVersion);
+    }
+
+    // null if the query is processed by Calcite
+    String getDataSourceName() {
+        return dataSourceName;
+    }
+
+    boolean isHive() {
+        return hive;
+    }
+
+    String getQueryString() {
+        return queryString;
+    }
+
+    ResultStreaming getStreaming() {
+        return streaming;
+    }
+
+    long getSchemaVersion() {
+        return schemaVersion;
+    }
+}
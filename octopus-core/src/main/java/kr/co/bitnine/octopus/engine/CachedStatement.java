@@ -15,12 +15,27 @@
 package kr.co.bitnine.octopus.engine;
 
 import kr.co.bitnine.octopus.postgres.access.common.TupleDesc;
+import kr.co.bitnine.octopus.postgres.catalog.PostgresAttribute;
 import kr.co.bitnine.octopus.postgres.catalog.PostgresType;
+import kr.co.bitnine.octopus.postgres.commands.CopyOptions;
 import kr.co.bitnine.octopus.postgres.utils.PostgresException;
+import kr.co.bitnine.octopus.postgres.utils.adt.FormatCode;
 import kr.co.bitnine.octopus.postgres.utils.cache.CachedQuery;
 import kr.co.bitnine.octopus.sql.OctopusSqlCommand;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlJoin;
+import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlNodeList;
+import org.apache.calcite.sql.SqlOrderBy;
+import org.apache.calcite.sql.SqlSelect;
+import org.apache.calcite.sql.type.SqlTypeName;
 
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.util.List;
 
 public final class CachedStatement extends CachedQuery {
@@ -28,9 +43,19 @@ public final class CachedStatement extends CachedQuery {
     private final SqlNode validatedQuery;
     private List<OctopusSqlCommand> ddlCommands;
     private final TupleDesc tupDesc;
-    private final String commandTag;
+    private String commandTag;
+    private CopyOptions copyOptions;
+    private boolean copyFrom;
+    private RelDataType rowType;
+    private PostgresAttribute[] resultAttrs;
+    // result columns which are plain column references
+    private boolean[] plainColumns;
+    private LiteralNormalizer literals;
+    private QueryAnalysis analysis;
+    private ByPassQuery byPassQuery;
 
-    public CachedStatement(SqlNode validatedQuery, String queryString, PostgresType[] paramTypes) {
+    public CachedStatement(SqlNode validatedQuery, QueryAnalysis analysis,
+                           String queryString, PostgresType[] paramTypes) {
         super(queryString, paramTypes);
 
         isDdl = false;
@@ -38,6 +63,7 @@ public final class CachedStatement extends CachedQuery {
         ddlCommands = null;
         tupDesc = null;
         commandTag = "SELECT";
+        this.analysis = analysis;
     }
 
     public CachedStatement(List<OctopusSqlCommand> commands, TupleDesc tupDesc) {
@@ -67,9 +93,209 @@ public final class CachedStatement extends CachedQuery {
         return commandTag;
     }
 
+    // COPY (query) TO STDOUT
+    void setCopyTo(CopyOptions options) {
+        assert !isDdl;
+
+        copyOptions = options;
+        commandTag = "COPY";
+    }
+
+    // COPY table FROM STDIN, validatedQuery selects the target columns
+    void setCopyFrom(CopyOptions options) {
+        assert !isDdl;
+
+        copyOptions = options;
+        copyFrom = true;
+        analysis = analysis.forInsert();
+        commandTag = "COPY";
+    }
+
+    @Override
+    public CopyOptions getCopyOptions() {
+        return copyOptions;
+    }
+
+    @Override
+    public boolean isCopyFrom() {
+        return copyFrom;
+    }
+
+    // row type of validatedQuery
+    RelDataType getRowType() {
+        return rowType;
+    }
+
+    void setRowType(RelDataType rowType) {
+        this.rowType = rowType;
+    }
+
+    /*
+     * Columns of the result derived from rowType, which comes from column
+     * types in the metastore. Describe uses them instead of running the
+     * query and the data source's result is converted to them. Only plain
+     * column references are known to have these types in the data source;
+     * see isRowTypeExact().
+     */
+    PostgresAttribute[] getResultAttributes() {
+        if (resultAttrs != null)
+            return resultAttrs;
+
+        List<RelDataTypeField> fields = rowType.getFieldList();
+        PostgresAttribute[] attrs = new PostgresAttribute[fields.size()];
+        for (int i = 0; i < attrs.length; i++) {
+            RelDataTypeField field = fields.get(i);
+            RelDataType type = field.getType();
+            PostgresType pgType = TypeInfo.postgresTypeOfSqlType(type.getSqlTypeName());
+            int typeInfo = -1;
+            if (pgType == PostgresType.VARCHAR && type.getPrecision() != RelDataType.PRECISION_NOT_SPECIFIED)
+                typeInfo = type.getPrecision();
+            attrs[i] = new PostgresAttribute(field.getName(), pgType, typeInfo);
+        }
+        resultAttrs = attrs;
+        return resultAttrs;
+    }
+
+    // computed columns take the type the data source returns
+    PostgresAttribute[] getResultAttributes(ResultSetMetaData rsmd) throws SQLException {
+        PostgresAttribute[] attrs = getResultAttributes().clone();
+        boolean[] plain = getPlainColumns();
+        for (int i = 0; i < attrs.length; i++) {
+            if (plain[i])
+                continue;
+
+            SqlTypeName sqlType = SqlTypeName.getNameForJdbcType(rsmd.getColumnType(i + 1));
+            PostgresType pgType = sqlType == null ? PostgresType.VARCHAR : TypeInfo.postgresTypeOfSqlType(sqlType);
+            int typeInfo = -1;
+            if (pgType == PostgresType.VARCHAR)
+                typeInfo = rsmd.getColumnDisplaySize(i + 1);
+            attrs[i] = new PostgresAttribute(attrs[i].getName(), pgType, typeInfo);
+        }
+        return attrs;
+    }
+
+    /*
+     * Whether a data source returns every column with the type in rowType.
+     * Types of computed columns are inferred by Calcite and may differ
+     * from what the data source returns, e.g. AVG and SUM of an INTEGER
+     * column are INTEGER in Calcite but not in PostgreSQL.
+     */
+    boolean isRowTypeExact() {
+        for (boolean plain : getPlainColumns()) {
+            if (!plain)
+                return false;
+        }
+        return true;
+    }
+
+    private boolean[] getPlainColumns() {
+        if (plainColumns != null)
+            return plainColumns;
+
+        boolean[] plain = new boolean[rowType.getFieldCount()];
+        SqlNode query = validatedQuery;
+        if (query instanceof SqlOrderBy)
+            query = ((SqlOrderBy) query).query;
+        // columns of a subquery in FROM may be computed
+        if (query instanceof SqlSelect && isTableRef(((SqlSelect) query).getFrom())) {
+            SqlNodeList selectList = ((SqlSelect) query).getSelectList();
+            if (selectList != null && selectList.size() == plain.length) {
+                for (int i = 0; i < plain.length; i++) {
+                    SqlNode item = selectList.get(i);
+                    if (item.getKind() == SqlKind.AS)
+                        item = ((SqlCall) item).operand(0);
+                    plain[i] = item instanceof SqlIdentifier;
+                }
+            }
+        }
+        plainColumns = plain;
+        return plainColumns;
+    }
+
+    private static boolean isTableRef(SqlNode from) {
+        if (from == null)
+            return false;
+        if (from.getKind() == SqlKind.AS)
+            return isTableRef(((SqlCall) from).operand(0));
+        if (from instanceof SqlJoin) {
+            SqlJoin join = (SqlJoin) from;
+            return isTableRef(join.getLeft()) && isTableRef(join.getRight());
+        }
+        return from instanceof SqlIdentifier;
+    }
+
+    // validatedQuery is the normalized query, literals are bound as parameters
+    void setLiterals(LiteralNormalizer literals) {
+        this.literals = literals;
+    }
+
+    QueryAnalysis getAnalysis() {
+        return analysis;
+    }
+
+    // resolved by the first Bind
+    ByPassQuery getByPassQuery() {
+        return byPassQuery;
+    }
+
+    void setByPassQuery(ByPassQuery byPassQuery) {
+        this.byPassQuery = byPassQuery;
+    }
+
+    // types of all parameters of validatedQuery including hidden literals
+    PostgresType[] getBindParamTypes() {
+        return literals == null ? getParamTypes() : literals.getBindParamTypes();
+    }
+
+    FormatCode[] getBindParamFormats(FormatCode[] paramFormats) {
+        if (literals == null)
+            return paramFormats;
+
+        boolean[] slots = literals.getLiteralSlots();
+        FormatCode[] formats = new FormatCode[slots.length];
+        int p = 0;
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i]) {
+                formats[i] = FormatCode.TEXT;
+            } else {
+                // no format means all text and a single format applies to all
+                if (paramFormats.length == 0)
+                    formats[i] = FormatCode.TEXT;
+                else if (paramFormats.length == 1)
+                    formats[i] = paramFormats[0];
+                else
+                    formats[i] = paramFormats[p];
+                p++;
+            }
+        }
+        return formats;
+    }
+
+    byte[][] getBindParamValues(byte[][] paramValues) {
+        if (literals == null)
+            return paramValues;
+
+        boolean[] slots = literals.getLiteralSlots();
+        byte[][] literalValues = literals.getLiteralValues();
+        byte[][] values = new byte[slots.length][];
+        int p = 0;
+        int l = 0;
+        for (int i = 0; i < slots.length; i++)
+            values[i] = slots[i] ? literalValues[l++] : paramValues[p++];
+        return values;
+    }
+
     @Override
     public TupleDesc describe() throws PostgresException {
-        return tupDesc;
+        if (isDdl)
+            return tupDesc;
+
+        // computed columns are described by the portal after it runs the query
+        if (!isRowTypeExact())
+            return null;
+
+        // result formats are not known until Bind
+        return new TupleDesc(getResultAttributes(), new FormatCode[0]);
     }
 
     @Override
@@ -0,0 +1,252 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.engine;
+
+import kr.co.bitnine.octopus.postgres.catalog.PostgresType;
+import kr.co.bitnine.octopus.postgres.libpq.MessageStream;
+import kr.co.bitnine.octopus.postgres.utils.PostgresErrorData;
+import kr.co.bitnine.octopus.postgres.utils.PostgresException;
+import kr.co.bitnine.octopus.postgres.utils.PostgresSQLState;
+import kr.co.bitnine.octopus.postgres.utils.PostgresSeverity;
+import kr.co.bitnine.octopus.postgres.utils.adt.FormatCode;
+import kr.co.bitnine.octopus.postgres.utils.adt.IoFunction;
+import kr.co.bitnine.octopus.postgres.utils.adt.IoFunctions;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/*
+ * Reads a column of the current row of a ResultSet and writes its value
+ * into the DataRow message being built. A ColumnWriter is made once for
+ * each column, so primitive values are encoded without boxing and without
+ * looking up IoFunction for every value.
+ */
+abstract class ColumnWriter {
+    // -1 indicates a NULL column value
+    private static final int NULL_LENGTH = -1;
+
+    abstract void write(ResultSet rs, int column, MessageStream out) throws SQLException, IOException;
+
+    static ColumnWriter of(PostgresType type, FormatCode format) throws PostgresException {
+        boolean text = format == FormatCode.TEXT;
+        switch (type) {
+        case INT4:
+            return text ? new Int4Text() : new Int4Binary();
+        case INT8:
+            return text ? new Int8Text() : new Int8Binary();
+        case FLOAT4:
+            return text ? new Float4Text() : new Float4Binary();
+        case FLOAT8:
+            return text ? new Float8Text() : new Float8Binary();
+        case VARCHAR:
+            return new Varchar();
+        case NUMERIC:
+        case DATE:
+        case TIMESTAMP:
+            return new Generic(type, IoFunctions.ofType(type), text);
+        default:
+            PostgresErrorData edata = new PostgresErrorData(
+                    PostgresSeverity.ERROR,
+                    PostgresSQLState.FEATURE_NOT_SUPPORTED,
+                    "currently data type " + type.name() + " is not supported");
+            throw new PostgresException(edata);
+        }
+    }
+
+    private static final class Int4Text extends ColumnWriter {
+        private final byte[] digits = new byte[20];
+
+        @Override
+        void write(ResultSet rs, int column, MessageStream out) throws SQLException, IOException {
+            int v = rs.getInt(column);
+            if (rs.wasNull())
+                out.writeInt(NULL_LENGTH);
+            else
+                writeDecimal(v, digits, out);
+        }
+    }
+
+    private static final class Int4Binary extends ColumnWriter {
+        @Override
+        void write(ResultSet rs, int column, MessageStream out) throws SQLException, IOException {
+            int v = rs.getInt(column);
+            if (rs.wasNull()) {
+                out.writeInt(NULL_LENGTH);
+            } else {
+                out.writeInt(Integer.SIZE / Byte.SIZE);
+                out.writeInt(v);
+            }
+        }
+    }
+
+    private static final class Int8Text extends ColumnWriter {
+        private final byte[] digits = new byte[20];
+
+        @Override
+        void write(ResultSet rs, int column, MessageStream out) throws SQLException, IOException {
+            long v = rs.getLong(column);
+            if (rs.wasNull())
+                out.writeInt(NULL_LENGTH);
+            else
+                writeDecimal(v, digits, out);
+        }
+    }
+
+    private static final class Int8Binary extends ColumnWriter {
+        @Override
+        void write(ResultSet rs, int column, MessageStream out) throws SQLException, IOException {
+            long v = rs.getLong(column);
+            if (rs.wasNull()) {
+                out.writeInt(NULL_LENGTH);
+            } else {
+                out.writeInt(Long.SIZE / Byte.SIZE);
+                out.writeLong(v);
+            }
+        }
+    }
+
+    private static final class Float4Text extends ColumnWriter {
+        private final byte[] chars = new byte[32];
+
+        @Override
+        void write(ResultSet rs, int column, MessageStream out) throws SQLException, IOException {
+            float v = rs.getFloat(column);
+            if (rs.wasNull())
+                out.writeInt(NULL_LENGTH);
+            else
+                writeAscii(Float.toString(v), chars, out);
+        }
+    }
+
+    private static final class Float4Binary extends ColumnWriter {
+        @Override
+        void write(ResultSet rs, int column, MessageStream out) throws SQLException, IOException {
+            float v = rs.getFloat(column);
+            if (rs.wasNull()) {
+                out.writeInt(NULL_LENGTH);
+            } else {
+                out.writeInt(Float.SIZE / Byte.SIZE);
+                out.writeInt(Float.floatToIntBits(v));
+            }
+        }
+    }
+
+    private static final class Float8Text extends ColumnWriter {
+        private final byte[] chars = new byte[32];
+
+        @Override
+        void write(ResultSet rs, int column, MessageStream out) throws SQLException, IOException {
+            double v = rs.getDouble(column);
+            if (rs.wasNull())
+                out.writeInt(NULL_LENGTH);
+            else
+                writeAscii(Double.toString(v), chars, out);
+        }
+    }
+
+    private static final class Float8Binary extends ColumnWriter {
+        @Override
+        void write(ResultSet rs, int column, MessageStream out) throws SQLException, IOException {
+            double v = rs.getDouble(column);
+            if (rs.wasNull()) {
+                out.writeInt(NULL_LENGTH);
+            } else {
+                out.writeInt(Double.SIZE / Byte.SIZE);
+                out.writeLong(Double.doubleToLongBits(v));
+            }
+        }
+    }
+
+    // text and binary formats of VARCHAR are the same
+    private static final class Varchar extends ColumnWriter {
+        @Override
+        void write(ResultSet rs, int column, MessageStream out) throws SQLException, IOException {
+            String v = rs.getString(column);
+            if (v == null) {
+                out.writeInt(NULL_LENGTH);
+            } else {
+                byte[] bytes = v.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.writeBytes(bytes);
+            }
+        }
+    }
+
+    private static final class Generic extends ColumnWriter {
+        private final PostgresType type;
+        private final IoFunction io;
+        private final boolean text;
+
+        Generic(PostgresType type, IoFunction io, boolean text) {
+            this.type = type;
+            this.io = io;
+            this.text = text;
+        }
+
+        @Override
+        void write(ResultSet rs, int column, MessageStream out) throws SQLException, IOException {
+            Object datum;
+            switch (type) {
+            case NUMERIC:
+                datum = rs.getBigDecimal(column);
+                break;
+            case DATE:
+                datum = rs.getDate(column);
+                break;
+            default:
+                datum = rs.getTimestamp(column);
+                break;
+            }
+
+            byte[] bytes = text ? io.out(datum) : io.send(datum);
+            if (bytes == null) {
+                out.writeInt(NULL_LENGTH);
+            } else {
+                out.writeInt(bytes.length);
+                out.writeBytes(bytes);
+            }
+        }
+    }
+
+    // writes the length and the decimal digits of v
+    private static void writeDecimal(long v, byte[] digits, MessageStream out) throws IOException {
+        // negative values cover Long.MIN_VALUE
+        long n = v < 0 ? v : -v;
+        int pos = digits.length;
+        while (true) {
+            digits[--pos] = (byte) ('0' - n % 10);
+            n /= 10;
+            if (n == 0)
+                break;
+        }
+        if (v < 0)
+            digits[--pos] = '-';
+
+        out.writeInt(digits.length - pos);
+        out.writeBytes(digits, pos, digits.length - pos);
+    }
+
+    // Float.toString() and Double.toString() are ASCII
+    private static void writeAscii(String s, byte[] chars, MessageStream out) throws IOException {
+        int len = s.length();
+        for (int i = 0; i < len; i++)
+            chars[i] = (byte) s.charAt(i);
+
+        out.writeInt(len);
+        out.writeBytes(chars, 0, len);
+    }
+}
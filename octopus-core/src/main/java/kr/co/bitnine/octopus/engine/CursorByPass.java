@@ -14,11 +14,10 @@
 
 package kr.co.bitnine.octopus.engine;
 
-import java.sql.DriverManager;
+import kr.co.bitnine.octopus.engine.calcite.Driver;
 import kr.co.bitnine.octopus.frame.ConnectionManager;
 import kr.co.bitnine.octopus.frame.Session;
 import kr.co.bitnine.octopus.postgres.access.common.TupleDesc;
-import kr.co.bitnine.octopus.postgres.catalog.PostgresAttribute;
 import kr.co.bitnine.octopus.postgres.catalog.PostgresType;
 import kr.co.bitnine.octopus.postgres.executor.TupleSet;
 import kr.co.bitnine.octopus.postgres.utils.PostgresErrorData;
@@ -29,26 +28,27 @@ import kr.co.bitnine.octopus.postgres.utils.adt.FormatCode;
 import kr.co.bitnine.octopus.postgres.utils.adt.IoFunction;
 import kr.co.bitnine.octopus.postgres.utils.adt.IoFunctions;
 import kr.co.bitnine.octopus.postgres.utils.cache.Portal;
-import org.apache.calcite.sql.SqlDialect;
-import org.apache.calcite.sql.SqlIdentifier;
-import org.apache.calcite.sql.SqlNode;
-import org.apache.calcite.sql.util.SqlShuttle;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
+import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Properties;
 
-public final class CursorByPass extends Portal {
+public final class CursorByPass extends Portal implements ConnectionHolder {
     private static final Log LOG = LogFactory.getLog(CursorByPass.class);
 
     private final int sessionId;
     private final String dataSourceName;
     private final String queryString;
+    private final ResultStreaming streaming;
+    private final FetchOptions fetchOptions;
 
     private Connection conn;
     private PreparedStatement stmt;
@@ -57,40 +57,16 @@ public final class CursorByPass extends Portal {
 
     public CursorByPass(CachedStatement cachedStatement, String name,
                         FormatCode[] paramFormats, byte[][] paramValues,
-                        FormatCode[] resultFormats, String dataSourceName)
+                        FormatCode[] resultFormats, ByPassQuery byPass,
+                        FetchOptions fetchOptions)
             throws PostgresException {
         super(cachedStatement, name, paramFormats, paramValues, resultFormats);
 
         sessionId = Session.currentSession().getId();
-        this.dataSourceName = dataSourceName;
-
-        CachedStatement cStmt = (CachedStatement) getCachedQuery();
-        if (dataSourceName == null) {
-            /*
-             * Complex or MetaModel queries are processed by Calcite via Avatica JDBC driver.
-             * So they are not converted to DSN form.
-             */
-            SqlDialect.DatabaseProduct dp = SqlDialect.DatabaseProduct.POSTGRESQL;
-            queryString = cStmt.getValidatedQuery().toSqlString(dp.getDialect()).getSql();
-        } else {
-            /*
-             * NOTE: Deep-copy validatedQuery because TableNameTranslator.toDSN()
-             *       changes identifiers of validatedQuery itself.
-             *       When this Portal runs again without copied one,
-             *       the by-pass test in processBind() which uses the validatedQuery
-             *       will produce an error.
-             *       To reduce number of copies, cache queryString.
-             */
-            SqlNode cloned = cStmt.getValidatedQuery().accept(new SqlShuttle() {
-                @Override
-                public SqlNode visit(SqlIdentifier id) {
-                    return id.clone(id.getParserPosition());
-                }
-            });
-            TableNameTranslator.toDSN(cloned);
-            SqlDialect.DatabaseProduct dp = SqlDialect.DatabaseProduct.POSTGRESQL;
-            queryString = cloned.toSqlString(dp.getDialect()).getSql();
-        }
+        dataSourceName = byPass.getDataSourceName();
+        queryString = byPass.getQueryString();
+        streaming = byPass.getStreaming();
+        this.fetchOptions = fetchOptions;
     }
 
     private void prepareStatement() throws PostgresException {
@@ -98,13 +74,13 @@ public final class CursorByPass extends Portal {
             return;
 
         CachedStatement cStmt = (CachedStatement) getCachedQuery();
-        PostgresType[] types = cStmt.getParamTypes();
+        PostgresType[] types = cStmt.getBindParamTypes();
         FormatCode[] formats = getParamFormats();
         byte[][] values = getParamValues();
 
         try {
             if (dataSourceName == null) { // complex query
-                conn = DriverManager.getConnection("jdbc:octopus-calcite:");
+                conn = Driver.INSTANCE.connect(Driver.CONNECT_STRING_PREFIX, new Properties());
                 LOG.info("Avatica JDBC connection for session(" + sessionId + ')');
             } else {
                 conn = ConnectionManager.getConnection(dataSourceName);
@@ -113,7 +89,7 @@ public final class CursorByPass extends Portal {
 
             LOG.info("By Pass Query: " + queryString);
 
-            stmt = conn.prepareStatement(queryString);
+            stmt = streaming.prepareStatement(dataSourceName, conn, queryString);
             if (types.length > 0) {
                 for (int i = 0; i < types.length; i++) {
                     if (values[i] == null) {
@@ -123,11 +99,11 @@ public final class CursorByPass extends Portal {
                         case FLOAT4:
                         case FLOAT8:
                         case VARCHAR:
+                        case NUMERIC:
+                        case DATE:
+                        case TIMESTAMP:
                             stmt.setNull(i + 1, TypeInfo.jdbcTypeOfPostgresType(types[i]));
                             break;
-                        case NUMERIC:   // TODO
-                        case DATE:      // TODO
-                        case TIMESTAMP: // TODO
                         default:
                             setState(State.FAILED);
 
@@ -174,9 +150,24 @@ public final class CursorByPass extends Portal {
                         else
                             stmt.setString(i + 1, (String) io.recv(values[i]));
                         break;
-                    case NUMERIC:   // TODO
-                    case DATE:      // TODO
-                    case TIMESTAMP: // TODO
+                    case NUMERIC:
+                        if (formats[i] == FormatCode.TEXT)
+                            stmt.setBigDecimal(i + 1, (BigDecimal) io.in(values[i]));
+                        else
+                            stmt.setBigDecimal(i + 1, (BigDecimal) io.recv(values[i]));
+                        break;
+                    case DATE:
+                        if (formats[i] == FormatCode.TEXT)
+                            stmt.setDate(i + 1, (Date) io.in(values[i]));
+                        else
+                            stmt.setDate(i + 1, (Date) io.recv(values[i]));
+                        break;
+                    case TIMESTAMP:
+                        if (formats[i] == FormatCode.TEXT)
+                            stmt.setTimestamp(i + 1, (Timestamp) io.in(values[i]));
+                        else
+                            stmt.setTimestamp(i + 1, (Timestamp) io.recv(values[i]));
+                        break;
                     default:
                         PostgresErrorData edata = new PostgresErrorData(
                                 PostgresSeverity.ERROR,
@@ -220,30 +211,21 @@ public final class CursorByPass extends Portal {
         LOG.debug("execute CursorByPass (rows=" + numRows + ")");
 
         try {
-            // NOTE: some JDBC drivers do not ignore setFetchSize(0)
-            if (numRows > 0)
-                stmt.setFetchSize(numRows);
+            // fetch no more than needed for the first Execute, but bounded
+            if (numRows > 0 && numRows < fetchOptions.getFetchSize())
+                streaming.setFetchSize(stmt, numRows);
+            else
+                streaming.setFetchSize(stmt, fetchOptions.getFetchSize());
 
             checkCancel();
             ResultSet rs = stmt.executeQuery();
             checkCancel();
 
-            ResultSetMetaData rsmd = rs.getMetaData();
-            int colCnt = rsmd.getColumnCount();
-            PostgresAttribute[] attrs = new PostgresAttribute[colCnt];
-            for (int i = 0; i < colCnt; i++) {
-                String colName = rsmd.getColumnName(i + 1);
-                int colType = rsmd.getColumnType(i + 1);
-                LOG.info("JDBC type of column '" + colName + "' is " + colType);
-                PostgresType type = TypeInfo.postresTypeOfJdbcType(colType);
-                int typeInfo = -1;
-                if (type == PostgresType.VARCHAR)
-                    typeInfo = rsmd.getColumnDisplaySize(i + 1);
-                attrs[i] = new PostgresAttribute(colName, type, typeInfo);
+            if (tupDesc == null) {
+                CachedStatement cStmt = (CachedStatement) getCachedQuery();
+                tupDesc = new TupleDesc(cStmt.getResultAttributes(rs.getMetaData()), getResultFormats());
             }
-
-            tupDesc = new TupleDesc(attrs, getResultFormats());
-            tupSetByPass = new TupleSetByPass(this, rs, tupDesc);
+            tupSetByPass = new TupleSetByPass(this, rs, tupDesc, fetchOptions);
 
             setState(State.ACTIVE);
         } catch (SQLException e) {
@@ -260,10 +242,18 @@ public final class CursorByPass extends Portal {
 
     @Override
     public TupleDesc describe() throws PostgresException {
-        prepareStatement();
-        execute(0);
+        if (tupDesc != null)
+            return tupDesc;
 
-        assert tupDesc != null;
+        // Calcite returns the types it inferred
+        CachedStatement cStmt = (CachedStatement) getCachedQuery();
+        if (dataSourceName == null || cStmt.isRowTypeExact()) {
+            tupDesc = new TupleDesc(cStmt.getResultAttributes(), getResultFormats());
+        } else {
+            // the query runs once; run() goes on with its result
+            prepareStatement();
+            execute(0);
+        }
         return tupDesc;
     }
 
@@ -283,16 +273,48 @@ public final class CursorByPass extends Portal {
     }
 
     @Override
-    public void close() {
+    public void releaseConnection() {
         if (conn == null)
             return;
 
         if (stmt != null) {
             try {
-                stmt.cancel();
+                stmt.close();
+            } catch (SQLException ignore) { }
+            stmt = null;
+        }
+
+        try {
+            LOG.info("return connection to \"" + dataSourceName + "\" for session(" + sessionId + "), all rows are fetched");
+            conn.close();
+        } catch (SQLException ignore) { }
+        conn = null;
+    }
+
+    @Override
+    public void close() {
+        if (conn == null) {
+            // the connection is released but rows may be left in the pipeline
+            if (tupSetByPass != null)
+                tupSetByPass.stopPipeline();
+            tupSetByPass = null;
+            return;
+        }
+
+        if (stmt != null) {
+            try {
+                /*
+                 * Cancel only a running query. A finished statement goes back
+                 * to the statement cache of the connection, and a late cancel
+                 * could hit the next query on it.
+                 */
+                if (getState() == State.ACTIVE)
+                    stmt.cancel();
             } catch (SQLException | UnsupportedOperationException e) {
                 LOG.error("failed to cancel statement for session(" + sessionId + ")\n" + ExceptionUtils.getStackTrace(e));
             } finally {
+                if (tupSetByPass != null)
+                    tupSetByPass.stopPipeline();
                 try {
                     stmt.close();
                 } catch (SQLException ignore) { }
@@ -0,0 +1,196 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.engine;
+
+import kr.co.bitnine.octopus.frame.ConnectionManager;
+import kr.co.bitnine.octopus.frame.Session;
+import kr.co.bitnine.octopus.postgres.access.common.TupleDesc;
+import kr.co.bitnine.octopus.postgres.catalog.PostgresAttribute;
+import kr.co.bitnine.octopus.postgres.commands.CopyFromTarget;
+import kr.co.bitnine.octopus.postgres.executor.Tuple;
+import kr.co.bitnine.octopus.postgres.executor.TupleSet;
+import kr.co.bitnine.octopus.postgres.utils.PostgresErrorData;
+import kr.co.bitnine.octopus.postgres.utils.PostgresException;
+import kr.co.bitnine.octopus.postgres.utils.PostgresSQLState;
+import kr.co.bitnine.octopus.postgres.utils.PostgresSeverity;
+import kr.co.bitnine.octopus.postgres.utils.adt.FormatCode;
+import kr.co.bitnine.octopus.postgres.utils.cache.Portal;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/*
+ * COPY table FROM STDIN
+ *
+ * Rows from the client are inserted into the table of a JDBC data source
+ * with batches of a PreparedStatement on a pooled connection.
+ */
+public final class CursorCopyFrom extends Portal implements CopyFromTarget {
+    private static final Log LOG = LogFactory.getLog(CursorCopyFrom.class);
+
+    private final int sessionId;
+    private final String dataSourceName;
+    private final String insertSql;
+    private final TupleDesc tupDesc;
+    private final int batchSize;
+    private final int commitInterval;
+
+    CursorCopyFrom(CachedStatement cachedStatement, String name,
+                   String dataSourceName, String insertSql, TupleDesc tupDesc,
+                   int batchSize, int commitInterval) {
+        super(cachedStatement, name, new FormatCode[0], new byte[0][],
+                new FormatCode[0]);
+
+        sessionId = Session.currentSession().getId();
+        this.dataSourceName = dataSourceName;
+        this.insertSql = insertSql;
+        this.tupDesc = tupDesc;
+        this.batchSize = Math.max(batchSize, 1);
+        this.commitInterval = commitInterval;
+    }
+
+    // columns of rows to be copied
+    @Override
+    public TupleDesc describe() throws PostgresException {
+        return tupDesc;
+    }
+
+    @Override
+    public TupleSet run(int numRows) throws PostgresException {
+        PostgresErrorData edata = new PostgresErrorData(
+                PostgresSeverity.ERROR,
+                PostgresSQLState.FEATURE_NOT_SUPPORTED,
+                "COPY FROM STDIN requires rows from the client");
+        throw new PostgresException(edata);
+    }
+
+    @Override
+    public long copyFrom(TupleSet tuples) throws PostgresException {
+        setState(State.ACTIVE);
+
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        long numRows = 0;
+        long numCommitted = 0;
+        try {
+            conn = ConnectionManager.getConnection(dataSourceName);
+            LOG.info("borrow connection to " + dataSourceName + " for session(" + sessionId + ')');
+            LOG.info("COPY FROM STDIN: " + insertSql);
+
+            conn.setAutoCommit(false);
+            stmt = conn.prepareStatement(insertSql);
+
+            PostgresAttribute[] attrs = tupDesc.getAttributes();
+            int[] jdbcTypes = new int[attrs.length];
+            for (int i = 0; i < attrs.length; i++)
+                jdbcTypes[i] = TypeInfo.jdbcTypeOfPostgresType(attrs[i].getType());
+
+            int numBatched = 0;
+            while (true) {
+                Tuple t = tuples.next();
+                if (t == null)
+                    break;
+
+                Object[] datums = t.getDatums();
+                for (int i = 0; i < datums.length; i++) {
+                    if (datums[i] == null)
+                        stmt.setNull(i + 1, jdbcTypes[i]);
+                    else
+                        stmt.setObject(i + 1, datums[i]);
+                }
+                stmt.addBatch();
+                numRows++;
+
+                if (++numBatched >= batchSize) {
+                    checkCancel();
+                    stmt.executeBatch();
+                    numBatched = 0;
+                }
+                if (commitInterval > 0 && numRows % commitInterval == 0) {
+                    if (numBatched > 0) {
+                        stmt.executeBatch();
+                        numBatched = 0;
+                    }
+                    conn.commit();
+                    numCommitted = numRows;
+                }
+            }
+            if (numBatched > 0)
+                stmt.executeBatch();
+            conn.commit();
+
+            setState(State.DONE);
+            return numRows;
+        } catch (SQLException e) {
+            setState(State.FAILED);
+            rollback(conn);
+
+            PostgresErrorData edata = new PostgresErrorData(
+                    PostgresSeverity.ERROR,
+                    "failed to copy into data source '" + dataSourceName + "' (" + numCommitted + " rows committed): " + e.getMessage());
+            throw new PostgresException(edata, e);
+        } catch (PostgresException e) {
+            setState(State.FAILED);
+            rollback(conn);
+            throw e;
+        } finally {
+            if (stmt != null) {
+                try {
+                    stmt.close();
+                } catch (SQLException ignore) { }
+            }
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    LOG.error("failed to return connection for session(" + sessionId + ")\n" + ExceptionUtils.getStackTrace(e));
+                }
+            }
+        }
+    }
+
+    private void checkCancel() throws PostgresException {
+        if (Session.currentSession().isCanceled()) {
+            PostgresErrorData edata = new PostgresErrorData(
+                    PostgresSeverity.ERROR,
+                    PostgresSQLState.QUERY_CANCELED,
+                    "canceling statement for session(" + sessionId + ") due to user request");
+            throw new PostgresException(edata);
+        }
+    }
+
+    private void rollback(Connection conn) {
+        if (conn == null)
+            return;
+
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            LOG.error("failed to rollback COPY for session(" + sessionId + ")\n" + ExceptionUtils.getStackTrace(e));
+        }
+    }
+
+    @Override
+    public String generateCompletionTag(String commandTag) {
+        return commandTag;
+    }
+
+    @Override
+    public void close() { }
+}
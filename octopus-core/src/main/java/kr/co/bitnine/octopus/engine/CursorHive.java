@@ -17,7 +17,6 @@ package kr.co.bitnine.octopus.engine;
 import kr.co.bitnine.octopus.frame.ConnectionManager;
 import kr.co.bitnine.octopus.frame.Session;
 import kr.co.bitnine.octopus.postgres.access.common.TupleDesc;
-import kr.co.bitnine.octopus.postgres.catalog.PostgresAttribute;
 import kr.co.bitnine.octopus.postgres.catalog.PostgresType;
 import kr.co.bitnine.octopus.postgres.executor.TupleSet;
 import kr.co.bitnine.octopus.postgres.utils.PostgresErrorData;
@@ -28,26 +27,26 @@ import kr.co.bitnine.octopus.postgres.utils.adt.FormatCode;
 import kr.co.bitnine.octopus.postgres.utils.adt.IoFunction;
 import kr.co.bitnine.octopus.postgres.utils.adt.IoFunctions;
 import kr.co.bitnine.octopus.postgres.utils.cache.Portal;
-import org.apache.calcite.sql.SqlDialect;
-import org.apache.calcite.sql.SqlIdentifier;
-import org.apache.calcite.sql.SqlNode;
-import org.apache.calcite.sql.util.SqlShuttle;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
+import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 
-public final class CursorHive extends Portal {
+public final class CursorHive extends Portal implements ConnectionHolder {
     private static final Log LOG = LogFactory.getLog(CursorHive.class);
 
     private final int sessionId;
     private final String dataSourceName;
     private final String queryString;
+    private final ResultStreaming streaming;
+    private final FetchOptions fetchOptions;
 
     private Connection conn;
     private PreparedStatement stmt;
@@ -56,30 +55,15 @@ public final class CursorHive extends Portal {
 
     public CursorHive(CachedStatement cachedStatement, String name,
                       FormatCode[] paramFormats, byte[][] paramValues,
-                      FormatCode[] resultFormats, String dataSourceName) {
+                      FormatCode[] resultFormats, ByPassQuery byPass,
+                      FetchOptions fetchOptions) {
         super(cachedStatement, name, paramFormats, paramValues, resultFormats);
 
         sessionId = Session.currentSession().getId();
-        this.dataSourceName = dataSourceName;
-
-        /*
-         * NOTE: Deep-copy validatedQuery because TableNameTranslator.toDSN()
-         *       changes identifiers of validatedQuery itself.
-         *       When this Portal runs again without copied one,
-         *       the by-pass test in processBind() which uses the validatedQuery
-         *       will produce an error.
-         *       To reduce number of copies, cache queryString.
-         */
-        CachedStatement cStmt = (CachedStatement) getCachedQuery();
-        SqlNode cloned = cStmt.getValidatedQuery().accept(new SqlShuttle() {
-            @Override
-            public SqlNode visit(SqlIdentifier id) {
-                return id.clone(id.getParserPosition());
-            }
-        });
-        TableNameTranslator.toDSN(cloned);
-        SqlDialect.DatabaseProduct dp = SqlDialect.DatabaseProduct.HIVE;
-        queryString = cloned.toSqlString(dp.getDialect()).getSql();
+        dataSourceName = byPass.getDataSourceName();
+        queryString = byPass.getQueryString();
+        streaming = byPass.getStreaming();
+        this.fetchOptions = fetchOptions;
     }
 
     private void prepareConnection() throws PostgresException {
@@ -103,12 +87,13 @@ public final class CursorHive extends Portal {
             modQuery = queryString + " LIMIT " + maxRows;
 
         CachedStatement cStmt = (CachedStatement) getCachedQuery();
-        PostgresType[] types = cStmt.getParamTypes();
+        PostgresType[] types = cStmt.getBindParamTypes();
         FormatCode[] formats = getParamFormats();
         byte[][] values = getParamValues();
 
         try {
             stmt = conn.prepareStatement(modQuery);
+            streaming.setFetchSize(stmt, fetchOptions.getFetchSize());
             if (types.length > 0) {
                 for (int i = 0; i < types.length; i++) {
                     if (values[i] == null) {
@@ -118,11 +103,11 @@ public final class CursorHive extends Portal {
                         case FLOAT4:
                         case FLOAT8:
                         case VARCHAR:
+                        case NUMERIC:
+                        case DATE:
+                        case TIMESTAMP:
                             stmt.setNull(i + 1, TypeInfo.jdbcTypeOfPostgresType(types[i]));
                             break;
-                        case NUMERIC:   // TODO
-                        case DATE:      // TODO
-                        case TIMESTAMP: // TODO
                         default:
                             PostgresErrorData edata = new PostgresErrorData(
                                     PostgresSeverity.ERROR,
@@ -165,9 +150,24 @@ public final class CursorHive extends Portal {
                         else
                             stmt.setString(i + 1, (String) io.recv(values[i]));
                         break;
-                    case NUMERIC:   // TODO
-                    case DATE:      // TODO
-                    case TIMESTAMP: // TODO
+                    case NUMERIC:
+                        if (formats[i] == FormatCode.TEXT)
+                            stmt.setBigDecimal(i + 1, (BigDecimal) io.in(values[i]));
+                        else
+                            stmt.setBigDecimal(i + 1, (BigDecimal) io.recv(values[i]));
+                        break;
+                    case DATE:
+                        if (formats[i] == FormatCode.TEXT)
+                            stmt.setDate(i + 1, (Date) io.in(values[i]));
+                        else
+                            stmt.setDate(i + 1, (Date) io.recv(values[i]));
+                        break;
+                    case TIMESTAMP:
+                        if (formats[i] == FormatCode.TEXT)
+                            stmt.setTimestamp(i + 1, (Timestamp) io.in(values[i]));
+                        else
+                            stmt.setTimestamp(i + 1, (Timestamp) io.recv(values[i]));
+                        break;
                     default:
                         PostgresErrorData edata = new PostgresErrorData(
                                 PostgresSeverity.ERROR,
@@ -195,48 +195,34 @@ public final class CursorHive extends Portal {
         }
     }
 
-    private String getColumnName(String hiveColumnName) {
-        String normalizedColumnName = hiveColumnName.toLowerCase();
-        String[] names = normalizedColumnName.split("\\.");
-        return names[names.length - 1];
-    }
-
     @Override
     public TupleDesc describe() throws PostgresException {
         if (tupDesc != null)
             return tupDesc;
 
+        CachedStatement cStmt = (CachedStatement) getCachedQuery();
+        if (cStmt.isRowTypeExact()) {
+            tupDesc = new TupleDesc(cStmt.getResultAttributes(), getResultFormats());
+            return tupDesc;
+        }
+
+        // computed columns take the types of an empty result
         prepareConnection();
         prepareStatement(0);
         try {
             checkCancel();
             ResultSet rs = stmt.executeQuery();
-            checkCancel();
-            ResultSetMetaData rsmd = rs.getMetaData();
-            int colCnt = rsmd.getColumnCount();
-            PostgresAttribute[] attrs = new PostgresAttribute[colCnt];
-            for (int i = 0; i < colCnt; i++) {
-                String colName = getColumnName(rsmd.getColumnName(i + 1));
-                int colType = rsmd.getColumnType(i + 1);
-                LOG.debug("JDBC type of column '" + colName + "' is " + colType);
-                PostgresType type = TypeInfo.postresTypeOfJdbcType(colType);
-                int typeInfo = -1;
-                if (type == PostgresType.VARCHAR)
-                    typeInfo = rsmd.getColumnDisplaySize(i + 1);
-                attrs[i] = new PostgresAttribute(colName, type, typeInfo);
-            }
+            tupDesc = new TupleDesc(cStmt.getResultAttributes(rs.getMetaData()), getResultFormats());
             rs.close();
             stmt.close();
             stmt = null;
-
-            tupDesc = new TupleDesc(attrs, getResultFormats());
-            return tupDesc;
         } catch (SQLException e) {
             PostgresErrorData edata = new PostgresErrorData(
                     PostgresSeverity.ERROR,
                     "failed to execute by-pass query: " + e.getMessage());
             throw new PostgresException(edata, e);
         }
+        return tupDesc;
     }
 
     // NOTE: run only 1 time
@@ -245,8 +231,7 @@ public final class CursorHive extends Portal {
         if (tupSetByPass != null)
             return tupSetByPass;
 
-        describe();
-
+        prepareConnection();
         if (numRows > 0)
             prepareStatement(numRows);
         else
@@ -256,7 +241,11 @@ public final class CursorHive extends Portal {
             checkCancel();
             ResultSet rs = stmt.executeQuery();
             checkCancel();
-            tupSetByPass = new TupleSetByPass(this, rs, tupDesc);
+            if (tupDesc == null) {
+                CachedStatement cStmt = (CachedStatement) getCachedQuery();
+                tupDesc = new TupleDesc(cStmt.getResultAttributes(rs.getMetaData()), getResultFormats());
+            }
+            tupSetByPass = new TupleSetByPass(this, rs, tupDesc, fetchOptions);
             setState(State.ACTIVE);
             return tupSetByPass;
         } catch (SQLException e) {
@@ -273,16 +262,48 @@ public final class CursorHive extends Portal {
     }
 
     @Override
-    public void close() {
+    public void releaseConnection() {
         if (conn == null)
             return;
 
         if (stmt != null) {
             try {
-                stmt.cancel();
+                stmt.close();
+            } catch (SQLException ignore) { }
+            stmt = null;
+        }
+
+        try {
+            LOG.info("return connection to \"" + dataSourceName + "\" for session(" + sessionId + "), all rows are fetched");
+            conn.close();
+        } catch (SQLException ignore) { }
+        conn = null;
+    }
+
+    @Override
+    public void close() {
+        if (conn == null) {
+            // the connection is released but rows may be left in the pipeline
+            if (tupSetByPass != null)
+                tupSetByPass.stopPipeline();
+            tupSetByPass = null;
+            return;
+        }
+
+        if (stmt != null) {
+            try {
+                /*
+                 * Cancel only a running query. A finished statement goes back
+                 * to the statement cache of the connection, and a late cancel
+                 * could hit the next query on it.
+                 */
+                if (getState() == State.ACTIVE)
+                    stmt.cancel();
             } catch (SQLException e) {
                 LOG.error("failed to cancel statement for session(" + sessionId + ")\n" + ExceptionUtils.getStackTrace(e));
             } finally {
+                if (tupSetByPass != null)
+                    tupSetByPass.stopPipeline();
                 try {
                     stmt.close();
                 } catch (SQLException ignore) { }
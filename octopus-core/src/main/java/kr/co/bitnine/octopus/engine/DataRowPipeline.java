@@ -0,0 +1,333 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.engine;
+
+import kr.co.bitnine.octopus.postgres.libpq.MessageStream;
+import kr.co.bitnine.octopus.postgres.utils.PostgresErrorData;
+import kr.co.bitnine.octopus.postgres.utils.PostgresException;
+import kr.co.bitnine.octopus.postgres.utils.PostgresSeverity;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.sql.ResultSet;
+import java.nio.channels.FileChannel;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Fetches rows from a ResultSet and encodes them into DataRow messages on
+ * a separate thread, so that waiting for the data source overlaps with
+ * sending rows to the client.
+ *
+ * Encoded rows are passed in batches through a ring of `depth` buffers
+ * which has a single producer (the fetch task) and a single consumer (the
+ * session thread). The fetch task waits when the ring is full, so a slow
+ * client holds at most `depth` batches in memory.
+ *
+ * If spoolDir is given, the fetch task does not wait for a slow client.
+ * Once the ring is full, it appends the rest of the encoded rows to a
+ * spool file and they are sent from there after the ring is drained.
+ * This allows the data source connection to be released as soon as all
+ * rows are fetched rather than when the client has received them.
+ *
+ * A spool grows up to about spoolMaxSize bytes. Then the fetch task waits
+ * until the client has received all spooled rows, removes the spool and
+ * goes back to the ring, so a stalled client cannot fill the disk.
+ */
+final class DataRowPipeline implements Runnable {
+    private static final Log LOG = LogFactory.getLog(DataRowPipeline.class);
+
+    private static final long WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    // bytes sent from the spool at a time, to check cancellation in between
+    private static final long SPOOL_SEND_MAX = 1024 * 1024;
+
+    // how long close() waits for the fetch task before and after canceling the statement
+    private static final long CLOSE_GRACE_MILLIS = 100;
+    private static final long CLOSE_TIMEOUT_MILLIS = 10000;
+
+    private final ResultSet resultSet;
+    private final ColumnWriter[] columnWriters;
+    private final int batchSize;
+    private final File spoolDir;
+    private final long spoolMaxSize;
+
+    private final MessageStream[] ring;
+    // next batch to be sent, written only by the consumer
+    private final AtomicLong head = new AtomicLong();
+    // next batch to be filled, written only by the producer
+    private final AtomicLong tail = new AtomicLong();
+
+    // set by the producer before it appends rows to the spool
+    private volatile Spool spool;
+
+    private volatile boolean finished;
+    private volatile boolean closed;
+    private volatile Exception error;
+    private volatile Thread producer;
+    private volatile Thread consumer;
+    private Future<?> future;
+
+    DataRowPipeline(ResultSet resultSet, ColumnWriter[] columnWriters,
+                    int batchSize, int depth, File spoolDir, long spoolMaxSize) {
+        this.resultSet = resultSet;
+        this.columnWriters = columnWriters;
+        this.batchSize = batchSize;
+        this.spoolDir = spoolDir;
+        this.spoolMaxSize = spoolMaxSize;
+
+        ring = new MessageStream[depth];
+        for (int i = 0; i < depth; i++)
+            ring[i] = MessageStream.buffer(batchSize);
+    }
+
+    // throws RejectedExecutionException if executor has no thread to spare
+    void start(ExecutorService executor) {
+        future = executor.submit(this);
+    }
+
+    @Override
+    public void run() {
+        producer = Thread.currentThread();
+        try {
+            boolean more = true;
+            while (more && !closed) {
+                if (spool != null) {
+                    if (spool.getLength() >= spoolMaxSize) {
+                        if (spool.getSent() < spool.getLength()) {
+                            LockSupport.parkNanos(this, WAIT_NANOS);
+                            continue;
+                        }
+                        // all rows in the ring and the spool have been sent
+                        LOG.info("client has received the full spool, remove it");
+                        Spool sp = spool;
+                        spool = null;
+                        sp.delete();
+                        continue;
+                    }
+
+                    more = fill(spool.batch);
+                    spool.append();
+                    wakeUp(consumer);
+                    continue;
+                }
+
+                long t = tail.get();
+                if (t - head.get() == ring.length) {
+                    if (spoolDir == null) {
+                        LockSupport.parkNanos(this, WAIT_NANOS);
+                    } else {
+                        LOG.info("client is behind, spool rows into " + spoolDir);
+                        spool = new Spool(spoolDir, batchSize);
+                    }
+                    continue;
+                }
+
+                MessageStream batch = ring[(int) (t % ring.length)];
+                more = fill(batch);
+                if (batch.getBufferedLength() > 0) {
+                    tail.lazySet(t + 1);
+                    wakeUp(consumer);
+                }
+            }
+        } catch (SQLException | IOException e) {
+            if (!closed)
+                error = e;
+        } catch (RuntimeException e) {
+            LOG.error(ExceptionUtils.getStackTrace(e));
+            error = e;
+        } finally {
+            // close() may have given up waiting before the spool is created
+            if (closed && spool != null)
+                spool.delete();
+            finished = true;
+            wakeUp(consumer);
+        }
+    }
+
+    // returns false if there are no more rows
+    private boolean fill(MessageStream batch) throws SQLException, IOException {
+        while (batch.getBufferedLength() < batchSize) {
+            if (closed || !resultSet.next())
+                return false;
+
+            batch.beginMessage('D');
+            batch.writeShort((short) columnWriters.length);
+            for (int i = 0; i < columnWriters.length; i++)
+                columnWriters[i].write(resultSet, i + 1, batch);
+            batch.endMessage();
+        }
+        return true;
+    }
+
+    // true if all rows have been fetched from the data source
+    boolean isFetched() {
+        return finished && error == null;
+    }
+
+    /*
+     * Send a batch of rows to out. If none is ready yet, wait for a while
+     * and return true so that the caller can check cancellation.
+     * Returns false if all rows have been sent.
+     */
+    boolean transferTo(MessageStream out) throws IOException, PostgresException {
+        consumer = Thread.currentThread();
+
+        long h = head.get();
+        boolean done = finished;
+        if (h == tail.get()) {
+            // rows in the spool follow all rows in the ring
+            Spool sp = spool;
+            if (sp != null) {
+                long sent = sp.getSent();
+                long count = Math.min(sp.getLength() - sent, SPOOL_SEND_MAX);
+                if (count > 0) {
+                    out.transferFrom(sp.channel, sent, count);
+                    sp.sent.lazySet(sent + count);
+                    wakeUp(producer);
+                    return true;
+                }
+            }
+
+            if (done) {
+                if (error != null) {
+                    PostgresErrorData edata = new PostgresErrorData(
+                            PostgresSeverity.ERROR,
+                            "failed to fetch a row");
+                    throw new PostgresException(edata, error);
+                }
+                return false;
+            }
+
+            // let the client consume rows sent so far while waiting
+            out.flush();
+            LockSupport.parkNanos(this, WAIT_NANOS);
+            return true;
+        }
+
+        ring[(int) (h % ring.length)].transferTo(out);
+        head.lazySet(h + 1);
+        wakeUp(producer);
+        return true;
+    }
+
+    /*
+     * Stop fetching and wait until the fetch task ends. If it does not end
+     * soon, it is blocked in the data source; the statement is canceled
+     * then, and the task is given up on after a while.
+     */
+    void close() {
+        closed = true;
+        wakeUp(producer);
+
+        if (future != null && !awaitTask(CLOSE_GRACE_MILLIS)) {
+            cancelStatement();
+            if (!awaitTask(CLOSE_TIMEOUT_MILLIS)) {
+                LOG.error("fetch task did not end in " + CLOSE_TIMEOUT_MILLIS + "ms, interrupt it");
+                future.cancel(true);
+            }
+        }
+
+        if (spool != null)
+            spool.delete();
+    }
+
+    // returns false if the fetch task has not ended in time
+    private boolean awaitTask(long millis) {
+        try {
+            future.get(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOG.error(ExceptionUtils.getStackTrace(e));
+        } catch (TimeoutException e) {
+            return false;
+        }
+        return true;
+    }
+
+    private void cancelStatement() {
+        try {
+            Statement stmt = resultSet.getStatement();
+            if (stmt != null)
+                stmt.cancel();
+        } catch (SQLException | UnsupportedOperationException e) {
+            LOG.error("failed to cancel statement\n" + ExceptionUtils.getStackTrace(e));
+        }
+    }
+
+    private static void wakeUp(Thread thread) {
+        if (thread != null)
+            LockSupport.unpark(thread);
+    }
+
+    // encoded DataRow messages that the client has not received yet
+    private static final class Spool {
+        private final File file;
+        private final FileChannel channel;
+        // the producer encodes rows here and appends them to the file
+        private final MessageStream batch;
+        // number of bytes appended, read by the consumer
+        private final AtomicLong length = new AtomicLong();
+        // number of bytes sent, written by the consumer
+        private final AtomicLong sent = new AtomicLong();
+        private boolean deleted;
+
+        Spool(File dir, int batchSize) throws IOException {
+            file = File.createTempFile("octopus-spool-", ".rows", dir);
+            channel = new RandomAccessFile(file, "rw").getChannel();
+            batch = MessageStream.buffer(batchSize);
+        }
+
+        void append() throws IOException {
+            int len = batch.getBufferedLength();
+            batch.transferTo(channel);
+            length.lazySet(length.get() + len);
+        }
+
+        long getLength() {
+            return length.get();
+        }
+
+        long getSent() {
+            return sent.get();
+        }
+
+        // called by both the producer and close()
+        synchronized void delete() {
+            if (deleted)
+                return;
+            deleted = true;
+
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.error(ExceptionUtils.getStackTrace(e));
+            }
+            if (!file.delete())
+                LOG.error("failed to delete spool file " + file);
+        }
+    }
+}
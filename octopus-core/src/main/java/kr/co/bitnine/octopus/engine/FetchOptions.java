@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.engine;
+
+import kr.co.bitnine.octopus.conf.OctopusConfiguration;
+import org.apache.hadoop.conf.Configuration;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+
+// how rows of by-pass queries are fetched from data sources
+final class FetchOptions {
+    private static final int FETCH_SIZE_DEFAULT = 1000;
+    private static final long SPOOL_MAX_SIZE_DEFAULT = 1024L * 1024 * 1024;
+
+    private final int fetchSize;
+    // number of row batches fetched ahead by DataRowPipeline, 0 disables it
+    private final int pipelineDepth;
+    // where DataRowPipeline spools rows for a slow client, null disables it
+    private final File spoolDir;
+    private final long spoolMaxSize;
+    // runs DataRowPipeline, owned by ConnectionManager
+    private final ExecutorService pipelineExecutor;
+
+    FetchOptions(Configuration conf, ExecutorService pipelineExecutor) {
+        fetchSize = conf.getInt(OctopusConfiguration.MASTER_BYPASS_FETCH_SIZE, FETCH_SIZE_DEFAULT);
+        pipelineDepth = conf.getInt(OctopusConfiguration.MASTER_BYPASS_PIPELINE_DEPTH, 0);
+        String dir = conf.getTrimmed(OctopusConfiguration.MASTER_BYPASS_SPOOL_DIR, "");
+        spoolDir = dir.isEmpty() ? null : new File(dir);
+        spoolMaxSize = conf.getLong(OctopusConfiguration.MASTER_BYPASS_SPOOL_MAX_SIZE, SPOOL_MAX_SIZE_DEFAULT);
+        this.pipelineExecutor = pipelineExecutor;
+    }
+
+    int getFetchSize() {
+        return fetchSize;
+    }
+
+    int getPipelineDepth() {
+        return pipelineDepth;
+    }
+
+    File getSpoolDir() {
+        return spoolDir;
+    }
+
+    long getSpoolMaxSize() {
+        return spoolMaxSize;
+    }
+
+    ExecutorService getPipelineExecutor() {
+        return pipelineExecutor;
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.engine;
+
+import kr.co.bitnine.octopus.postgres.catalog.PostgresType;
+import kr.co.bitnine.octopus.postgres.utils.adt.IoFunction;
+import kr.co.bitnine.octopus.postgres.utils.adt.IoFunctions;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/*
+ * Replaces literals compared with an expression (e.g. "id" = 7, "name"
+ * LIKE 'a%') with hidden parameters so that queries differing only in
+ * those literals share the same normalized query and plan. The literals
+ * are bound again as parameters when portals are created.
+ *
+ * Hidden literals are typed by their syntax first. Once the normalized
+ * query is validated, they take the types inferred for their parameters
+ * (see withParamTypes()).
+ *
+ * Literals in other places (LIMIT 10, ORDER BY 1, DECIMAL(10, 2),
+ * DATE '2016-01-01', IN lists, ...) are kept because their values change
+ * the meaning or the validity of queries.
+ */
+final class LiteralNormalizer {
+    private static final Set<String> COMPARISON_OPERATORS = new HashSet<>(Arrays.asList(
+            "=", "<>", "!=", "<", ">", "<=", ">=", "LIKE"));
+
+    private final String queryString;
+    private final PostgresType[] bindParamTypes;
+    private final boolean[] literalSlots;
+    private final byte[][] literalValues;
+
+    private LiteralNormalizer(String queryString, PostgresType[] bindParamTypes,
+                              boolean[] literalSlots, byte[][] literalValues) {
+        this.queryString = queryString;
+        this.bindParamTypes = bindParamTypes;
+        this.literalSlots = literalSlots;
+        this.literalValues = literalValues;
+    }
+
+    // normalized query
+    String getQueryString() {
+        return queryString;
+    }
+
+    // types of all parameters in order including hidden ones
+    PostgresType[] getBindParamTypes() {
+        return bindParamTypes;
+    }
+
+    // whether each parameter in order is a hidden one
+    boolean[] getLiteralSlots() {
+        return literalSlots;
+    }
+
+    // text form of the hidden parameters
+    byte[][] getLiteralValues() {
+        return literalValues;
+    }
+
+    /*
+     * Binds hidden literals with `paramTypes`, the types the validator
+     * inferred for all parameters of the normalized query. A data source
+     * does not compare e.g. a DATE column with VARCHAR, so '2016-01-01'
+     * compared with a DATE column must be bound as DATE. Returns null if a
+     * literal is not a valid value of its type, the type is unknown or a
+     * number would be bound as another kind of type.
+     */
+    LiteralNormalizer withParamTypes(PostgresType[] paramTypes) {
+        if (paramTypes.length != bindParamTypes.length)
+            return null;
+
+        PostgresType[] types = bindParamTypes.clone();
+        int hidden = 0;
+        for (int i = 0; i < types.length; i++) {
+            if (!literalSlots[i])
+                continue;
+
+            byte[] value = literalValues[hidden++];
+            PostgresType type = paramTypes[i];
+            if (type == types[i])
+                continue;
+
+            // numbers stay numbers, e.g. "name" = 7 is not compared as text
+            if (types[i] != PostgresType.VARCHAR && !isNumeric(type))
+                return null;
+
+            IoFunction io = type == null ? null : IoFunctions.ofType(type);
+            if (io == null)
+                return null;
+            try {
+                io.in(value);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            types[i] = type;
+        }
+
+        return new LiteralNormalizer(queryString, types, literalSlots, literalValues);
+    }
+
+    /*
+     * Returns null if there is nothing to normalize. `query` is a query
+     * whose parameters are ?s and `paramTypes` are their types.
+     */
+    static LiteralNormalizer normalize(String query, PostgresType[] paramTypes) {
+        StringBuilder normalized = null;
+        List<PostgresType> types = new ArrayList<>();
+        List<Boolean> slots = new ArrayList<>();
+        List<byte[]> values = new ArrayList<>();
+        int numParams = 0;
+
+        String prevToken = "";
+        int copied = 0;
+        int len = query.length();
+        int i = 0;
+        while (i < len) {
+            char c = query.charAt(i);
+            int start = i;
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+
+            if (c == '-' && i + 1 < len && query.charAt(i + 1) == '-') {
+                i = skipLineComment(query, i);
+                continue;
+            }
+            if (c == '/' && i + 1 < len && query.charAt(i + 1) == '*') {
+                i = skipBlockComment(query, i);
+                if (i < 0)
+                    return null;
+                continue;
+            }
+
+            if (c == '"') {
+                i = skipQuoted(query, i, '"');
+                if (i < 0)
+                    return null;
+                prevToken = "\"";
+                continue;
+            }
+
+            if (c == '?') {
+                if (numParams >= paramTypes.length)
+                    return null;
+                types.add(paramTypes[numParams++]);
+                slots.add(Boolean.FALSE);
+                i++;
+                prevToken = "?";
+                continue;
+            }
+
+            PostgresType literalType = null;
+            String literal = null;
+            if (c == '\'') {
+                i = skipQuoted(query, i, '\'');
+                if (i < 0)
+                    return null;
+                literalType = PostgresType.VARCHAR;
+                literal = query.substring(start + 1, i - 1).replace("''", "'");
+            } else if (isDigit(c) || (c == '.' && i + 1 < len && isDigit(query.charAt(i + 1)))) {
+                i = skipNumber(query, i);
+                literal = query.substring(start, i);
+                literalType = typeOfNumber(literal);
+                // e.g. 1abc, 1.2.3
+                if (i < len && (Character.isLetterOrDigit(query.charAt(i)) || query.charAt(i) == '.' || query.charAt(i) == '_'))
+                    literalType = null;
+            } else if (Character.isLetter(c) || c == '_') {
+                while (i < len && (Character.isLetterOrDigit(query.charAt(i)) || query.charAt(i) == '_' || query.charAt(i) == '$'))
+                    i++;
+                prevToken = query.substring(start, i).toUpperCase(Locale.ROOT);
+                continue;
+            } else if (c == '<' || c == '>' || c == '=' || c == '!') {
+                while (i < len && "<>=!".indexOf(query.charAt(i)) >= 0)
+                    i++;
+                prevToken = query.substring(start, i);
+                continue;
+            } else {
+                i++;
+                prevToken = String.valueOf(c);
+                continue;
+            }
+
+            // a literal
+            boolean replace = literalType != null
+                    && COMPARISON_OPERATORS.contains(prevToken)
+                    && !followedByQuote(query, i);
+            prevToken = "'";
+            if (!replace)
+                continue;
+
+            if (normalized == null)
+                normalized = new StringBuilder(len);
+            normalized.append(query, copied, start).append('?');
+            copied = i;
+
+            types.add(literalType);
+            slots.add(Boolean.TRUE);
+            values.add(literal.getBytes(StandardCharsets.UTF_8));
+        }
+
+        if (normalized == null || numParams != paramTypes.length)
+            return null;
+        normalized.append(query, copied, len);
+
+        boolean[] literalSlots = new boolean[slots.size()];
+        for (int j = 0; j < literalSlots.length; j++)
+            literalSlots[j] = slots.get(j);
+
+        return new LiteralNormalizer(normalized.toString(),
+                types.toArray(new PostgresType[types.size()]),
+                literalSlots, values.toArray(new byte[values.size()][]));
+    }
+
+    private static boolean isNumeric(PostgresType type) {
+        return type == PostgresType.INT4 || type == PostgresType.INT8
+                || type == PostgresType.FLOAT4 || type == PostgresType.FLOAT8
+                || type == PostgresType.NUMERIC;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int skipLineComment(String query, int start) {
+        int end = query.indexOf('\n', start);
+        return end < 0 ? query.length() : end + 1;
+    }
+
+    // returns -1 if the comment is not closed
+    private static int skipBlockComment(String query, int start) {
+        int end = query.indexOf("*/", start + 2);
+        return end < 0 ? -1 : end + 2;
+    }
+
+    // returns the index after the closing quote or -1 if it is not closed
+    private static int skipQuoted(String query, int start, char quote) {
+        int len = query.length();
+        int i = start + 1;
+        while (i < len) {
+            if (query.charAt(i) == quote) {
+                // doubled quote
+                if (i + 1 < len && query.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private static int skipNumber(String query, int start) {
+        int len = query.length();
+        int i = start;
+        while (i < len && isDigit(query.charAt(i)))
+            i++;
+        if (i < len && query.charAt(i) == '.') {
+            i++;
+            while (i < len && isDigit(query.charAt(i)))
+                i++;
+        }
+        if (i < len && (query.charAt(i) == 'e' || query.charAt(i) == 'E')) {
+            int j = i + 1;
+            if (j < len && (query.charAt(j) == '+' || query.charAt(j) == '-'))
+                j++;
+            if (j < len && isDigit(query.charAt(j))) {
+                i = j;
+                while (i < len && isDigit(query.charAt(i)))
+                    i++;
+            }
+        }
+        return i;
+    }
+
+    private static PostgresType typeOfNumber(String literal) {
+        if (literal.indexOf('e') >= 0 || literal.indexOf('E') >= 0)
+            return PostgresType.FLOAT8;
+        if (literal.indexOf('.') >= 0)
+            return PostgresType.NUMERIC;
+
+        try {
+            long v = Long.parseLong(literal);
+            if (v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE)
+                return PostgresType.INT4;
+            return PostgresType.INT8;
+        } catch (NumberFormatException e) {
+            return PostgresType.NUMERIC;
+        }
+    }
+
+    // adjacent string literals are concatenated
+    private static boolean followedByQuote(String query, int start) {
+        int len = query.length();
+        int i = start;
+        while (i < len && Character.isWhitespace(query.charAt(i)))
+            i++;
+        return i < len && query.charAt(i) == '\'';
+    }
+}
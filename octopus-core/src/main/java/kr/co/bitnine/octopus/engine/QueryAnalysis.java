@@ -0,0 +1,113 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.engine;
+
+import kr.co.bitnine.octopus.meta.privilege.ObjectPrivilege;
+import kr.co.bitnine.octopus.meta.privilege.SystemPrivilege;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.util.SqlShuttle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/*
+ * Objects referenced by a validated query and what is needed to run it.
+ * It is built by a single walk when the query is validated, cached with
+ * the plan and used by every Bind.
+ */
+public final class QueryAnalysis {
+    private final List<String> dataSourceNames;
+    private final List<String[]> schemaNames;
+    private final List<List<String>> tableNames;
+    private final ObjectPrivilege objectPrivilege;
+    private final SystemPrivilege systemPrivilege;
+
+    private QueryAnalysis(List<String> dataSourceNames, List<String[]> schemaNames,
+                          List<List<String>> tableNames, ObjectPrivilege objectPrivilege,
+                          SystemPrivilege systemPrivilege) {
+        this.dataSourceNames = dataSourceNames;
+        this.schemaNames = schemaNames;
+        this.tableNames = tableNames;
+        this.objectPrivilege = objectPrivilege;
+        this.systemPrivilege = systemPrivilege;
+    }
+
+    static QueryAnalysis analyze(SqlNode validatedQuery) {
+        final Set<List<String>> tableSet = new LinkedHashSet<>();
+        validatedQuery.accept(new SqlShuttle() {
+            @Override
+            public SqlNode visit(SqlIdentifier identifier) {
+                // check whether this is fully qualified table name
+                if (identifier.names.size() == 3)
+                    tableSet.add(identifier.names);
+                return identifier;
+            }
+        });
+
+        Set<String> dsSet = new LinkedHashSet<>();
+        Set<List<String>> schemaSet = new LinkedHashSet<>();
+        for (List<String> fqn : tableSet) {
+            dsSet.add(fqn.get(0));
+            schemaSet.add(fqn.subList(0, 2));
+        }
+        List<String[]> schemaNames = new ArrayList<>(schemaSet.size());
+        for (List<String> names : schemaSet)
+            schemaNames.add(names.toArray(new String[2]));
+
+        return new QueryAnalysis(
+                Collections.unmodifiableList(new ArrayList<>(dsSet)),
+                Collections.unmodifiableList(schemaNames),
+                Collections.unmodifiableList(new ArrayList<>(tableSet)),
+                ObjectPrivilege.SELECT, SystemPrivilege.SELECT_ANY_TABLE);
+    }
+
+    // the same objects but written instead of read (COPY FROM)
+    QueryAnalysis forInsert() {
+        return new QueryAnalysis(dataSourceNames, schemaNames, tableNames,
+                ObjectPrivilege.INSERT, SystemPrivilege.INSERT_ANY_TABLE);
+    }
+
+    List<String> getDataSourceNames() {
+        return dataSourceNames;
+    }
+
+    // {data source, schema}
+    List<String[]> getSchemaNames() {
+        return schemaNames;
+    }
+
+    // {data source, schema, table}
+    List<List<String>> getTableNames() {
+        return tableNames;
+    }
+
+    // privilege needed on every schema unless the user has getSystemPrivilege()
+    ObjectPrivilege getObjectPrivilege() {
+        return objectPrivilege;
+    }
+
+    SystemPrivilege getSystemPrivilege() {
+        return systemPrivilege;
+    }
+
+    // a query on a single data source can be passed to it as is
+    boolean isByPass() {
+        return dataSourceNames.size() == 1;
+    }
+}
@@ -19,13 +19,16 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import kr.co.bitnine.octopus.conf.OctopusConfiguration;
 import kr.co.bitnine.octopus.frame.ConnectionManager;
+import kr.co.bitnine.octopus.frame.PoolOptions;
 import kr.co.bitnine.octopus.frame.Session;
 import kr.co.bitnine.octopus.meta.MetaContext;
 import kr.co.bitnine.octopus.meta.MetaException;
@@ -41,6 +44,7 @@ import kr.co.bitnine.octopus.meta.privilege.SystemPrivilege;
 import kr.co.bitnine.octopus.postgres.access.common.TupleDesc;
 import kr.co.bitnine.octopus.postgres.catalog.PostgresAttribute;
 import kr.co.bitnine.octopus.postgres.catalog.PostgresType;
+import kr.co.bitnine.octopus.postgres.commands.CopyOptions;
 import kr.co.bitnine.octopus.postgres.executor.Tuple;
 import kr.co.bitnine.octopus.postgres.executor.TupleSet;
 import kr.co.bitnine.octopus.postgres.tcop.AbstractQueryProcessor;
@@ -52,6 +56,7 @@ import kr.co.bitnine.octopus.postgres.utils.adt.FormatCode;
 import kr.co.bitnine.octopus.postgres.utils.cache.CachedQuery;
 import kr.co.bitnine.octopus.postgres.utils.cache.Portal;
 import kr.co.bitnine.octopus.postgres.utils.misc.PostgresConfiguration;
+import kr.co.bitnine.octopus.schema.PlanCache;
 import kr.co.bitnine.octopus.schema.SchemaManager;
 import kr.co.bitnine.octopus.sql.OctopusSql;
 import kr.co.bitnine.octopus.sql.OctopusSqlCommand;
@@ -61,19 +66,28 @@ import kr.co.bitnine.octopus.sql.TupleSetSql;
 import org.antlr.v4.runtime.RecognitionException;
 import org.apache.calcite.avatica.util.Casing;
 import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelRoot;
+import org.apache.calcite.rel.RelVisitor;
+import org.apache.calcite.rex.RexDynamicParam;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexShuttle;
 import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlDialect;
 import org.apache.calcite.sql.SqlExplainLevel;
 import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlSelect;
 import org.apache.calcite.sql.parser.SqlParseException;
 import org.apache.calcite.sql.parser.SqlParser;
-import org.apache.calcite.sql.util.SqlShuttle;
 import org.apache.calcite.tools.FrameworkConfig;
 import org.apache.calcite.tools.Frameworks;
 import org.apache.calcite.tools.Planner;
 import org.apache.calcite.tools.RelConversionException;
 import org.apache.calcite.tools.ValidationException;
+import org.apache.calcite.util.Util;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -82,10 +96,22 @@ import org.apache.hadoop.conf.Configuration;
 public final class QueryEngine extends AbstractQueryProcessor {
     private static final Log LOG = LogFactory.getLog(QueryEngine.class);
 
+    // COPY (query) TO STDOUT [options]
+    private static final Pattern COPY_TO_STDOUT = Pattern.compile(
+            "\\s*COPY\\s*\\((.*)\\)\\s*TO\\s+STDOUT\\b(.*?)\\s*;?\\s*",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    // COPY table [(column, ...)] FROM STDIN [options]
+    private static final Pattern COPY_FROM_STDIN = Pattern.compile(
+            "\\s*COPY\\s+([^(\\s][^(]*?)\\s*(?:\\((.*)\\))?\\s*FROM\\s+STDIN\\b(.*?)\\s*;?\\s*",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private static final int COPY_FROM_BATCH_SIZE_DEFAULT = 1000;
+
     private final MetaContext metaContext;
     private final ConnectionManager connectionManager;
     private final SchemaManager schemaManager;
     private final Configuration conf;
+    private final FetchOptions fetchOptions;
 
     public QueryEngine(MetaContext metaContext,
                        ConnectionManager connectionManager,
@@ -95,10 +121,44 @@ public final class QueryEngine extends AbstractQueryProcessor {
         this.connectionManager = connectionManager;
         this.schemaManager = schemaManager;
         this.conf = conf;
+        fetchOptions = new FetchOptions(conf, connectionManager.getFetchExecutor());
     }
 
     @Override
     protected CachedQuery processParse(String queryString, PostgresType[] paramTypes) throws PostgresException {
+        Matcher copyTo = COPY_TO_STDOUT.matcher(queryString);
+        if (copyTo.matches()) {
+            CopyOptions options = CopyOptions.parse(copyTo.group(2));
+            CachedStatement cStmt = (CachedStatement) processParse(copyTo.group(1), paramTypes);
+            if (cStmt.isDdl()) {
+                PostgresErrorData edata = new PostgresErrorData(
+                        PostgresSeverity.ERROR,
+                        PostgresSQLState.FEATURE_NOT_SUPPORTED,
+                        "COPY TO STDOUT supports only queries");
+                throw new PostgresException(edata);
+            }
+            cStmt.setCopyTo(options);
+            return cStmt;
+        }
+
+        // the target columns are resolved as a query selecting them
+        Matcher copyFrom = COPY_FROM_STDIN.matcher(queryString);
+        if (copyFrom.matches()) {
+            CopyOptions options = CopyOptions.parse(copyFrom.group(3));
+            String columns = copyFrom.group(2) == null ? "*" : copyFrom.group(2);
+            CachedStatement cStmt = (CachedStatement) processParse(
+                    "SELECT " + columns + " FROM " + copyFrom.group(1), paramTypes);
+            if (cStmt.isDdl() || !isCopyFromTarget(cStmt.getValidatedQuery())) {
+                PostgresErrorData edata = new PostgresErrorData(
+                        PostgresSeverity.ERROR,
+                        PostgresSQLState.FEATURE_NOT_SUPPORTED,
+                        "COPY FROM STDIN supports only a table and a list of its columns");
+                throw new PostgresException(edata);
+            }
+            cStmt.setCopyFrom(options);
+            return cStmt;
+        }
+
         /*
          * Format of PostgreSQL's parameter is $n (starts from 1)
          * Format of Calcite's parameter is ? (same as JDBC)
@@ -109,10 +169,12 @@ public final class QueryEngine extends AbstractQueryProcessor {
         // DDL
 
         List<OctopusSqlCommand> commands = null;
-        try {
-            commands = OctopusSql.parse(refinedQuery);
-        } catch (RecognitionException e) {
-            LOG.debug(ExceptionUtils.getStackTrace(e));
+        if (OctopusSql.startsWithDdlKeyword(refinedQuery)) {
+            try {
+                commands = OctopusSql.parse(refinedQuery);
+            } catch (RecognitionException e) {
+                LOG.debug(ExceptionUtils.getStackTrace(e));
+            }
         }
 
         if (commands != null && commands.size() > 0) {
@@ -243,6 +305,80 @@ public final class QueryEngine extends AbstractQueryProcessor {
 
         // Query
 
+        LiteralNormalizer literals = LiteralNormalizer.normalize(refinedQuery, paramTypes);
+        if (literals != null) {
+            try {
+                PlanCache.Plan plan = plan(literals.getQueryString(), literals.getBindParamTypes());
+                LiteralNormalizer typed = literals.withParamTypes(plan.getParamTypes());
+                if (typed != null) {
+                    CachedStatement cStmt = new CachedStatement(plan.getValidatedQuery(), plan.getAnalysis(),
+                            refinedQuery, paramTypes);
+                    cStmt.setRowType(plan.getRowType());
+                    cStmt.setLiterals(typed);
+                    return cStmt;
+                }
+                LOG.debug("literals do not match the types of normalized query {" + literals.getQueryString() + '}');
+            } catch (PostgresException e) {
+                // e.g. types of hidden parameters cannot be inferred
+                LOG.debug("failed to plan normalized query {" + literals.getQueryString() + "}: " + e.getMessage());
+            }
+        }
+
+        PlanCache.Plan plan = plan(refinedQuery, paramTypes);
+        CachedStatement cStmt = new CachedStatement(plan.getValidatedQuery(), plan.getAnalysis(),
+                refinedQuery, paramTypes);
+        cStmt.setRowType(plan.getRowType());
+        return cStmt;
+    }
+
+    /*
+     * The query made from COPY table [(column, ...)] must select plain
+     * columns of a single table, which become the target of INSERT.
+     */
+    private static boolean isCopyFromTarget(SqlNode validatedQuery) {
+        if (!(validatedQuery instanceof SqlSelect))
+            return false;
+
+        SqlSelect select = (SqlSelect) validatedQuery;
+        SqlNode from = select.getFrom();
+        if (from != null && from.getKind() == SqlKind.AS)
+            from = ((SqlCall) from).operand(0);
+        if (!(from instanceof SqlIdentifier)
+                || select.isDistinct()
+                || select.getWhere() != null
+                || select.getGroup() != null
+                || select.getHaving() != null
+                || (select.getOrderList() != null && select.getOrderList().size() > 0)
+                || select.getOffset() != null
+                || select.getFetch() != null)
+            return false;
+
+        for (SqlNode item : select.getSelectList()) {
+            // the validator may alias a column with its own name
+            if (item.getKind() == SqlKind.AS) {
+                List<SqlNode> operands = ((SqlCall) item).getOperandList();
+                if (!(operands.get(0) instanceof SqlIdentifier))
+                    return false;
+                SqlIdentifier column = (SqlIdentifier) operands.get(0);
+                SqlIdentifier alias = (SqlIdentifier) operands.get(1);
+                if (!Util.last(column.names).equals(alias.getSimple()))
+                    return false;
+            } else if (!(item instanceof SqlIdentifier)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // validates the query or reuses the one validated before
+    private PlanCache.Plan plan(String queryString, PostgresType[] paramTypes) throws PostgresException {
+        PlanCache planCache = schemaManager.getPlanCache();
+        PlanCache.Plan plan = planCache.get(queryString, paramTypes, schemaManager.getVersion());
+        if (plan != null) {
+            LOG.debug("plan cache hit (hits=" + planCache.getHitCount() + ", misses=" + planCache.getMissCount() + ')');
+            return plan;
+        }
+
         try {
             SchemaPlus rootSchema = schemaManager.getCurrentSchema();
 
@@ -255,17 +391,22 @@ public final class QueryEngine extends AbstractQueryProcessor {
                     .build();
             Planner planner = Frameworks.getPlanner(config);
 
-            SqlNode parse = planner.parse(refinedQuery);
+            SqlNode parse = planner.parse(queryString);
 
             TableNameTranslator.toFQN(schemaManager, parse);
             LOG.debug("FQN translated: " + parse.toString());
 
             schemaManager.lockRead();
             try {
+                long schemaVersion = schemaManager.getVersion();
                 SqlNode validated = planner.validate(parse);
                 RelRoot relRoot = planner.rel(validated);
                 LOG.info(RelOptUtil.dumpPlan("Generated plan: ", relRoot.rel, false, SqlExplainLevel.ALL_ATTRIBUTES));
-                return new CachedStatement(validated, refinedQuery, paramTypes);
+                plan = new PlanCache.Plan(validated, relRoot.validatedRowType,
+                        inferParamTypes(relRoot.rel, paramTypes.length),
+                        QueryAnalysis.analyze(validated), schemaVersion);
+                planCache.put(queryString, paramTypes, plan);
+                return plan;
             } finally {
                 schemaManager.unlockRead();
             }
@@ -290,6 +431,27 @@ public final class QueryEngine extends AbstractQueryProcessor {
         }
     }
 
+    // types the validator inferred for the dynamic parameters of the plan
+    static PostgresType[] inferParamTypes(RelNode rel, int numParams) {
+        final PostgresType[] types = new PostgresType[numParams];
+        final RexShuttle params = new RexShuttle() {
+            @Override
+            public RexNode visitDynamicParam(RexDynamicParam param) {
+                if (param.getIndex() < types.length)
+                    types[param.getIndex()] = TypeInfo.postgresTypeOfParamType(param.getType().getSqlTypeName());
+                return param;
+            }
+        };
+        new RelVisitor() {
+            @Override
+            public void visit(RelNode node, int ordinal, RelNode parent) {
+                node.accept(params);
+                super.visit(node, ordinal, parent);
+            }
+        }.go(rel);
+        return types;
+    }
+
     @Override
     protected Portal processBind(CachedQuery cachedQuery, String portalName,
                                  FormatCode[] paramFormats,
@@ -301,13 +463,96 @@ public final class QueryEngine extends AbstractQueryProcessor {
         if (cStmt.isDdl())
             return new CursorDdl(cStmt, portalName, ddlRunner);
 
-        // TODO: query on multiple data sources
-        SqlNode validatedQuery = cStmt.getValidatedQuery();
+        if (cStmt.isCopyFrom())
+            return bindCopyFrom(cStmt, portalName);
+
+        QueryAnalysis analysis = cStmt.getAnalysis();
+        if (analysis.isByPass())
+            checkPrivilegeThrow(analysis);
+
+        ByPassQuery byPass = cStmt.getByPassQuery();
+        if (byPass == null || byPass.getSchemaVersion() != schemaManager.getVersion()) {
+            byPass = resolveByPassQuery(cStmt.getValidatedQuery(), analysis);
+            cStmt.setByPassQuery(byPass);
+        }
+
+        LOG.info("create portal '" + portalName + "' for by-pass (session=" + Session.currentSession().getId() + ')');
+        // literals of the normalized query are bound with the parameters
+        FormatCode[] bindFormats = cStmt.getBindParamFormats(paramFormats);
+        byte[][] bindValues = cStmt.getBindParamValues(paramValues);
+        Portal p;
+        if (byPass.isHive())
+            p = new CursorHive(cStmt, portalName, bindFormats, bindValues,
+                    resultFormats, byPass, fetchOptions);
+        else {
+            p = new CursorByPass(cStmt, portalName, bindFormats, bindValues,
+                    resultFormats, byPass, fetchOptions);
+        }
+        return p;
+    }
+
+    private Portal bindCopyFrom(CachedStatement cStmt, String portalName) throws PostgresException {
+        QueryAnalysis analysis = cStmt.getAnalysis();
+        List<String> fqn = analysis.getTableNames().get(0);
+        String dataSourceName = fqn.get(0);
+        String schemaName = fqn.get(1);
+        String tableName = fqn.get(2);
+
+        checkPrivilegeThrow(analysis);
+
+        try {
+            MetaDataSource dataSource = metaContext.getDataSource(dataSourceName);
+            if (dataSource.getDataSourceType() == MetaDataSource.DataSourceType.METAMODEL
+                    || dataSource.getConnectionString().startsWith("jdbc:hive2:")) {
+                PostgresErrorData edata = new PostgresErrorData(
+                        PostgresSeverity.ERROR,
+                        PostgresSQLState.FEATURE_NOT_SUPPORTED,
+                        "COPY FROM STDIN is not supported for data source '" + dataSourceName + "'");
+                throw new PostgresException(edata);
+            }
+        } catch (MetaException e) {
+            PostgresErrorData edata = new PostgresErrorData(
+                    PostgresSeverity.ERROR,
+                    "failed to get DataSource");
+            throw new PostgresException(edata, e);
+        }
+
+        PostgresAttribute[] attrs = cStmt.getResultAttributes();
+        SqlDialect dialect = SqlDialect.DatabaseProduct.POSTGRESQL.getDialect();
+        StringBuilder insertSql = new StringBuilder("INSERT INTO ");
+        if (!"__DEFAULT".equals(schemaName))
+            insertSql.append(dialect.quoteIdentifier(schemaName)).append('.');
+        insertSql.append(dialect.quoteIdentifier(tableName)).append(" (");
+        for (int i = 0; i < attrs.length; i++) {
+            if (i > 0)
+                insertSql.append(", ");
+            insertSql.append(dialect.quoteIdentifier(attrs[i].getName()));
+        }
+        insertSql.append(") VALUES (");
+        for (int i = 0; i < attrs.length; i++)
+            insertSql.append(i > 0 ? ", ?" : "?");
+        insertSql.append(')');
+
+        FormatCode[] formats = new FormatCode[attrs.length];
+        Arrays.fill(formats, FormatCode.TEXT);
+        TupleDesc tupDesc = new TupleDesc(attrs, formats);
+
+        int batchSize = conf.getInt(OctopusConfiguration.MASTER_COPY_FROM_BATCH_SIZE,
+                COPY_FROM_BATCH_SIZE_DEFAULT);
+        int commitInterval = conf.getInt(OctopusConfiguration.MASTER_COPY_FROM_COMMIT_INTERVAL, 0);
+
+        LOG.info("create portal '" + portalName + "' for COPY FROM STDIN (session=" + Session.currentSession().getId() + ')');
+        return new CursorCopyFrom(cStmt, portalName, dataSourceName,
+                insertSql.toString(), tupDesc, batchSize, commitInterval);
+    }
 
-        List<String> dsNames = getDatasourceNames(validatedQuery);
+    private ByPassQuery resolveByPassQuery(SqlNode validatedQuery, QueryAnalysis analysis)
+            throws PostgresException {
+        // a schema change after this leads to resolving again on the next Bind
+        long schemaVersion = schemaManager.getVersion();
 
-        String connectionString = null;
-        String dataSourceName = null;
+        // TODO: query on multiple data sources
+        List<String> dsNames = analysis.getDataSourceNames();
 
         /*
         // FIXME: temporarily block queries for data sources of type MetaModel
@@ -330,79 +575,44 @@ public final class QueryEngine extends AbstractQueryProcessor {
         }
         */
 
-        if (dsNames.size() > 1) { // complex query: by-pass to Calcite
+        if (!analysis.isByPass()) { // complex query: by-pass to Calcite
             LOG.debug("complex query: " + validatedQuery.toString());
-            connectionString = "jdbc:octopus-calcite:";
-        } else {
-            if (!checkSystemPrivilege(SystemPrivilege.SELECT_ANY_TABLE))
-                checkSelectPrivilegeThrow(validatedQuery);
-
-            LOG.debug("by-pass query: " + validatedQuery.toString());
-
-            dataSourceName = dsNames.get(0);
-            try {
-                MetaDataSource dataSource = metaContext.getDataSource(dataSourceName);
-                if (dataSource.getDataSourceType() == MetaDataSource.DataSourceType.METAMODEL) {
-                    /*
-                     * FIXME: `dataSourceName` should not be used to distinguish query type
-                     * refactor related codes (CursorByPass)
-                     */
-                    dataSourceName = null;
-                }
-
-                connectionString = dataSource.getConnectionString();
-            } catch (MetaException e) {
-                PostgresErrorData edata = new PostgresErrorData(
-                        PostgresSeverity.ERROR,
-                        "failed to get DataSource");
-                throw new PostgresException(edata, e);
-            }
+            return ByPassQuery.ofCalcite(validatedQuery, schemaVersion);
         }
 
-        LOG.info("create portal '" + portalName + "' for by-pass (session=" + Session.currentSession().getId() + ')');
-        Portal p;
-        if (connectionString.startsWith("jdbc:hive2:"))
-            p = new CursorHive(cStmt, portalName, paramFormats, paramValues,
-                    resultFormats, dataSourceName);
-        else {
-            p = new CursorByPass(cStmt, portalName, paramFormats, paramValues,
-                    resultFormats, dataSourceName);
-        }
-        return p;
-    }
+        LOG.debug("by-pass query: " + validatedQuery.toString());
 
-    private List<String> getDatasourceNames(SqlNode query) {
-        final Set<String> dsSet = new HashSet<>();
-        query.accept(new SqlShuttle() {
-            @Override
-            public SqlNode visit(SqlIdentifier identifier) {
-                // check whether this is fully qualified table name
-                if (identifier.names.size() == 3) {
-                    dsSet.add(identifier.names.get(0));
-                }
-                return identifier;
+        String dataSourceName = dsNames.get(0);
+        try {
+            MetaDataSource dataSource = metaContext.getDataSource(dataSourceName);
+            if (dataSource.getDataSourceType() == MetaDataSource.DataSourceType.METAMODEL) {
+                /*
+                 * FIXME: `dataSourceName` should not be used to distinguish query type
+                 * refactor related codes (CursorByPass)
+                 */
+                return ByPassQuery.ofCalcite(validatedQuery, schemaVersion);
             }
-        });
 
-        return new ArrayList<>(dsSet);
+            return ByPassQuery.ofDataSource(validatedQuery, dataSourceName,
+                    dataSource.getConnectionString(), schemaVersion);
+        } catch (MetaException e) {
+            PostgresErrorData edata = new PostgresErrorData(
+                    PostgresSeverity.ERROR,
+                    "failed to get DataSource");
+            throw new PostgresException(edata, e);
+        }
     }
 
-    private void checkSelectPrivilegeThrow(SqlNode query) throws PostgresException {
-        final PostgresException[] e = {null};
+    // privileges on the objects referenced by the query
+    private void checkPrivilegeThrow(QueryAnalysis analysis) throws PostgresException {
+        if (checkSystemPrivilege(analysis.getSystemPrivilege()))
+            return;
 
-        query.accept(new SqlShuttle() {
-            @Override
-            public SqlNode visit(SqlIdentifier identifier) {
-                if (identifier.names.size() == 3 && e[0] == null) {
-                    String[] schemaName = {identifier.names.get(0), identifier.names.get(1)};
-                    e[0] = checkObjectPrivilegeInternal(ObjectPrivilege.SELECT, schemaName);
-                }
-                return identifier;
-            }
-        });
-
-        if (e[0] != null)
-            throw e[0];
+        for (String[] schemaName : analysis.getSchemaNames()) {
+            PostgresException e = checkObjectPrivilegeInternal(analysis.getObjectPrivilege(), schemaName);
+            if (e != null)
+                throw e;
+        }
     }
 
     private boolean checkSystemPrivilege(SystemPrivilege sysPriv) {
@@ -492,7 +702,8 @@ public final class QueryEngine extends AbstractQueryProcessor {
             } else {
                 dataSource = metaContext.addJdbcDataSource(driverName, connectionString, dataSourceName);
                 connectionManager.registerPool(dataSourceName,
-                        driverName, connectionString);
+                        driverName, connectionString,
+                        PoolOptions.parse(dataSource.getPoolOptions()));
             }
             schemaManager.addDataSource(dataSource);
         }
@@ -501,14 +712,11 @@ public final class QueryEngine extends AbstractQueryProcessor {
         public void updateDataSource(OctopusSqlObjectTarget target) throws Exception {
             checkSystemPrivilegeThrow(SystemPrivilege.ALTER_SYSTEM);
 
-            /* TODO: reloading schemaManager could be inefficient! */
-
             String dataSourceName = target.getDataSource();
             final String schemaRegex = target.getSchema() == null ? null : convertPattern(target.getSchema());
             final String tableRegex = target.getTable() == null ? null : convertPattern(target.getTable());
             MetaDataSource dataSource = metaContext.updateJdbcDataSource(dataSourceName, schemaRegex, tableRegex);
-            schemaManager.dropDataSource(dataSourceName);
-            schemaManager.addDataSource(dataSource);
+            schemaManager.updateDataSource(dataSource);
         }
 
         @Override
@@ -520,6 +728,30 @@ public final class QueryEngine extends AbstractQueryProcessor {
             connectionManager.closePool(dataSourceName);
         }
 
+        @Override
+        public void alterDataSourcePool(String dataSourceName, Map<String, String> poolOptions) throws Exception {
+            checkSystemPrivilegeThrow(SystemPrivilege.ALTER_SYSTEM);
+
+            MetaDataSource dataSource = metaContext.getDataSource(dataSourceName);
+            PoolOptions newOptions;
+            try {
+                newOptions = PoolOptions.parse(dataSource.getPoolOptions());
+                for (Map.Entry<String, String> e : poolOptions.entrySet())
+                    newOptions = newOptions.with(e.getKey(), e.getValue());
+                newOptions.validate(conf);
+            } catch (IllegalArgumentException e) {
+                PostgresErrorData edata = new PostgresErrorData(
+                        PostgresSeverity.ERROR,
+                        PostgresSQLState.INVALID_PARAMETER_VALUE,
+                        e.getMessage());
+                throw new PostgresException(edata, e);
+            }
+
+            metaContext.setDataSourcePoolOptions(dataSourceName, newOptions.toString());
+            if (dataSource.getDataSourceType() != MetaDataSource.DataSourceType.METAMODEL)
+                connectionManager.alterPool(dataSourceName, newOptions);
+        }
+
         @Override
         public void createUser(String name, String password) throws Exception {
             checkSystemPrivilegeThrow(SystemPrivilege.CREATE_USER);
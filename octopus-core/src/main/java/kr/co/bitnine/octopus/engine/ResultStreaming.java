@@ -0,0 +1,73 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.engine;
+
+import kr.co.bitnine.octopus.frame.ConnectionManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/*
+ * How to make a JDBC driver fetch a result in chunks instead of reading
+ * it into memory at once. Without this, a large by-pass query is held in
+ * the heap entirely by drivers like PostgreSQL and MySQL.
+ */
+enum ResultStreaming {
+    // cursor based fetch works only in a transaction
+    POSTGRESQL {
+        @Override
+        void prepare(Connection conn) throws SQLException {
+            if (conn.getAutoCommit())
+                conn.setAutoCommit(false);
+        }
+    },
+    // Integer.MIN_VALUE makes Connector/J stream rows one by one
+    MYSQL {
+        @Override
+        void setFetchSize(PreparedStatement stmt, int fetchSize) throws SQLException {
+            stmt.setFetchSize(Integer.MIN_VALUE);
+        }
+    },
+    DEFAULT;
+
+    static ResultStreaming of(String connectionString) {
+        if (connectionString == null)
+            return DEFAULT;
+        if (connectionString.startsWith("jdbc:postgresql:"))
+            return POSTGRESQL;
+        if (connectionString.startsWith("jdbc:mysql:") || connectionString.startsWith("jdbc:mariadb:"))
+            return MYSQL;
+        return DEFAULT;
+    }
+
+    /*
+     * Called before the statement is prepared. Connections are returned to
+     * the pool with auto-commit enabled again, so changes here do not leak.
+     */
+    void prepare(Connection conn) throws SQLException { }
+
+    final PreparedStatement prepareStatement(String dataSourceName, Connection conn, String sql)
+            throws SQLException {
+        prepare(conn);
+        return ConnectionManager.prepareStatement(dataSourceName, conn, sql);
+    }
+
+    // NOTE: some JDBC drivers do not ignore setFetchSize(0)
+    void setFetchSize(PreparedStatement stmt, int fetchSize) throws SQLException {
+        if (fetchSize > 0)
+            stmt.setFetchSize(fetchSize);
+    }
+}
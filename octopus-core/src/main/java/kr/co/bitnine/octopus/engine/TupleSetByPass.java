@@ -16,20 +16,25 @@ package kr.co.bitnine.octopus.engine;
 
 import kr.co.bitnine.octopus.postgres.access.common.TupleDesc;
 import kr.co.bitnine.octopus.postgres.catalog.PostgresAttribute;
+import kr.co.bitnine.octopus.postgres.executor.DataRowWriter;
 import kr.co.bitnine.octopus.postgres.executor.Tuple;
 import kr.co.bitnine.octopus.postgres.executor.TupleSet;
+import kr.co.bitnine.octopus.postgres.libpq.MessageStream;
 import kr.co.bitnine.octopus.postgres.utils.PostgresErrorData;
 import kr.co.bitnine.octopus.postgres.utils.PostgresException;
 import kr.co.bitnine.octopus.postgres.utils.PostgresSQLState;
 import kr.co.bitnine.octopus.postgres.utils.PostgresSeverity;
+import kr.co.bitnine.octopus.postgres.utils.adt.FormatCode;
 import kr.co.bitnine.octopus.postgres.utils.cache.Portal;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.concurrent.RejectedExecutionException;
 
-public final class TupleSetByPass implements TupleSet {
+public final class TupleSetByPass implements TupleSet, DataRowWriter {
     private static final Log LOG = LogFactory.getLog(TupleSetByPass.class);
 
     private final Portal portal;
@@ -39,10 +44,18 @@ public final class TupleSetByPass implements TupleSet {
     private int fetchSize;
     private int fetchCount;
 
-    TupleSetByPass(Portal portal, ResultSet resultSet, TupleDesc tupDesc) {
+    private ColumnWriter[] columnWriters;
+
+    private final FetchOptions fetchOptions;
+    private DataRowPipeline pipeline;
+    // all fetch threads were busy when the pipeline was to be started
+    private boolean pipelineRejected;
+
+    TupleSetByPass(Portal portal, ResultSet resultSet, TupleDesc tupDesc, FetchOptions fetchOptions) {
         this.portal = portal;
         this.resultSet = resultSet;
         this.tupDesc = tupDesc;
+        this.fetchOptions = fetchOptions;
 
         fetchSize = 0;
         fetchCount = 0;
@@ -116,8 +129,72 @@ public final class TupleSetByPass implements TupleSet {
         }
     }
 
+    @Override
+    public boolean writeDataRow(MessageStream messageStream) throws IOException, PostgresException {
+        if (fetchSize > 0 && fetchCount >= fetchSize)
+            return false;
+
+        if (columnWriters == null) {
+            PostgresAttribute[] attrs = tupDesc.getAttributes();
+            FormatCode[] formats = tupDesc.getResultFormats();
+            ColumnWriter[] writers = new ColumnWriter[attrs.length];
+            for (int i = 0; i < attrs.length; i++)
+                writers[i] = ColumnWriter.of(attrs[i].getType(), formats[i]);
+            columnWriters = writers;
+        }
+
+        // rows are fetched ahead only if all of them are to be sent
+        if (pipeline == null && !pipelineRejected && fetchOptions.getPipelineDepth() > 0 && fetchSize == 0) {
+            DataRowPipeline newPipeline = new DataRowPipeline(resultSet, columnWriters,
+                    messageStream.getSendBufferSize(), fetchOptions.getPipelineDepth(),
+                    fetchOptions.getSpoolDir(), fetchOptions.getSpoolMaxSize());
+            try {
+                newPipeline.start(fetchOptions.getPipelineExecutor());
+                pipeline = newPipeline;
+            } catch (RejectedExecutionException e) {
+                LOG.debug("all fetch threads are busy, fetch rows in the session");
+                pipelineRejected = true;
+            }
+        }
+        if (pipeline != null) {
+            boolean more = pipeline.transferTo(messageStream);
+            if (pipeline.isFetched() && portal instanceof ConnectionHolder)
+                ((ConnectionHolder) portal).releaseConnection();
+            if (more)
+                return true;
+
+            portal.setState(Portal.State.DONE);
+            return false;
+        }
+
+        try {
+            if (!resultSet.next()) {
+                portal.setState(Portal.State.DONE);
+                return false;
+            }
+
+            messageStream.beginMessage('D');
+            messageStream.writeShort((short) columnWriters.length);
+            for (int i = 0; i < columnWriters.length; i++)
+                columnWriters[i].write(resultSet, i + 1, messageStream);
+            messageStream.endMessage();
+
+            fetchCount++;
+            return true;
+        } catch (SQLException e) {
+            messageStream.cancelMessage();
+
+            PostgresErrorData edata = new PostgresErrorData(
+                    PostgresSeverity.ERROR,
+                    "failed to fetch a row");
+            throw new PostgresException(edata, e);
+        }
+    }
+
     @Override
     public void close() throws PostgresException {
+        stopPipeline();
+
         try {
             resultSet.close();
         } catch (SQLException e) {
@@ -128,6 +205,15 @@ public final class TupleSetByPass implements TupleSet {
         }
     }
 
+    // the fetch task must end before the statement is closed
+    void stopPipeline() {
+        if (pipeline == null)
+            return;
+
+        pipeline.close();
+        pipeline = null;
+    }
+
     void resetFetchSize(int numRows) {
         fetchSize = numRows;
         fetchCount = 0;
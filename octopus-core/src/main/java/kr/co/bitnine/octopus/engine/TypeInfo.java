@@ -15,6 +15,7 @@
 package kr.co.bitnine.octopus.engine;
 
 import kr.co.bitnine.octopus.postgres.catalog.PostgresType;
+import org.apache.calcite.sql.type.SqlTypeName;
 
 import java.sql.Types;
 import java.util.HashMap;
@@ -69,4 +70,41 @@ public final class TypeInfo {
         Integer type = POSTGRES_TO_JDBC.get(postgresType);
         return type == null ? Types.NULL : type;
     }
+
+    // type of a result column, types without a column writer are sent as text
+    public static PostgresType postgresTypeOfSqlType(SqlTypeName sqlType) {
+        switch (sqlType) {
+        case TINYINT:
+        case SMALLINT:
+        case INTEGER:
+            return PostgresType.INT4;
+        case BIGINT:
+            return PostgresType.INT8;
+        case REAL:
+            return PostgresType.FLOAT4;
+        case FLOAT:
+        case DOUBLE:
+            return PostgresType.FLOAT8;
+        case DECIMAL:
+            return PostgresType.NUMERIC;
+        case DATE:
+            return PostgresType.DATE;
+        case TIMESTAMP:
+            return PostgresType.TIMESTAMP;
+        default:
+            return PostgresType.VARCHAR;
+        }
+    }
+
+    // type of a parameter, types which cannot be bound are UNSPECIFIED
+    public static PostgresType postgresTypeOfParamType(SqlTypeName sqlType) {
+        switch (sqlType) {
+        case CHAR:
+        case VARCHAR:
+            return PostgresType.VARCHAR;
+        default:
+            PostgresType type = postgresTypeOfSqlType(sqlType);
+            return type == PostgresType.VARCHAR ? PostgresType.UNSPECIFIED : type;
+        }
+    }
 }
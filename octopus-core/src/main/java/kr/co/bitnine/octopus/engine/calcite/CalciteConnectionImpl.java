@@ -341,7 +341,9 @@ abstract class CalciteConnectionImpl
         private final Map<Integer, CalciteServerStatement> statementMap = Maps.newHashMap();
 
         public void removeStatement(Meta.StatementHandle h) {
-            statementMap.remove(h.id);
+            CalciteServerStatement stmt = statementMap.remove(h.id);
+            if (stmt != null)
+                ((CalciteServerStatementImpl) stmt).closeResultSet();
         }
 
         public void addStatement(CalciteConnection connection,
@@ -548,8 +550,24 @@ abstract class CalciteConnectionImpl
         }
 
         public void setResultSet(Iterator<Object> iter) {
+            closeResultSet();
             this.iterator = iter;
         }
+
+        /*
+         * The iterator holds the enumerators of the query, which return
+         * their connections to the pools of the data sources on close.
+         */
+        void closeResultSet() {
+            if (iterator instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) iterator).close();
+                } catch (Exception e) {
+                    throw Throwables.propagate(e);
+                }
+            }
+            iterator = null;
+        }
     }
 
 }
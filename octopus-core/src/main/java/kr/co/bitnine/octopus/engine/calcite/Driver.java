@@ -46,10 +46,13 @@ import java.util.Properties;
 public final class Driver extends UnregisteredDriver {
     public static final String CONNECT_STRING_PREFIX = "jdbc:octopus-calcite:";
 
+    /* connect through this instead of looking the driver up in DriverManager */
+    public static final Driver INSTANCE = new Driver();
+
     private final Function0<CalcitePrepare> prepareFactory;
 
     static {
-        new Driver().register();
+        INSTANCE.register();
     }
 
     public Driver() {
@@ -17,60 +17,55 @@ package kr.co.bitnine.octopus.frame;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Cancel state is kept in a single atomic variable instead of monitors so
+ * that sessions running on virtual threads are never pinned to a carrier
+ * thread by cancel handling.
+ */
 public final class CancelContext {
     private static final Log LOG = LogFactory.getLog(CancelContext.class);
 
+    private static final int DISABLED = 0;
+    private static final int ENABLED = 1;
+    private static final int CANCELED = 2;
+
     private final Session session;
-    private boolean cancellable;
-    private volatile boolean canceled;
+    private final AtomicInteger state = new AtomicInteger(DISABLED);
 
     CancelContext(Session session) {
         this.session = session;
     }
 
     public void enterCancel() {
-        synchronized (this) {
-            if (!cancellable) {
-                cancellable = true;
-
-                if (LOG.isDebugEnabled())
-                    LOG.debug("session(" + session.getId() + ") statement cancel enabled");
-            }
+        if (state.compareAndSet(DISABLED, ENABLED)) {
+            if (LOG.isDebugEnabled())
+                LOG.debug("session(" + session.getId() + ") statement cancel enabled");
         }
     }
 
     public void exitCancel() {
-        synchronized (this) {
-            if (cancellable) {
-                cancellable = false;
-                canceled = false;
-
-                if (LOG.isDebugEnabled())
-                    LOG.debug("session(" + session.getId() + ") statement cancel disabled");
-            }
+        if (state.getAndSet(DISABLED) != DISABLED) {
+            if (LOG.isDebugEnabled())
+                LOG.debug("session(" + session.getId() + ") statement cancel disabled");
         }
     }
 
     public void cancel() {
-        synchronized (this) {
-            if (cancellable) {
-                canceled = true;
-
-                LOG.info("statement cancel received for session(" + session.getId() + ")");
-            }
-        }
+        if (state.compareAndSet(ENABLED, CANCELED))
+            LOG.info("statement cancel received for session(" + session.getId() + ")");
     }
 
     public boolean isCanceled() {
-        if (!canceled)
+        if (state.get() != CANCELED)
             return false;
 
-        synchronized (this) {
-            if (LOG.isDebugEnabled())
-                LOG.debug("consume session(" + session.getId() + ") statement cancel");
+        if (!state.compareAndSet(CANCELED, ENABLED))
+            return false;
 
-            canceled = false;
-            return true;
-        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("consume session(" + session.getId() + ") statement cancel");
+        return true;
     }
 }
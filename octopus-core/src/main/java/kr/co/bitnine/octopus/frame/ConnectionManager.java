@@ -19,29 +19,107 @@ import kr.co.bitnine.octopus.meta.MetaContext;
 import kr.co.bitnine.octopus.meta.MetaStore;
 import kr.co.bitnine.octopus.meta.model.MetaDataSource;
 import org.apache.commons.dbcp2.ConnectionFactory;
-import org.apache.commons.dbcp2.DriverManagerConnectionFactory;
+import org.apache.commons.dbcp2.DelegatingConnection;
+import org.apache.commons.dbcp2.DriverConnectionFactory;
 import org.apache.commons.dbcp2.PoolableConnection;
 import org.apache.commons.dbcp2.PoolableConnectionFactory;
-import org.apache.commons.dbcp2.PoolingDriver;
+import org.apache.commons.dbcp2.PoolingDataSource;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.commons.pool2.ObjectPool;
 import org.apache.commons.pool2.impl.GenericObjectPool;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.service.AbstractService;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
+import java.sql.Driver;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * The only registry of connection pools to the data sources. Both by-pass
+ * queries and the Calcite JDBC adapter borrow connections from here.
+ */
 public final class ConnectionManager extends AbstractService {
     private static final Log LOG = LogFactory.getLog(ConnectionManager.class);
-    private static final String DRIVER_PREFIX = "jdbc:apache:commons:dbcp:";
+
+    private static final int STATEMENT_CACHE_SIZE_DEFAULT = 64;
+    private static final int FETCH_THREADS_DEFAULT = 16;
+    private static final long FETCH_THREADS_KEEPALIVE = 60;
+    private static final long FETCH_THREADS_SHUTDOWN_TIMEOUT = 5;
+
+    private static final ConcurrentMap<String, Pool> POOLS = new ConcurrentHashMap<>();
 
     private final MetaStore metaStore;
+    // fetches rows of by-pass queries ahead, see DataRowPipeline
+    private ThreadPoolExecutor fetchExecutor;
+
+    private static final class Pool {
+        private final StatementCounter statementCounter;
+        private final GenericObjectPool<PoolableConnection> connectionPool;
+        private final PoolingDataSource<PoolableConnection> dataSource;
+
+        Pool(StatementCounter statementCounter, GenericObjectPool<PoolableConnection> connectionPool) {
+            this.statementCounter = statementCounter;
+            this.connectionPool = connectionPool;
+            dataSource = new PoolingDataSource<>(connectionPool);
+        }
+
+        @Override
+        public String toString() {
+            return "active=" + connectionPool.getNumActive()
+                    + ", idle=" + connectionPool.getNumIdle()
+                    + ", maxTotal=" + connectionPool.getMaxTotal()
+                    + ", statementCacheHitRate=" + statementCounter.getHitRate();
+        }
+    }
+
+    /*
+     * Counts statements requested through prepareStatement() and those the
+     * backend actually prepared, i.e. misses of the statement caches of the
+     * connections in a pool.
+     */
+    private static final class StatementCounter {
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong prepares = new AtomicLong();
+
+        double getHitRate() {
+            long req = requests.get();
+            if (req == 0)
+                return 0.0;
+            return Math.max(0L, req - prepares.get()) / (double) req;
+        }
+    }
 
-    private PoolingDriver poolingDriver;
+    // a backend connection which counts the statements prepared on it
+    private static final class CountingConnection extends DelegatingConnection<Connection> {
+        private final StatementCounter statementCounter;
+
+        CountingConnection(Connection conn, StatementCounter statementCounter) {
+            super(conn);
+            this.statementCounter = statementCounter;
+        }
+
+        @Override
+        public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency)
+                throws SQLException {
+            statementCounter.prepares.incrementAndGet();
+            return super.prepareStatement(sql, resultSetType, resultSetConcurrency);
+        }
+    }
 
     public ConnectionManager(MetaStore metaStore) {
         super(ConnectionManager.class.getName());
@@ -53,9 +131,22 @@ public final class ConnectionManager extends AbstractService {
     protected void serviceInit(Configuration conf) throws Exception {
         LOG.info("initialize service - " + getName());
 
-        Class.forName("org.apache.commons.dbcp2.PoolingDriver");
         Class.forName("kr.co.bitnine.octopus.engine.calcite.Driver"); // FIXME:
-        poolingDriver = (PoolingDriver) DriverManager.getDriver(DRIVER_PREFIX);
+
+        // no queue; a query which finds all threads busy is fetched by its session
+        int fetchThreads = conf.getInt(OctopusConfiguration.MASTER_BYPASS_PIPELINE_THREADS, FETCH_THREADS_DEFAULT);
+        fetchExecutor = new ThreadPoolExecutor(0, fetchThreads,
+                FETCH_THREADS_KEEPALIVE, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "octopus-fetch-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
 
         super.serviceInit(conf);
     }
@@ -66,8 +157,12 @@ public final class ConnectionManager extends AbstractService {
 
         MetaContext mc = metaStore.getMetaContext();
         for (MetaDataSource ds : mc.getDataSources()) {
+            // MetaModel data sources are queried through Calcite only
+            if (ds.getDataSourceType() == MetaDataSource.DataSourceType.METAMODEL)
+                continue;
             registerPool(ds.getName(), ds.getDriverName(),
-                    ds.getConnectionString());
+                    ds.getConnectionString(),
+                    PoolOptions.parse(ds.getPoolOptions()));
         }
         mc.close();
 
@@ -78,61 +173,157 @@ public final class ConnectionManager extends AbstractService {
     protected void serviceStop() throws Exception {
         LOG.info("stop service - " + getName());
 
-        for (String poolName : poolingDriver.getPoolNames())
-            closePool(poolName);
+        // fetch tasks end before the connections they read from are closed
+        fetchExecutor.shutdownNow();
+        if (!fetchExecutor.awaitTermination(FETCH_THREADS_SHUTDOWN_TIMEOUT, TimeUnit.SECONDS))
+            LOG.warn("there were fetch tasks still running");
+
+        for (String dataSourceName : POOLS.keySet())
+            closePool(dataSourceName);
 
         super.serviceStop();
     }
 
+    public ExecutorService getFetchExecutor() {
+        return fetchExecutor;
+    }
+
     public void registerPool(String dataSourceName, String driverName,
-                             String connectionString)
-            throws ClassNotFoundException {
+                             String connectionString, PoolOptions poolOptions)
+            throws ClassNotFoundException, SQLException {
         LOG.debug("register connection pool of the data source '" + dataSourceName + '"');
 
-        if (!driverName.toLowerCase().equals("metamodel")) {
-            Class.forName(driverName);
-        }
-        ObjectPool<PoolableConnection> connectionPool =
-                createPool(connectionString);
-        poolingDriver.registerPool(dataSourceName, connectionPool);
+        Class.forName(driverName);
+        StatementCounter statementCounter = new StatementCounter();
+        GenericObjectPool<PoolableConnection> connectionPool =
+                createPool(connectionString, statementCounter);
+        poolOptions.applyTo(connectionPool, getConfig());
+        Pool old = POOLS.put(dataSourceName, new Pool(statementCounter, connectionPool));
+        if (old != null)
+            old.connectionPool.close();
+        warmUp(dataSourceName, connectionPool);
     }
 
-    private ObjectPool<PoolableConnection> createPool(String connectionString) {
+    private GenericObjectPool<PoolableConnection> createPool(String connectionString,
+                                                             final StatementCounter statementCounter)
+            throws SQLException {
         // A ConnectionFactory that the pool will use to create Connections.
-        ConnectionFactory connectionFactory =
-                new DriverManagerConnectionFactory(connectionString, null);
+        // The driver is looked up once here instead of on every connect.
+        Driver driver = DriverManager.getDriver(connectionString);
+        final ConnectionFactory driverConnectionFactory =
+                new DriverConnectionFactory(driver, connectionString, new Properties());
+        ConnectionFactory connectionFactory = new ConnectionFactory() {
+            @Override
+            public Connection createConnection() throws SQLException {
+                return new CountingConnection(driverConnectionFactory.createConnection(), statementCounter);
+            }
+        };
         // PoolableConnectionFactory wraps the real Connections with the
         // classes that implement the pooling functionality.
         PoolableConnectionFactory poolableConnectionFactory =
                 new PoolableConnectionFactory(connectionFactory, null);
         poolableConnectionFactory.setValidationQuery("SELECT 1");
+        // Each connection keeps its prepared statements open for reuse and
+        // closes them when the connection is destroyed.
+        int statementCacheSize = getConfig().getInt(
+                OctopusConfiguration.MASTER_CONNECTION_POOL_STATEMENT_CACHE_SIZE,
+                STATEMENT_CACHE_SIZE_DEFAULT);
+        if (statementCacheSize > 0) {
+            poolableConnectionFactory.setPoolStatements(true);
+            poolableConnectionFactory.setMaxOpenPrepatedStatements(statementCacheSize);
+        }
 
         // Actual pool of connections.
         GenericObjectPool<PoolableConnection> connectionPool =
                 new GenericObjectPool<>(poolableConnectionFactory);
-        int connMax = getConfig()
-                .getInt(OctopusConfiguration.MASTER_CONNECTION_POOL_MAX, 8);
-        connectionPool.setMaxTotal(connMax);
-        connectionPool.setTestOnBorrow(true);
         // Set the factory's pool property to the owning pool.
         poolableConnectionFactory.setPool(connectionPool);
 
         return connectionPool;
     }
 
+    public void alterPool(String dataSourceName, PoolOptions poolOptions)
+            throws SQLException {
+        LOG.info("alter connection pool of the data source '" + dataSourceName + "' (" + poolOptions + ")");
+
+        GenericObjectPool<PoolableConnection> connectionPool =
+                getPool(dataSourceName).connectionPool;
+        poolOptions.applyTo(connectionPool, getConfig());
+        warmUp(dataSourceName, connectionPool);
+    }
+
+    // open min-idle connections now rather than on the first queries
+    private void warmUp(String dataSourceName, GenericObjectPool<?> connectionPool) {
+        try {
+            connectionPool.preparePool();
+        } catch (Exception e) {
+            LOG.warn("failed to warm up connection pool of the data source '"
+                    + dataSourceName + "': " + e.getMessage());
+        }
+    }
+
     public void closePool(String dataSourceName) {
         LOG.info("close connection pool of the data source '" + dataSourceName + '"');
 
+        Pool pool = POOLS.remove(dataSourceName);
+        if (pool == null)
+            return;
+        LOG.info("connection pool of the data source '" + dataSourceName + "': " + pool);
+
         try {
-            poolingDriver.closePool(dataSourceName);
-        } catch (SQLException e) {
+            pool.dataSource.close();
+        } catch (Exception e) {
             LOG.error(ExceptionUtils.getStackTrace(e));
         }
     }
 
+    private static Pool getPool(String dataSourceName) throws SQLException {
+        Pool pool = POOLS.get(dataSourceName);
+        if (pool == null)
+            throw new SQLException("connection pool of the data source '" + dataSourceName + "' is not registered");
+        return pool;
+    }
+
+    /**
+     * Returns the pooled {@link DataSource} of the data source. The handle
+     * stays valid until the data source is dropped.
+     */
+    public static DataSource getDataSource(String dataSourceName)
+            throws SQLException {
+        return getPool(dataSourceName).dataSource;
+    }
+
+    /**
+     * Prepares {@code sql} for a forward-only, read-only result on a
+     * connection borrowed from the pool of the data source. If the
+     * connection has prepared it before, the backend statement is reused.
+     * {@code dataSourceName} is null for connections not from a pool.
+     */
+    public static PreparedStatement prepareStatement(String dataSourceName,
+                                                     Connection conn, String sql)
+            throws SQLException {
+        Pool pool = dataSourceName == null ? null : POOLS.get(dataSourceName);
+        if (pool != null)
+            pool.statementCounter.requests.incrementAndGet();
+        return conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    }
+
+    public static double getStatementCacheHitRate(String dataSourceName)
+            throws SQLException {
+        return getPool(dataSourceName).statementCounter.getHitRate();
+    }
+
+    // connections borrowed from the pool and not returned yet
+    public static int getNumActive(String dataSourceName)
+            throws SQLException {
+        return getPool(dataSourceName).connectionPool.getNumActive();
+    }
+
     public static Connection getConnection(String dataSourceName)
             throws SQLException {
-        LOG.info("try to get a connection to the data source '" + dataSourceName + '"');
-        return DriverManager.getConnection(DRIVER_PREFIX + dataSourceName);
+        Pool pool = getPool(dataSourceName);
+        if (LOG.isDebugEnabled())
+            LOG.debug("borrow a connection from the pool of the data source '" + dataSourceName + "' (" + pool + ")");
+        return pool.dataSource.getConnection();
     }
 }
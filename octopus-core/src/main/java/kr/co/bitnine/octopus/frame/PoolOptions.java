@@ -0,0 +1,177 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.frame;
+
+import kr.co.bitnine.octopus.conf.OctopusConfiguration;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.hadoop.conf.Configuration;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Pool settings of a data source, stored with its metadata as a
+ * comma-separated list of {@code name=value}. Settings which are not given
+ * fall back to the master.connection.pool.* configuration.
+ */
+public final class PoolOptions {
+    public static final String MAX_TOTAL = "max_total";
+    public static final String MAX_IDLE = "max_idle";
+    public static final String MIN_IDLE = "min_idle";
+    public static final String MAX_WAIT = "max_wait";
+    public static final String VALIDATION_INTERVAL = "validation_interval";
+
+    public static final List<String> NAMES = Collections.unmodifiableList(Arrays.asList(
+            MAX_TOTAL, MAX_IDLE, MIN_IDLE, MAX_WAIT, VALIDATION_INTERVAL));
+
+    static final int MAX_TOTAL_DEFAULT = 8;
+    static final int MAX_IDLE_DEFAULT = 8;
+    static final int MIN_IDLE_DEFAULT = 0;
+    static final long MAX_WAIT_DEFAULT = -1L;
+    static final long VALIDATION_INTERVAL_DEFAULT = 30000L;
+
+    private final Map<String, Long> options;
+
+    private PoolOptions(Map<String, Long> options) {
+        this.options = options;
+    }
+
+    public static PoolOptions parse(String text) {
+        PoolOptions poolOptions = new PoolOptions(new TreeMap<String, Long>());
+        if (text == null || text.isEmpty())
+            return poolOptions;
+
+        for (String option : text.split(",")) {
+            int eq = option.indexOf('=');
+            if (eq < 0)
+                throw new IllegalArgumentException("invalid pool option '" + option + "'");
+            poolOptions = poolOptions.with(option.substring(0, eq).trim(),
+                    option.substring(eq + 1).trim());
+        }
+        return poolOptions;
+    }
+
+    /**
+     * Returns a copy of these options with {@code name} set to
+     * {@code value}, or reset to its default if {@code value} is null.
+     */
+    public PoolOptions with(String name, String value) {
+        if (!NAMES.contains(name))
+            throw new IllegalArgumentException("unrecognized pool option '" + name + "'");
+
+        Map<String, Long> newOptions = new TreeMap<>(options);
+        if (value == null) {
+            newOptions.remove(name);
+            return new PoolOptions(newOptions);
+        }
+
+        long v;
+        try {
+            v = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("pool option '" + name + "' requires an integer value: " + value);
+        }
+        if (v < 0 && !MAX_WAIT.equals(name))
+            throw new IllegalArgumentException("pool option '" + name + "' must not be negative");
+        if (v < 1 && MAX_TOTAL.equals(name))
+            throw new IllegalArgumentException("pool option '" + name + "' must be at least 1");
+        if (v > Integer.MAX_VALUE && isIntOption(name))
+            throw new IllegalArgumentException("pool option '" + name + "' is out of range: " + value);
+        newOptions.put(name, v);
+        return new PoolOptions(newOptions);
+    }
+
+    private static boolean isIntOption(String name) {
+        return MAX_TOTAL.equals(name) || MAX_IDLE.equals(name) || MIN_IDLE.equals(name);
+    }
+
+    /**
+     * Checks the settings against each other, taking the defaults from
+     * {@code conf} for those which are not given.
+     */
+    public void validate(Configuration conf) {
+        int maxTotal = getMaxTotal(conf);
+        if (maxTotal < 1)
+            throw new IllegalArgumentException("pool option '" + MAX_TOTAL + "' must be at least 1");
+        if (getMinIdle(conf) > maxTotal) {
+            throw new IllegalArgumentException("pool option '" + MIN_IDLE
+                    + "' must not be greater than '" + MAX_TOTAL + "' (" + maxTotal + ")");
+        }
+    }
+
+    public int getMaxTotal(Configuration conf) {
+        return (int) get(MAX_TOTAL, conf.getInt(
+                OctopusConfiguration.MASTER_CONNECTION_POOL_MAX, MAX_TOTAL_DEFAULT));
+    }
+
+    public int getMaxIdle(Configuration conf) {
+        return (int) get(MAX_IDLE, conf.getInt(
+                OctopusConfiguration.MASTER_CONNECTION_POOL_MAX_IDLE, MAX_IDLE_DEFAULT));
+    }
+
+    public int getMinIdle(Configuration conf) {
+        return (int) get(MIN_IDLE, conf.getInt(
+                OctopusConfiguration.MASTER_CONNECTION_POOL_MIN_IDLE, MIN_IDLE_DEFAULT));
+    }
+
+    public long getMaxWait(Configuration conf) {
+        return get(MAX_WAIT, conf.getLong(
+                OctopusConfiguration.MASTER_CONNECTION_POOL_MAX_WAIT, MAX_WAIT_DEFAULT));
+    }
+
+    public long getValidationInterval(Configuration conf) {
+        return get(VALIDATION_INTERVAL, conf.getLong(
+                OctopusConfiguration.MASTER_CONNECTION_POOL_VALIDATION_INTERVAL, VALIDATION_INTERVAL_DEFAULT));
+    }
+
+    private long get(String name, long defaultValue) {
+        Long value = options.get(name);
+        return value == null ? defaultValue : value;
+    }
+
+    /*
+     * Connections are validated by the evictor while they are idle instead
+     * of on every borrow, which would cost a round trip per query. Without
+     * the interval the evictor does not run, so they are validated on
+     * borrow as before. Every run tests all idle connections (-1 means
+     * 1/1 of them) rather than the default of 3, so none of them goes
+     * unvalidated for longer than the interval.
+     */
+    void applyTo(GenericObjectPool<?> pool, Configuration conf) {
+        long validationInterval = getValidationInterval(conf);
+        pool.setMaxTotal(getMaxTotal(conf));
+        pool.setMaxIdle(getMaxIdle(conf));
+        pool.setMinIdle(getMinIdle(conf));
+        pool.setMaxWaitMillis(getMaxWait(conf));
+        pool.setTestOnBorrow(validationInterval <= 0);
+        pool.setTestWhileIdle(validationInterval > 0);
+        pool.setTimeBetweenEvictionRunsMillis(validationInterval);
+        pool.setNumTestsPerEvictionRun(-1);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> e : options.entrySet()) {
+            if (sb.length() > 0)
+                sb.append(',');
+            sb.append(e.getKey()).append('=').append(e.getValue());
+        }
+        return sb.toString();
+    }
+}
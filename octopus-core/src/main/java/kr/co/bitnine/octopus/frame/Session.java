@@ -14,6 +14,7 @@
 
 package kr.co.bitnine.octopus.frame;
 
+import kr.co.bitnine.octopus.conf.OctopusConfiguration;
 import kr.co.bitnine.octopus.engine.QueryEngine;
 import kr.co.bitnine.octopus.meta.MetaContext;
 import kr.co.bitnine.octopus.meta.MetaException;
@@ -21,6 +22,10 @@ import kr.co.bitnine.octopus.postgres.access.common.TupleDesc;
 import kr.co.bitnine.octopus.postgres.access.transam.TransactionStatus;
 import kr.co.bitnine.octopus.postgres.catalog.PostgresAttribute;
 import kr.co.bitnine.octopus.postgres.catalog.PostgresType;
+import kr.co.bitnine.octopus.postgres.commands.CopyFrom;
+import kr.co.bitnine.octopus.postgres.commands.CopyFromTarget;
+import kr.co.bitnine.octopus.postgres.commands.CopyTo;
+import kr.co.bitnine.octopus.postgres.executor.DataRowWriter;
 import kr.co.bitnine.octopus.postgres.executor.Tuple;
 import kr.co.bitnine.octopus.postgres.executor.TupleSet;
 import kr.co.bitnine.octopus.postgres.libpq.Message;
@@ -44,6 +49,7 @@ import org.apache.hadoop.conf.Configuration;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.net.StandardSocketOptions;
 import java.nio.channels.SocketChannel;
 import java.util.Map;
 import java.util.Random;
@@ -51,6 +57,11 @@ import java.util.Random;
 public final class Session implements Runnable {
     private static final Log LOG = LogFactory.getLog(Session.class);
 
+    private static final int SEND_BUFFER_SIZE_MIN = 8 * 1024;
+    private static final int SEND_BUFFER_SIZE_MAX = 256 * 1024;
+    private static final long FLUSH_INTERVAL_DEFAULT = 200;
+    private static final int COPY_CHUNK_SIZE_DEFAULT = 64 * 1024;
+
     private final SocketChannel clientChannel;
     private final int sessionId; // secret key
     private final CancelContext cancelContext;
@@ -59,6 +70,14 @@ public final class Session implements Runnable {
         void onClose(Session session);
 
         void onCancel(int sessionId);
+
+        /*
+         * If true, the session returns its thread whenever it waits for
+         * the next command and onIdle() is called to take over it.
+         */
+        boolean yieldsOnIdle();
+
+        void onIdle(Session session);
     }
 
     private final EventHandler eventHandler;
@@ -68,6 +87,10 @@ public final class Session implements Runnable {
     private final QueryEngine queryEngine;
 
     private final PostgresConfiguration postgresConf;
+    private final int copyChunkSize;
+
+    private boolean established;
+    private boolean sendReadyForQuery;
 
     Session(SocketChannel clientChannel, EventHandler eventHandler,
             MetaContext metaContext, ConnectionManager connectionManager,
@@ -78,17 +101,45 @@ public final class Session implements Runnable {
 
         this.eventHandler = eventHandler;
 
-        messageStream = new MessageStream(clientChannel);
+        messageStream = new MessageStream(clientChannel,
+                sendBufferSize(clientChannel, conf),
+                conf.getInt(OctopusConfiguration.MASTER_SESSION_RECV_BUFFER_SIZE,
+                        MessageStream.RECV_BUFFER_SIZE_DEFAULT),
+                conf.getLong(OctopusConfiguration.MASTER_SESSION_FLUSH_INTERVAL,
+                        FLUSH_INTERVAL_DEFAULT));
         this.metaContext = metaContext;
         queryEngine = new QueryEngine(metaContext, connectionManager, schemaManager, conf);
 
         postgresConf = new PostgresConfiguration();
+        copyChunkSize = conf.getInt(OctopusConfiguration.MASTER_SESSION_COPY_CHUNK_SIZE,
+                COPY_CHUNK_SIZE_DEFAULT);
+
+        established = false;
+        sendReadyForQuery = true;
+    }
+
+    // the send buffer of the socket can be filled with a single write
+    private static int sendBufferSize(SocketChannel channel, Configuration conf) {
+        int size = conf.getInt(OctopusConfiguration.MASTER_SESSION_SEND_BUFFER_SIZE, 0);
+        if (size > 0)
+            return size;
+
+        try {
+            size = channel.getOption(StandardSocketOptions.SO_SNDBUF);
+        } catch (IOException e) {
+            return MessageStream.SEND_BUFFER_SIZE_DEFAULT;
+        }
+        return Math.min(Math.max(size, SEND_BUFFER_SIZE_MIN), SEND_BUFFER_SIZE_MAX);
     }
 
     public int getId() {
         return sessionId;
     }
 
+    SocketChannel getClientChannel() {
+        return clientChannel;
+    }
+
     public boolean isCanceled() {
         return cancelContext.isCanceled();
     }
@@ -105,20 +156,31 @@ public final class Session implements Runnable {
 
     @Override
     public void run() {
+        boolean idle = false;
+
         LOCAL_SESSION.set(this);
         try {
-            boolean proceed = doStartup();
-            if (proceed) {
-                doAuthentication();
+            if (established) {
+                idle = messageLoop();
+            } else {
+                boolean proceed = doStartup();
+                if (proceed) {
+                    doAuthentication();
+                    established = true;
 
-                messageLoop();
+                    idle = messageLoop();
+                }
             }
         } catch (Exception e) {
             LOG.fatal(ExceptionUtils.getStackTrace(e));
         }
         LOCAL_SESSION.remove();
 
-        close();
+        // this session must not be touched after onIdle()
+        if (idle)
+            eventHandler.onIdle(this);
+        else
+            close();
     }
 
     void emitErrorReport(PostgresErrorData errorData) throws IOException {
@@ -289,10 +351,13 @@ public final class Session implements Runnable {
         LOG.info("authentication success for \"" + username + "\" (session=" + getId() + ')');
     }
 
-    private void messageLoop() throws Exception {
+    /*
+     * Returns true if this session yields its thread while waiting for
+     * the next command, false if the client terminates the session.
+     */
+    private boolean messageLoop() throws Exception {
         boolean doingExtendedQueryMessage = false;
         boolean ignoreTillSync = false;
-        boolean sendReadyForQuery = true;
 
         while (true) {
             try {
@@ -305,6 +370,11 @@ public final class Session implements Runnable {
                             .build();
                     messageStream.putMessageAndFlush(msg);
                     sendReadyForQuery = false;
+
+                    if (eventHandler.yieldsOnIdle() && !messageStream.hasPendingInput()) {
+                        LOG.debug("yield idle session(" + sessionId + ')');
+                        return true;
+                    }
                 }
 
                 Message msg = messageStream.getMessage();
@@ -377,7 +447,7 @@ public final class Session implements Runnable {
                     break;
                 case 'X':
                     LOG.info("Terminate received");
-                    return;
+                    return false;
                 case 'd':   // copy data
                 case 'c':   // copy done
                 case 'f':   // copy fail
@@ -479,42 +549,100 @@ public final class Session implements Runnable {
         FormatCode[] resultFormats = td.getResultFormats();
 
         // DataRow
-        while (true) {
-            if (isCanceled()) {
-                if (LOG.isDebugEnabled())
-                    LOG.debug("cancel sending result rows for session(" + sessionId + ')');
+        if (ts instanceof DataRowWriter) {
+            DataRowWriter writer = (DataRowWriter) ts;
+            while (true) {
+                checkCanceled();
 
-                PostgresErrorData edata = new PostgresErrorData(
-                        PostgresSeverity.ERROR,
-                        PostgresSQLState.QUERY_CANCELED,
-                        "canceling statement for session(" + getId() + ") due to user request");
-                throw new PostgresException(edata);
+                if (!writer.writeDataRow(messageStream))
+                    return;
             }
+        }
+
+        IoFunction[] ioFunctions = new IoFunction[attrs.length];
+        for (int i = 0; i < attrs.length; i++)
+            ioFunctions[i] = IoFunctions.ofType(attrs[i].getType());
+
+        while (true) {
+            checkCanceled();
 
             Tuple t = ts.next();
             if (t == null)
                 break;
 
-            Message.Builder msgBld = Message.builder('D').putShort((short) attrs.length);
+            // encode the row directly into the send buffer of messageStream
+            messageStream.beginMessage('D');
+            messageStream.writeShort((short) attrs.length);
             Object[] datums = t.getDatums();
             for (int i = 0; i < datums.length; i++) {
                 byte[] bytes;
 
-                IoFunction io = IoFunctions.ofType(attrs[i].getType());
+                IoFunction io = ioFunctions[i];
                 if (resultFormats[i] == FormatCode.TEXT)
                     bytes = io.out(datums[i]);
                 else
                     bytes = io.send(datums[i]);
 
-                if (bytes == null)
-                    msgBld.putInt(-1); // -1 indicates a NULL column value
-                else
-                    msgBld.putInt(bytes.length).putBytes(bytes);
+                if (bytes == null) {
+                    messageStream.writeInt(-1); // -1 indicates a NULL column value
+                } else {
+                    messageStream.writeInt(bytes.length);
+                    messageStream.writeBytes(bytes);
+                }
             }
-            messageStream.putMessage(msgBld.build());
+            messageStream.endMessage();
+        }
+    }
+
+    private void checkCanceled() throws PostgresException {
+        if (isCanceled()) {
+            if (LOG.isDebugEnabled())
+                LOG.debug("cancel sending result rows for session(" + sessionId + ')');
+
+            PostgresErrorData edata = new PostgresErrorData(
+                    PostgresSeverity.ERROR,
+                    PostgresSQLState.QUERY_CANCELED,
+                    "canceling statement for session(" + getId() + ") due to user request");
+            throw new PostgresException(edata);
         }
     }
 
+    // returns the completion tag of COPY
+    private String sendCopyData(Portal p, TupleSet ts) throws IOException, PostgresException {
+        LOG.debug("send CopyData messages");
+
+        CopyTo copyTo = new CopyTo(messageStream,
+                p.getCachedQuery().getCopyOptions(), copyChunkSize);
+        try {
+            copyTo.begin(ts.getTupleDesc());
+            while (true) {
+                checkCanceled();
+
+                Tuple t = ts.next();
+                if (t == null)
+                    break;
+
+                copyTo.putTuple(t);
+            }
+        } catch (PostgresException e) {
+            copyTo.abort();
+            throw e;
+        }
+
+        return p.getCompletionTag() + ' ' + copyTo.end();
+    }
+
+    // returns the completion tag of COPY
+    private String receiveCopyData(Portal p) throws IOException, PostgresException {
+        LOG.debug("receive CopyData messages");
+
+        CopyFrom copyFrom = new CopyFrom(messageStream,
+                p.getCachedQuery().getCopyOptions(), p.describe());
+        copyFrom.begin();
+
+        return p.getCompletionTag() + ' ' + ((CopyFromTarget) p).copyFrom(copyFrom);
+    }
+
     private void handleQuery(Message msg) throws IOException, OctopusException {
         String queryString = msg.getCString();
 
@@ -532,9 +660,18 @@ public final class Session implements Runnable {
 
             // FIXME: See {PortalState}
             LOG.error("run portal '" + p.getName() + "'");
+            String completionTag = null;
             try {
-                TupleSet ts = p.run(0);
-                if (ts != null) {   // ts == null if DDL
+                TupleSet ts = null;
+                if (p.getCachedQuery().isCopyFrom())
+                    completionTag = receiveCopyData(p);
+                else
+                    ts = p.run(0);
+
+                if (ts != null && p.getCachedQuery().getCopyOptions() != null) {
+                    completionTag = sendCopyData(p, ts);
+                    ts.close();
+                } else if (ts != null) {   // ts == null if DDL
                     sendRowDescription(ts.getTupleDesc(), ts.getTupleDesc().getResultFormats());
                     sendDataRow(ts, 0);
                     ts.close();
@@ -549,7 +686,7 @@ public final class Session implements Runnable {
             // NOTE: SimpleQuery has no Suspend/Execute mechanism
             assert p.getState() == Portal.State.DONE;
 
-            sendCommandComplete(p.getCompletionTag());
+            sendCommandComplete(completionTag == null ? p.getCompletionTag() : completionTag);
         } catch (PostgresException e) {
             new OctopusException(e.getErrorData(), e).emitErrorReport();
         }
@@ -591,6 +728,10 @@ public final class Session implements Runnable {
         for (short i = 0; i < numParamFormat; i++)
             paramFormats[i] = FormatCode.ofCode((int) msg.getShort());
 
+        /*
+         * msg is a view over the receive buffer of messageStream but
+         * parameter values must live as long as the portal, so copy them.
+         */
         short numParamValue = msg.getShort();
         byte[][] paramValues = new byte[numParamValue][];
         for (short i = 0; i < numParamValue; i++) {
@@ -643,9 +784,19 @@ public final class Session implements Runnable {
              * of the portal must be set with FAILED.
              */
             LOG.info("run portal '" + p.getName() + "'");
+            boolean copy = p.getCachedQuery().getCopyOptions() != null;
+            String completionTag = null;
             try {
-                TupleSet ts = p.run(numRows);
-                if (ts != null) // ts == null if DDL
+                // COPY cannot be suspended, send all rows at once
+                TupleSet ts = null;
+                if (p.getCachedQuery().isCopyFrom())
+                    completionTag = receiveCopyData(p);
+                else
+                    ts = p.run(copy ? 0 : numRows);
+
+                if (ts != null && copy)
+                    completionTag = sendCopyData(p, ts);
+                else if (ts != null) // ts == null if DDL
                     sendDataRow(ts, numRows);
             } catch (Exception e) {
                 LOG.error("failed to run portal '" + p.getName() + "'");
@@ -655,9 +806,10 @@ public final class Session implements Runnable {
             }
 
             if (p.getState() == Portal.State.ACTIVE) {
-                messageStream.putMessage(Message.builder('s').build()); // PortalSuspend
+                // PortalSuspend, let the client consume rows fetched so far
+                messageStream.putMessageAndFlush(Message.builder('s').build());
             } else {
-                sendCommandComplete(p.getCompletionTag());
+                sendCommandComplete(completionTag == null ? p.getCompletionTag() : completionTag);
                 p.close();
             }
         } catch (PostgresException e) {
@@ -727,7 +879,7 @@ public final class Session implements Runnable {
                 CachedQuery cq = queryEngine.getCachedQuery(name);
                 sendParameterDescription(cq.getParamTypes());
                 tupDesc = cq.describe();
-                if (tupDesc == null)
+                if (tupDesc == null || cq.getCopyOptions() != null)
                     sendNoData();
                 else
                     sendRowDescription(tupDesc, new FormatCode[0]);
@@ -737,7 +889,7 @@ public final class Session implements Runnable {
                 // FIXME: See {PortalState}
                 try {
                     tupDesc = p.describe();
-                    if (tupDesc == null)
+                    if (tupDesc == null || p.getCachedQuery().getCopyOptions() != null)
                         sendNoData();
                     else
                         sendRowDescription(tupDesc, tupDesc.getResultFormats());
@@ -15,6 +15,8 @@
 package kr.co.bitnine.octopus.frame;
 
 import kr.co.bitnine.octopus.meta.MetaStore;
+import kr.co.bitnine.octopus.meta.snapshot.MetaSnapshots;
+import kr.co.bitnine.octopus.meta.snapshot.SnapshotMetaContext;
 import kr.co.bitnine.octopus.schema.SchemaManager;
 import org.apache.hadoop.conf.Configuration;
 
@@ -22,6 +24,7 @@ import java.nio.channels.SocketChannel;
 
 public final class SessionFactoryImpl implements SessionFactory {
     private final MetaStore metaStore;
+    private final MetaSnapshots metaSnapshots;
     private final ConnectionManager connectionManager;
     private final SchemaManager schemaManager;
 
@@ -29,6 +32,7 @@ public final class SessionFactoryImpl implements SessionFactory {
                               ConnectionManager connectionManager,
                               SchemaManager schemaManager) {
         this.metaStore = metaStore;
+        metaSnapshots = new MetaSnapshots(metaStore);
         this.connectionManager = connectionManager;
         this.schemaManager = schemaManager;
     }
@@ -38,7 +42,7 @@ public final class SessionFactoryImpl implements SessionFactory {
                                  Session.EventHandler sessEvtHandler,
                                  Configuration conf) {
         return new Session(clientChannel, sessEvtHandler,
-                metaStore.getMetaContext(), connectionManager, schemaManager,
-                conf);
+                new SnapshotMetaContext(metaStore.getMetaContext(), metaSnapshots),
+                connectionManager, schemaManager, conf);
     }
 }
@@ -0,0 +1,153 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.frame;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/*
+ * Event loop which holds idle sessions without occupying a thread.
+ *
+ * A session is parked here after it sends ReadyForQuery and has nothing
+ * left in its receive buffer. When the client sends the next message,
+ * the channel is switched back to blocking mode and the session is
+ * resumed on a worker thread of the executor.
+ */
+final class SessionSelector extends Thread {
+    private static final Log LOG = LogFactory.getLog(SessionSelector.class);
+
+    private final Selector selector;
+    private final Executor executor;
+    private final Queue<Session> parkedSessions = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    SessionSelector(int index, Executor executor) throws IOException {
+        setName("SessionServer Selector-" + index);
+
+        selector = Selector.open();
+        this.executor = executor;
+    }
+
+    void park(Session session) {
+        if (!running) {
+            session.close();
+            return;
+        }
+
+        parkedSessions.add(session);
+        selector.wakeup();
+    }
+
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        LOG.debug("start " + getName());
+
+        List<Session> readySessions = new ArrayList<>();
+        while (running) {
+            registerParkedSessions();
+
+            try {
+                selector.select();
+            } catch (IOException e) {
+                LOG.error("select failed\n" + ExceptionUtils.getStackTrace(e));
+                continue;
+            }
+
+            Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+            while (iter.hasNext()) {
+                SelectionKey key = iter.next();
+                iter.remove();
+
+                if (!key.isValid())
+                    continue;
+
+                key.cancel();
+                readySessions.add((Session) key.attachment());
+            }
+            if (readySessions.isEmpty())
+                continue;
+
+            // deregister canceled keys so that channels can be blocking again
+            try {
+                selector.selectNow();
+            } catch (IOException e) {
+                LOG.error("select failed\n" + ExceptionUtils.getStackTrace(e));
+            }
+
+            for (Session sess : readySessions)
+                resume(sess);
+            readySessions.clear();
+        }
+
+        LOG.debug("close sessions parked on " + getName());
+        for (SelectionKey key : selector.keys())
+            ((Session) key.attachment()).close();
+        while (true) {
+            Session sess = parkedSessions.poll();
+            if (sess == null)
+                break;
+            sess.close();
+        }
+
+        try {
+            selector.close();
+        } catch (IOException ignore) { }
+    }
+
+    private void registerParkedSessions() {
+        while (true) {
+            Session sess = parkedSessions.poll();
+            if (sess == null)
+                break;
+
+            SocketChannel channel = sess.getClientChannel();
+            try {
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ, sess);
+            } catch (IOException e) {
+                LOG.error("failed to park session(" + sess.getId() + ")\n" + ExceptionUtils.getStackTrace(e));
+                sess.close();
+            }
+        }
+    }
+
+    private void resume(Session sess) {
+        try {
+            sess.getClientChannel().configureBlocking(true);
+            executor.execute(sess);
+        } catch (IOException | RejectedExecutionException e) {
+            LOG.error("failed to resume session(" + sess.getId() + ")\n" + ExceptionUtils.getStackTrace(e));
+            sess.close();
+        }
+    }
+}
@@ -23,11 +23,17 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.service.AbstractService;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -39,11 +45,17 @@ public final class SessionServer extends AbstractService {
     private static final int EXECUTOR_MAX_DEFAULT = 8;
     private static final long EXECUTOR_KEEPALIVE_DEFAULT = 60;
     private static final long EXECUTOR_SHUTDOWN_TIMEOUT_DEFAULT = 5;
+    private static final int SELECTOR_COUNT_DEFAULT = 1;
+
+    public static final String MODE_BLOCKING = "blocking";
+    public static final String MODE_SELECTOR = "selector";
+    public static final String MODE_VIRTUAL = "virtual";
 
     private final SessionFactory sessionFactory;
 
     private Map<Integer, Session> sessions;
-    private ThreadPoolExecutor executor;
+    private ExecutorService executor;
+    private SessionSelector[] selectors;
     private Listener listener;
     private volatile boolean running;
 
@@ -63,20 +75,66 @@ public final class SessionServer extends AbstractService {
 
         int sessMax = conf.getInt(OctopusConfiguration.MASTER_SESSION_MAX,
                 EXECUTOR_MAX_DEFAULT);
-        LOG.debug("create ThreadPoolExecutor for sessions (" + OctopusConfiguration.MASTER_SERVER_ADDRESS + '=' + sessMax + ')');
-        executor = new ThreadPoolExecutor(0, sessMax,
-                EXECUTOR_KEEPALIVE_DEFAULT, TimeUnit.SECONDS,
-                new SynchronousQueue<Runnable>());
+        String mode = conf.get(OctopusConfiguration.MASTER_SESSION_MODE,
+                MODE_BLOCKING);
+        LOG.debug("create executor for sessions (" + OctopusConfiguration.MASTER_SESSION_MAX + '=' + sessMax + ", " + OctopusConfiguration.MASTER_SESSION_MODE + '=' + mode + ')');
+        if (MODE_SELECTOR.equals(mode)) {
+            /*
+             * Idle sessions are parked on selectors, so the executor only
+             * runs active sessions. Sessions which become ready while all
+             * workers are busy wait in the queue instead of being rejected.
+             */
+            ThreadPoolExecutor workers = new ThreadPoolExecutor(sessMax,
+                    sessMax, EXECUTOR_KEEPALIVE_DEFAULT, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>());
+            workers.allowCoreThreadTimeOut(true);
+            executor = workers;
+
+            int selectorCnt = conf.getInt(
+                    OctopusConfiguration.MASTER_SESSION_SELECTOR_COUNT,
+                    SELECTOR_COUNT_DEFAULT);
+            selectors = new SessionSelector[selectorCnt];
+            for (int i = 0; i < selectorCnt; i++)
+                selectors[i] = new SessionSelector(i, executor);
+        } else if (MODE_BLOCKING.equals(mode)) {
+            executor = new ThreadPoolExecutor(0, sessMax,
+                    EXECUTOR_KEEPALIVE_DEFAULT, TimeUnit.SECONDS,
+                    new SynchronousQueue<Runnable>());
+            selectors = new SessionSelector[0];
+        } else if (MODE_VIRTUAL.equals(mode)) {
+            // each session gets its own virtual thread, master.session.max is not applied
+            executor = newVirtualThreadExecutor();
+            selectors = new SessionSelector[0];
+        } else {
+            throw new IllegalArgumentException("invalid " + OctopusConfiguration.MASTER_SESSION_MODE + " '" + mode + "'");
+        }
 
         listener = new Listener();
         LOG.debug("thread " + listener.getName() + " is created");
     }
 
+    /*
+     * Executors.newVirtualThreadPerTaskExecutor() is looked up reflectively
+     * because the sources are still compiled for older Java versions.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException("session mode '" + MODE_VIRTUAL + "' requires Java 21 or later", e);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("failed to create virtual thread executor", e);
+        }
+    }
+
     @Override
     protected void serviceStart() throws Exception {
         LOG.info("start service - " + getName());
 
         running = true;
+        for (SessionSelector selector : selectors)
+            selector.start();
         LOG.debug("start " + listener.getName());
         listener.start();
 
@@ -93,7 +151,13 @@ public final class SessionServer extends AbstractService {
         listener.join();
         listener = null;
 
-        LOG.debug("shutdown ThreadPoolExecutor of sessions");
+        for (SessionSelector selector : selectors) {
+            LOG.debug("shutdown " + selector.getName());
+            selector.shutdown();
+            selector.join();
+        }
+
+        LOG.debug("shutdown executor of sessions");
         executor.shutdownNow();
         boolean terminated = executor.awaitTermination(
                 EXECUTOR_SHUTDOWN_TIMEOUT_DEFAULT, TimeUnit.SECONDS);
@@ -132,6 +196,16 @@ public final class SessionServer extends AbstractService {
                 public void onCancel(int sessionId) {
                     cancelSession(sessionId);
                 }
+
+                @Override
+                public boolean yieldsOnIdle() {
+                    return selectors.length > 0;
+                }
+
+                @Override
+                public void onIdle(Session session) {
+                    parkSession(session);
+                }
             };
 
             LOG.info("start listening on " + bindAddress);
@@ -151,6 +225,12 @@ public final class SessionServer extends AbstractService {
                     clientAddress = clientChannel.getRemoteAddress().toString();
                 } catch (IOException ignore) { }
 
+                try {
+                    configureSocket(clientChannel);
+                } catch (IOException e) {
+                    LOG.warn("failed to set socket options of connection from " + clientAddress + '\n' + ExceptionUtils.getStackTrace(e));
+                }
+
                 Session sess = sessionFactory.createSession(
                         clientChannel, sessEvtHandler, getConfig());
                 if (LOG.isInfoEnabled())
@@ -173,6 +253,24 @@ public final class SessionServer extends AbstractService {
         }
     }
 
+    private void configureSocket(SocketChannel channel) throws IOException {
+        Configuration conf = getConfig();
+
+        boolean noDelay = conf.getBoolean(
+                OctopusConfiguration.MASTER_SESSION_TCP_NODELAY, true);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, noDelay);
+
+        int sndBuf = conf.getInt(
+                OctopusConfiguration.MASTER_SESSION_SOCKET_SNDBUF, 0);
+        if (sndBuf > 0)
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, sndBuf);
+
+        int rcvBuf = conf.getInt(
+                OctopusConfiguration.MASTER_SESSION_SOCKET_RCVBUF, 0);
+        if (rcvBuf > 0)
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, rcvBuf);
+    }
+
     private void registerSession(Session session) {
         LOG.info("register session(" + session.getId() + ')');
         sessions.put(session.getId(), session);
@@ -183,6 +281,13 @@ public final class SessionServer extends AbstractService {
         sessions.remove(session.getId());
     }
 
+    private void parkSession(Session session) {
+        int idx = (session.getId() & Integer.MAX_VALUE) % selectors.length;
+        if (LOG.isDebugEnabled())
+            LOG.debug("park session(" + session.getId() + ") on " + selectors[idx].getName());
+        selectors[idx].park(session);
+    }
+
     private void cancelSession(int sessionId) {
         Session sess = sessions.get(sessionId);
         if (sess != null) {
@@ -0,0 +1,37 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.postgres.commands;
+
+import kr.co.bitnine.octopus.postgres.utils.adt.FormatCode;
+
+public enum CopyFormat {
+    TEXT(FormatCode.TEXT),
+    CSV(FormatCode.TEXT),
+    BINARY(FormatCode.BINARY);
+
+    private final FormatCode formatCode;
+
+    CopyFormat(FormatCode formatCode) {
+        this.formatCode = formatCode;
+    }
+
+    public FormatCode formatCode() {
+        return formatCode;
+    }
+
+    public static CopyFormat ofName(String name) {
+        return valueOf(name.toUpperCase());
+    }
+}
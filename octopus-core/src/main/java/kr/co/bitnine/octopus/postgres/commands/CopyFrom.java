@@ -0,0 +1,473 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.postgres.commands;
+
+import kr.co.bitnine.octopus.postgres.access.common.TupleDesc;
+import kr.co.bitnine.octopus.postgres.catalog.PostgresAttribute;
+import kr.co.bitnine.octopus.postgres.catalog.PostgresType;
+import kr.co.bitnine.octopus.postgres.executor.Tuple;
+import kr.co.bitnine.octopus.postgres.executor.TupleSet;
+import kr.co.bitnine.octopus.postgres.libpq.Message;
+import kr.co.bitnine.octopus.postgres.libpq.MessageStream;
+import kr.co.bitnine.octopus.postgres.utils.PostgresErrorData;
+import kr.co.bitnine.octopus.postgres.utils.PostgresException;
+import kr.co.bitnine.octopus.postgres.utils.PostgresSQLState;
+import kr.co.bitnine.octopus.postgres.utils.PostgresSeverity;
+import kr.co.bitnine.octopus.postgres.utils.adt.IoFunction;
+import kr.co.bitnine.octopus.postgres.utils.adt.IoFunctions;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+ * COPY ... FROM STDIN
+ *
+ * A row may span several CopyData messages, so the data is appended to
+ * a buffer and complete rows are parsed out of it. Rows are returned as
+ * tuples of the column types in tupDesc until CopyDone is received.
+ */
+public final class CopyFrom implements TupleSet {
+    private static final int BUFFER_SIZE_DEFAULT = 64 * 1024;
+    private static final byte[] BINARY_SIGNATURE = {
+        'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', '\0'
+    };
+    // signature, flags and header extension length
+    private static final int BINARY_HEADER_SIZE = BINARY_SIGNATURE.length + 8;
+
+    private final MessageStream messageStream;
+    private final CopyOptions options;
+    private final TupleDesc tupDesc;
+    private final IoFunction[] ioFunctions;
+
+    private byte[] buf;
+    private int start;      // beginning of the data not parsed yet
+    private int end;        // end of the data received so far
+    private int scanPos;    // data before this is scanned for the end of row
+    private boolean inQuote; // whether scanPos is in a quoted CSV value
+
+    private byte[] value;   // unescaped value of a field
+    private int valueLen;
+
+    private boolean skipHeader;
+    private boolean binaryHeaderDone;
+    private boolean endOfData;
+    private boolean copyDone;
+
+    public CopyFrom(MessageStream messageStream, CopyOptions options, TupleDesc tupDesc) throws PostgresException {
+        this.messageStream = messageStream;
+        this.options = options;
+        this.tupDesc = tupDesc;
+
+        PostgresAttribute[] attrs = tupDesc.getAttributes();
+        ioFunctions = new IoFunction[attrs.length];
+        for (int i = 0; i < attrs.length; i++) {
+            PostgresType type = attrs[i].getType();
+            ioFunctions[i] = IoFunctions.ofType(type);
+
+            if (ioFunctions[i] == null) {
+                PostgresErrorData edata = new PostgresErrorData(
+                        PostgresSeverity.ERROR,
+                        PostgresSQLState.FEATURE_NOT_SUPPORTED,
+                        "COPY FROM STDIN does not support type " + type.name() + " of column \"" + attrs[i].getName() + "\"");
+                throw new PostgresException(edata);
+            }
+        }
+
+        buf = new byte[BUFFER_SIZE_DEFAULT];
+        value = new byte[1024];
+
+        skipHeader = options.isHeader();
+        binaryHeaderDone = options.getFormat() != CopyFormat.BINARY;
+    }
+
+    public void begin() throws IOException {
+        // CopyInResponse
+        short formatCode = (short) options.getFormat().formatCode().code();
+        int numAttrs = ioFunctions.length;
+        Message.Builder msgBld = Message.builder('G')
+                .putChar((char) formatCode)
+                .putShort((short) numAttrs);
+        for (int i = 0; i < numAttrs; i++)
+            msgBld.putShort(formatCode);
+        messageStream.putMessageAndFlush(msgBld.build());
+    }
+
+    @Override
+    public TupleDesc getTupleDesc() {
+        return tupDesc;
+    }
+
+    @Override
+    public Tuple next() throws PostgresException {
+        while (true) {
+            if (!endOfData) {
+                Tuple t = options.getFormat() == CopyFormat.BINARY ? parseBinaryRow() : parseRow();
+                if (t != null)
+                    return t;
+            }
+            if (copyDone)
+                return null;
+
+            receive();
+        }
+    }
+
+    @Override
+    public void close() { }
+
+    private void receive() throws PostgresException {
+        Message msg;
+        try {
+            msg = messageStream.getMessage();
+        } catch (IOException e) {
+            PostgresErrorData edata = new PostgresErrorData(
+                    PostgresSeverity.FATAL,
+                    PostgresSQLState.CONNECTION_FAILURE,
+                    "failed to receive COPY data from the client");
+            throw new PostgresException(edata, e);
+        }
+
+        char type = msg.getType();
+        switch (type) {
+        case 'd':   // copy data
+            if (endOfData) // data after the end-of-data marker is ignored
+                break;
+            int len = msg.remaining();
+            ensureCapacity(len);
+            msg.getByteBuffer(len).get(buf, end, len);
+            end += len;
+            break;
+        case 'c':   // copy done
+            copyDone = true;
+            if (endOfData || start == end)
+                break;
+            if (options.getFormat() == CopyFormat.BINARY)
+                throw badCopyFormat("unexpected EOF in COPY data");
+            if (inQuote)
+                throw badCopyFormat("unterminated CSV quoted field");
+            // the last row without newline
+            ensureCapacity(1);
+            buf[end++] = '\n';
+            break;
+        case 'f':   // copy fail
+            PostgresErrorData edata = new PostgresErrorData(
+                    PostgresSeverity.ERROR,
+                    PostgresSQLState.QUERY_CANCELED,
+                    "COPY from stdin failed: " + msg.getCString());
+            throw new PostgresException(edata);
+        case 'H':
+        case 'S':
+            break;  // ignore these messages like PostgreSQL does
+        default:
+            edata = new PostgresErrorData(
+                    PostgresSeverity.FATAL,
+                    PostgresSQLState.PROTOCOL_VIOLATION,
+                    "unexpected message type '" + type + "' during COPY from stdin");
+            throw new PostgresException(edata);
+        }
+    }
+
+    private void ensureCapacity(int length) {
+        if (end + length <= buf.length)
+            return;
+
+        int dataLen = end - start;
+        byte[] dst = buf;
+        if (dataLen + length > buf.length)
+            dst = new byte[Math.max(buf.length * 2, dataLen + length)];
+        System.arraycopy(buf, start, dst, 0, dataLen);
+        buf = dst;
+        scanPos -= start;
+        end = dataLen;
+        start = 0;
+    }
+
+    /*
+     * TEXT and CSV
+     */
+
+    private Tuple parseRow() throws PostgresException {
+        while (true) {
+            int rowEnd = findRowEnd();
+            if (rowEnd < 0)
+                return null;
+
+            int rowStart = start;
+            start = rowEnd + 1;
+            scanPos = start;
+            if (rowEnd > rowStart && buf[rowEnd - 1] == '\r')
+                rowEnd--;
+
+            if (skipHeader) {
+                skipHeader = false;
+                continue;
+            }
+
+            // end-of-data marker
+            if (rowEnd - rowStart == 2 && buf[rowStart] == '\\' && buf[rowStart + 1] == '.') {
+                endOfData = true;
+                return null;
+            }
+
+            if (options.getFormat() == CopyFormat.CSV)
+                return parseCsvRow(rowStart, rowEnd);
+            return parseTextRow(rowStart, rowEnd);
+        }
+    }
+
+    // returns the position of newline which ends the first row, or -1
+    private int findRowEnd() {
+        boolean csv = options.getFormat() == CopyFormat.CSV;
+        for (int i = scanPos; i < end; i++) {
+            byte b = buf[i];
+            if (csv && b == '"') {
+                inQuote = !inQuote;
+            } else if (b == '\n' && !inQuote) {
+                scanPos = i;
+                return i;
+            }
+        }
+        scanPos = end;
+        return -1;
+    }
+
+    private Tuple parseTextRow(int rowStart, int rowEnd) throws PostgresException {
+        Tuple t = new Tuple(ioFunctions.length);
+        int col = 0;
+        int fieldStart = rowStart;
+        int i = rowStart;
+        while (i <= rowEnd) {
+            if (i + 1 < rowEnd && buf[i] == '\\') {
+                i += 2; // an escaped character is never a delimiter
+                continue;
+            }
+            if (i == rowEnd || buf[i] == '\t') {
+                if (col >= ioFunctions.length)
+                    throw badCopyFormat("extra data after last expected column");
+                t.setDatum(col, parseTextField(col, fieldStart, i));
+                col++;
+                fieldStart = i + 1;
+            }
+            i++;
+        }
+        if (col < ioFunctions.length)
+            throw missingData(col);
+        return t;
+    }
+
+    private Object parseTextField(int col, int from, int to) throws PostgresException {
+        if (to - from == 2 && buf[from] == '\\' && buf[from + 1] == 'N')
+            return null;
+
+        valueLen = 0;
+        int i = from;
+        while (i < to) {
+            byte b = buf[i++];
+            if (b != '\\' || i >= to) {
+                appendValue(b);
+                continue;
+            }
+
+            b = buf[i++];
+            switch (b) {
+            case 'b':
+                appendValue((byte) '\b');
+                break;
+            case 'f':
+                appendValue((byte) '\f');
+                break;
+            case 'n':
+                appendValue((byte) '\n');
+                break;
+            case 'r':
+                appendValue((byte) '\r');
+                break;
+            case 't':
+                appendValue((byte) '\t');
+                break;
+            case 'v':
+                appendValue((byte) 0x0b);
+                break;
+            case 'x':
+                int hexEnd = Math.min(i + 2, to);
+                int hex = 0;
+                int j = i;
+                while (j < hexEnd && Character.digit(buf[j], 16) >= 0)
+                    hex = hex * 16 + Character.digit(buf[j++], 16);
+                appendValue(j == i ? b : (byte) hex); // 'x' if not a hex escape
+                i = j;
+                break;
+            default:
+                if (b >= '0' && b <= '7') {
+                    int octEnd = Math.min(i + 2, to);
+                    int oct = b - '0';
+                    while (i < octEnd && buf[i] >= '0' && buf[i] <= '7')
+                        oct = oct * 8 + (buf[i++] - '0');
+                    appendValue((byte) oct);
+                } else {
+                    appendValue(b);
+                }
+            }
+        }
+        return input(col, Arrays.copyOf(value, valueLen));
+    }
+
+    private Tuple parseCsvRow(int rowStart, int rowEnd) throws PostgresException {
+        Tuple t = new Tuple(ioFunctions.length);
+        int col = 0;
+        int i = rowStart;
+        while (true) {
+            if (col >= ioFunctions.length)
+                throw badCopyFormat("extra data after last expected column");
+
+            Object datum;
+            if (i < rowEnd && buf[i] == '"') {
+                valueLen = 0;
+                i++;
+                while (true) {
+                    if (i >= rowEnd)
+                        throw badCopyFormat("unterminated CSV quoted field");
+                    if (buf[i] == '"') {
+                        if (i + 1 < rowEnd && buf[i + 1] == '"') { // escaped quote
+                            appendValue((byte) '"');
+                            i += 2;
+                            continue;
+                        }
+                        i++;
+                        break;
+                    }
+                    appendValue(buf[i++]);
+                }
+                // characters between the closing quote and the delimiter
+                while (i < rowEnd && buf[i] != ',')
+                    appendValue(buf[i++]);
+                datum = input(col, Arrays.copyOf(value, valueLen));
+            } else {
+                int fieldStart = i;
+                while (i < rowEnd && buf[i] != ',')
+                    i++;
+                // unquoted empty string is NULL
+                datum = i == fieldStart ? null : input(col, Arrays.copyOfRange(buf, fieldStart, i));
+            }
+            t.setDatum(col++, datum);
+
+            if (i >= rowEnd)
+                break;
+            i++; // delimiter
+        }
+        if (col < ioFunctions.length)
+            throw missingData(col);
+        return t;
+    }
+
+    private void appendValue(byte b) {
+        if (valueLen == value.length)
+            value = Arrays.copyOf(value, value.length * 2);
+        value[valueLen++] = b;
+    }
+
+    private Object input(int col, byte[] bytes) throws PostgresException {
+        try {
+            return ioFunctions[col].in(bytes);
+        } catch (IllegalArgumentException e) {
+            PostgresAttribute attr = tupDesc.getAttributes()[col];
+            PostgresErrorData edata = new PostgresErrorData(
+                    PostgresSeverity.ERROR,
+                    PostgresSQLState.INVALID_TEXT_REPRESENTATION,
+                    "invalid input syntax for type " + attr.getType().name() + " of column \"" + attr.getName() + "\": \"" + new String(bytes, StandardCharsets.UTF_8) + "\"");
+            throw new PostgresException(edata, e);
+        }
+    }
+
+    /*
+     * BINARY
+     */
+
+    private Tuple parseBinaryRow() throws PostgresException {
+        if (!binaryHeaderDone) {
+            if (end - start < BINARY_HEADER_SIZE)
+                return null;
+            for (int i = 0; i < BINARY_SIGNATURE.length; i++) {
+                if (buf[start + i] != BINARY_SIGNATURE[i])
+                    throw badCopyFormat("COPY file signature not recognized");
+            }
+            int flags = getInt(start + BINARY_SIGNATURE.length);
+            if ((flags & (1 << 16)) != 0)
+                throw badCopyFormat("invalid COPY file header (WITH OIDS)");
+            int extLen = getInt(start + BINARY_SIGNATURE.length + 4);
+            if (end - start < BINARY_HEADER_SIZE + extLen)
+                return null;
+            start += BINARY_HEADER_SIZE + extLen;
+            binaryHeaderDone = true;
+        }
+
+        if (end - start < 2)
+            return null;
+        short numFields = (short) ((buf[start] & 0xff) << 8 | (buf[start + 1] & 0xff));
+        if (numFields == -1) { // file trailer
+            start += 2;
+            endOfData = true;
+            return null;
+        }
+        if (numFields != ioFunctions.length)
+            throw badCopyFormat("row field count is " + numFields + ", expected " + ioFunctions.length);
+
+        // wait until the whole row arrives
+        int pos = start + 2;
+        for (int i = 0; i < numFields; i++) {
+            if (end - pos < 4)
+                return null;
+            int len = getInt(pos);
+            pos += 4;
+            if (len > 0) {
+                if (end - pos < len)
+                    return null;
+                pos += len;
+            }
+        }
+
+        Tuple t = new Tuple(numFields);
+        pos = start + 2;
+        for (int i = 0; i < numFields; i++) {
+            int len = getInt(pos);
+            pos += 4;
+            if (len < 0)
+                continue; // NULL
+            t.setDatum(i, ioFunctions[i].recv(Arrays.copyOfRange(buf, pos, pos + len)));
+            pos += len;
+        }
+        start = pos;
+        scanPos = start;
+        return t;
+    }
+
+    private int getInt(int pos) {
+        return (buf[pos] & 0xff) << 24 | (buf[pos + 1] & 0xff) << 16
+                | (buf[pos + 2] & 0xff) << 8 | (buf[pos + 3] & 0xff);
+    }
+
+    private static PostgresException badCopyFormat(String message) {
+        PostgresErrorData edata = new PostgresErrorData(
+                PostgresSeverity.ERROR,
+                PostgresSQLState.BAD_COPY_FILE_FORMAT,
+                message);
+        return new PostgresException(edata);
+    }
+
+    private PostgresException missingData(int col) {
+        return badCopyFormat("missing data for column \"" + tupDesc.getAttributes()[col].getName() + "\"");
+    }
+}
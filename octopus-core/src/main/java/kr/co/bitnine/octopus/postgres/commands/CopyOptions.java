@@ -0,0 +1,107 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.postgres.commands;
+
+import kr.co.bitnine.octopus.postgres.utils.PostgresErrorData;
+import kr.co.bitnine.octopus.postgres.utils.PostgresException;
+import kr.co.bitnine.octopus.postgres.utils.PostgresSQLState;
+import kr.co.bitnine.octopus.postgres.utils.PostgresSeverity;
+
+public final class CopyOptions {
+    private final CopyFormat format;
+    private final boolean header;
+
+    public CopyOptions(CopyFormat format, boolean header) {
+        this.format = format;
+        this.header = header;
+    }
+
+    public CopyFormat getFormat() {
+        return format;
+    }
+
+    public boolean isHeader() {
+        return header;
+    }
+
+    /*
+     * Parse options following "TO STDOUT" or "FROM STDIN", both the old
+     * syntax (e.g. "WITH CSV HEADER") and the new one
+     * (e.g. "WITH (FORMAT csv, HEADER)"). null or empty means defaults.
+     */
+    public static CopyOptions parse(String options) throws PostgresException {
+        CopyFormat format = CopyFormat.TEXT;
+        boolean header = false;
+
+        if (options == null)
+            return new CopyOptions(format, header);
+
+        String opts = options.trim();
+        if (opts.regionMatches(true, 0, "WITH", 0, 4))
+            opts = opts.substring(4).trim();
+
+        String[] items;
+        if (opts.startsWith("(") && opts.endsWith(")"))
+            items = opts.substring(1, opts.length() - 1).split(",");
+        else
+            items = opts.split("\\s+");
+
+        for (String item : items) {
+            String[] words = item.trim().split("\\s+");
+            String name = words[0].toUpperCase();
+            String value = words.length > 1 ? words[1] : null;
+            switch (name) {
+            case "":
+                break;
+            case "FORMAT":
+                if (value == null)
+                    throw invalidOption(item);
+                try {
+                    format = CopyFormat.ofName(value);
+                } catch (IllegalArgumentException e) {
+                    throw invalidOption(item);
+                }
+                break;
+            case "CSV":
+            case "BINARY":
+                format = CopyFormat.ofName(name);
+                break;
+            case "HEADER":
+                header = value == null || Boolean.parseBoolean(value) || "on".equalsIgnoreCase(value);
+                break;
+            default:
+                throw invalidOption(item);
+            }
+        }
+
+        if (header && format != CopyFormat.CSV) {
+            PostgresErrorData edata = new PostgresErrorData(
+                    PostgresSeverity.ERROR,
+                    PostgresSQLState.FEATURE_NOT_SUPPORTED,
+                    "COPY HEADER available only in CSV mode");
+            throw new PostgresException(edata);
+        }
+
+        return new CopyOptions(format, header);
+    }
+
+    private static PostgresException invalidOption(String option) {
+        PostgresErrorData edata = new PostgresErrorData(
+                PostgresSeverity.ERROR,
+                PostgresSQLState.FEATURE_NOT_SUPPORTED,
+                "unsupported COPY option \"" + option.trim() + "\"");
+        return new PostgresException(edata);
+    }
+}
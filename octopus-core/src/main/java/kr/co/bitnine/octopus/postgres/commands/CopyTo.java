@@ -0,0 +1,231 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.postgres.commands;
+
+import kr.co.bitnine.octopus.postgres.access.common.TupleDesc;
+import kr.co.bitnine.octopus.postgres.catalog.PostgresAttribute;
+import kr.co.bitnine.octopus.postgres.executor.Tuple;
+import kr.co.bitnine.octopus.postgres.libpq.Message;
+import kr.co.bitnine.octopus.postgres.libpq.MessageStream;
+import kr.co.bitnine.octopus.postgres.utils.adt.IoFunction;
+import kr.co.bitnine.octopus.postgres.utils.adt.IoFunctions;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * COPY ... TO STDOUT
+ *
+ * Rows are encoded directly into CopyData messages of MessageStream.
+ * A CopyData message holds as many rows as fit in chunkSize bytes, so
+ * there is no per-row message overhead.
+ */
+public final class CopyTo {
+    private static final byte[] BINARY_SIGNATURE = {
+        'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', '\0'
+    };
+    private static final byte[] TEXT_NULL = {'\\', 'N'};
+
+    private final MessageStream messageStream;
+    private final CopyOptions options;
+    private final int chunkSize;
+
+    private IoFunction[] ioFunctions;
+    private boolean inChunk;
+    private long numRows;
+
+    public CopyTo(MessageStream messageStream, CopyOptions options, int chunkSize) {
+        this.messageStream = messageStream;
+        this.options = options;
+        // leave room for the last row so that the send buffer is not enlarged
+        this.chunkSize = Math.min(chunkSize, messageStream.getSendBufferSize() / 2);
+    }
+
+    public void begin(TupleDesc tupDesc) throws IOException {
+        PostgresAttribute[] attrs = tupDesc.getAttributes();
+        ioFunctions = new IoFunction[attrs.length];
+        for (int i = 0; i < attrs.length; i++)
+            ioFunctions[i] = IoFunctions.ofType(attrs[i].getType());
+
+        // CopyOutResponse
+        short formatCode = (short) options.getFormat().formatCode().code();
+        Message.Builder msgBld = Message.builder('H')
+                .putChar((char) formatCode)
+                .putShort((short) attrs.length);
+        for (int i = 0; i < attrs.length; i++)
+            msgBld.putShort(formatCode);
+        messageStream.putMessage(msgBld.build());
+
+        switch (options.getFormat()) {
+        case BINARY:
+            beginChunk();
+            messageStream.writeBytes(BINARY_SIGNATURE);
+            messageStream.writeInt(0); // flags
+            messageStream.writeInt(0); // header extension length
+            break;
+        case CSV:
+            if (options.isHeader()) {
+                beginChunk();
+                for (int i = 0; i < attrs.length; i++) {
+                    if (i > 0)
+                        messageStream.writeByte((byte) ',');
+                    writeCsvValue(attrs[i].getName().getBytes(StandardCharsets.UTF_8));
+                }
+                messageStream.writeByte((byte) '\n');
+            }
+            break;
+        default:
+        }
+    }
+
+    public void putTuple(Tuple tuple) throws IOException {
+        beginChunk();
+
+        Object[] datums = tuple.getDatums();
+        switch (options.getFormat()) {
+        case TEXT:
+            for (int i = 0; i < datums.length; i++) {
+                if (i > 0)
+                    messageStream.writeByte((byte) '\t');
+                if (datums[i] == null)
+                    messageStream.writeBytes(TEXT_NULL);
+                else
+                    writeTextValue(ioFunctions[i].out(datums[i]));
+            }
+            messageStream.writeByte((byte) '\n');
+            break;
+        case CSV:
+            for (int i = 0; i < datums.length; i++) {
+                if (i > 0)
+                    messageStream.writeByte((byte) ',');
+                if (datums[i] != null) // NULL is an unquoted empty string
+                    writeCsvValue(ioFunctions[i].out(datums[i]));
+            }
+            messageStream.writeByte((byte) '\n');
+            break;
+        case BINARY:
+            messageStream.writeShort((short) datums.length);
+            for (int i = 0; i < datums.length; i++) {
+                byte[] bytes = datums[i] == null ? null : ioFunctions[i].send(datums[i]);
+                if (bytes == null) {
+                    messageStream.writeInt(-1);
+                } else {
+                    messageStream.writeInt(bytes.length);
+                    messageStream.writeBytes(bytes);
+                }
+            }
+            break;
+        default:
+            throw new AssertionError(options.getFormat());
+        }
+        numRows++;
+
+        if (messageStream.getMessageLength() >= chunkSize)
+            endChunk();
+    }
+
+    // returns the number of rows sent
+    public long end() throws IOException {
+        if (options.getFormat() == CopyFormat.BINARY) {
+            beginChunk();
+            messageStream.writeShort((short) -1); // file trailer
+        }
+        endChunk();
+
+        // CopyDone
+        messageStream.putMessage(Message.builder('c').build());
+
+        return numRows;
+    }
+
+    // complete the partial CopyData so that an ErrorResponse can follow
+    public void abort() throws IOException {
+        endChunk();
+    }
+
+    private void beginChunk() throws IOException {
+        if (!inChunk) {
+            messageStream.beginMessage('d');
+            inChunk = true;
+        }
+    }
+
+    private void endChunk() throws IOException {
+        if (inChunk) {
+            messageStream.endMessage();
+            inChunk = false;
+        }
+    }
+
+    /*
+     * Backslash, newline, carriage return and tab are escaped.
+     * They never appear inside multi-byte UTF-8 characters.
+     */
+    private void writeTextValue(byte[] bytes) throws IOException {
+        int start = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            byte escaped;
+            switch (bytes[i]) {
+            case '\\':
+                escaped = '\\';
+                break;
+            case '\n':
+                escaped = 'n';
+                break;
+            case '\r':
+                escaped = 'r';
+                break;
+            case '\t':
+                escaped = 't';
+                break;
+            default:
+                continue;
+            }
+
+            messageStream.writeBytes(bytes, start, i - start);
+            messageStream.writeByte((byte) '\\');
+            messageStream.writeByte(escaped);
+            start = i + 1;
+        }
+        messageStream.writeBytes(bytes, start, bytes.length - start);
+    }
+
+    private void writeCsvValue(byte[] bytes) throws IOException {
+        boolean quote = bytes.length == 0; // distinguish from NULL
+        for (byte b : bytes) {
+            if (b == ',' || b == '"' || b == '\n' || b == '\r') {
+                quote = true;
+                break;
+            }
+        }
+        if (!quote) {
+            messageStream.writeBytes(bytes);
+            return;
+        }
+
+        messageStream.writeByte((byte) '"');
+        int start = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '"') {
+                // write up to and including the quote, then double it
+                messageStream.writeBytes(bytes, start, i + 1 - start);
+                messageStream.writeByte((byte) '"');
+                start = i + 1;
+            }
+        }
+        messageStream.writeBytes(bytes, start, bytes.length - start);
+        messageStream.writeByte((byte) '"');
+    }
+}
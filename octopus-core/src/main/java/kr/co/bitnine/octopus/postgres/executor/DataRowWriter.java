@@ -0,0 +1,29 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.postgres.executor;
+
+import kr.co.bitnine.octopus.postgres.libpq.MessageStream;
+import kr.co.bitnine.octopus.postgres.utils.PostgresException;
+
+import java.io.IOException;
+
+/*
+ * TupleSet which can encode its rows directly into DataRow messages
+ * without materializing them as Tuples
+ */
+public interface DataRowWriter {
+    // returns false if there are no more rows
+    boolean writeDataRow(MessageStream messageStream) throws IOException, PostgresException;
+}
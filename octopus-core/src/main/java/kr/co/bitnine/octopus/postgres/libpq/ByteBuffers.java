@@ -39,7 +39,7 @@ public final class ByteBuffers {
             throw new BufferUnderflowException();
 
         String str = new String(buf.array(),
-                buf.position(), end - buf.position(),
+                buf.arrayOffset() + buf.position(), end - buf.position(),
                 StandardCharsets.UTF_8);
 
         buf.position(end + 1); // discard '\0'
@@ -50,8 +50,6 @@ public final class ByteBuffers {
     static final int BYTEBUFFER_CAPACITY_MAX = 1 << 30;
 
     static ByteBuffer enlargeByteBuffer(ByteBuffer buf, int needed) {
-        assert !buf.isDirect();
-
         if (needed < 0)
             throw new IllegalArgumentException("negative enlargement request size: " + needed);
 
@@ -68,6 +66,9 @@ public final class ByteBuffers {
             newCapacity *= 2;
 
         buf.flip();
-        return ByteBuffer.allocate(newCapacity).put(buf);
+        ByteBuffer newBuf = buf.isDirect()
+                ? ByteBuffer.allocateDirect(newCapacity)
+                : ByteBuffer.allocate(newCapacity);
+        return newBuf.put(buf);
     }
 }
@@ -22,6 +22,7 @@ public final class Message {
     private char type;
     private byte[] body;
     private ByteBuffer buf;
+    private int bodyStart;
 
     public Message(byte[] body) {
         this(' ', body);
@@ -31,6 +32,23 @@ public final class Message {
         this.type = type;
         this.body = body;
         this.buf = ByteBuffer.wrap(body);
+        bodyStart = 0;
+    }
+
+    /*
+     * Message received by MessageStream is a view over its receive buffer,
+     * the body between position and limit of buf. The view is reused and
+     * is valid only until the next message is received.
+     */
+    Message() {
+        this(' ', new byte[0]);
+    }
+
+    void reset(char newType, ByteBuffer newBuf) {
+        type = newType;
+        body = null;
+        buf = newBuf;
+        bodyStart = newBuf.position();
     }
 
     public char getType() {
@@ -38,6 +56,12 @@ public final class Message {
     }
 
     public byte[] getBody() {
+        if (body == null) {
+            ByteBuffer dup = buf.duplicate();
+            dup.position(bodyStart);
+            body = new byte[dup.remaining()];
+            dup.get(body);
+        }
         return body;
     }
 
@@ -92,6 +116,11 @@ public final class Message {
         return new Builder(type);
     }
 
+    // number of bytes left in the body
+    public int remaining() {
+        return buf.remaining();
+    }
+
     public int peekInt() {
         return buf.getInt(buf.position());
     }
@@ -114,6 +143,14 @@ public final class Message {
         return bytes;
     }
 
+    // returns the next length bytes without copying them
+    public ByteBuffer getByteBuffer(int length) {
+        ByteBuffer slice = buf.slice();
+        slice.limit(length);
+        buf.position(buf.position() + length);
+        return slice;
+    }
+
     public String getCString() {
         return ByteBuffers.getCString(buf);
     }
@@ -17,32 +17,81 @@ package kr.co.bitnine.octopus.postgres.libpq;
 import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
 
 public final class MessageStream {
-    private static final int SEND_BUFFER_SIZE_DEFAULT = 8 * 1024;
-    private static final int RECV_BUFFER_SIZE_DEFAULT = 8 * 1024;
+    public static final int SEND_BUFFER_SIZE_DEFAULT = 8 * 1024;
+    public static final int RECV_BUFFER_SIZE_DEFAULT = 8 * 1024;
+    private static final int OVERFLOW_BUFFER_RETAIN_MAX = 1024 * 1024;
 
     private final SocketChannel socketChannel;
-    private final ByteBuffer sendBuffer = ByteBuffer.allocate(SEND_BUFFER_SIZE_DEFAULT);
-    private final ByteBuffer recvBuffer = ByteBuffer.allocate(RECV_BUFFER_SIZE_DEFAULT);
+    // direct, so that the channel writes it without an intermediate copy
+    private ByteBuffer sendBuffer;
+    // heap, because received messages are parsed in place
+    private final ByteBuffer recvBuffer;
+    private final ByteBuffer recvView;
+    // holds a message larger than recvBuffer
+    private ByteBuffer overflowBuffer;
+    private final Message recvMessage = new Message();
+
+    // position of the message being written by beginMessage(), -1 if none
+    private int messageStart = -1;
+
+    /*
+     * Messages written by beginMessage()/endMessage() (i.e. DataRow) are
+     * coalesced until sendBuffer is full. But if producing them is slow,
+     * they are flushed when flushIntervalNanos has passed since the last
+     * flush so that the client can start consuming them. 0 disables it.
+     */
+    private final long flushIntervalNanos;
+    private long lastFlushTime;
 
     public MessageStream(SocketChannel socketChannel) {
+        this(socketChannel, SEND_BUFFER_SIZE_DEFAULT, RECV_BUFFER_SIZE_DEFAULT, 0);
+    }
+
+    public MessageStream(SocketChannel socketChannel, int sendBufferSize,
+                         int recvBufferSize, long flushIntervalMillis) {
         this.socketChannel = socketChannel;
 
+        if (socketChannel == null)
+            sendBuffer = ByteBuffer.allocate(sendBufferSize);
+        else
+            sendBuffer = ByteBuffer.allocateDirect(sendBufferSize);
+        recvBuffer = ByteBuffer.allocate(recvBufferSize);
+        recvView = recvBuffer.duplicate();
+
+        flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        lastFlushTime = System.nanoTime();
+
         // make receive buffer has no remaining elements
         recvBuffer.flip();
     }
 
+    /*
+     * A stream that is not connected to a client. Messages written by
+     * beginMessage()/endMessage() are kept in memory, growing the buffer as
+     * needed, until they are moved to a connected stream by transferTo().
+     * It is used to encode messages on a thread other than the session's.
+     */
+    public static MessageStream buffer(int bufferSize) {
+        return new MessageStream(null, bufferSize, 0, 0);
+    }
+
+    /*
+     * The returned Message is reused by this MessageStream and is valid
+     * only until the next call of getInitialMessage() or getMessage().
+     */
     public Message getInitialMessage() throws IOException {
-        byte[] body = getMessageBody();
-        return new Message(body);
+        return receiveMessage(' ');
     }
 
     public Message getMessage() throws IOException {
         char type = getChar();
-        byte[] body = getMessageBody();
-        return new Message(type, body);
+        return receiveMessage(type);
     }
 
     public void putMessage(Message message) throws IOException {
@@ -50,7 +99,20 @@ public final class MessageStream {
         putChar(type);
         byte[] body = message.getBody();
         putInt(ByteBuffers.INTEGER_BYTES + body.length);
-        putBytes(body);
+
+        if (sendBuffer.remaining() >= body.length) {
+            sendBuffer.put(body);
+            return;
+        }
+
+        // gathering write of buffered messages and the body without copying it
+        sendBuffer.flip();
+        ByteBuffer[] srcs = {sendBuffer, ByteBuffer.wrap(body)};
+        while (srcs[1].hasRemaining())
+            socketChannel.write(srcs);
+        sendBuffer.clear();
+
+        lastFlushTime = System.nanoTime();
     }
 
     // Flush sendBuffer so client will see buffered messages immediately
@@ -59,44 +121,232 @@ public final class MessageStream {
         flush();
     }
 
-    private byte[] getMessageBody() throws IOException {
+    // true if some bytes of the next message are already received
+    public boolean hasPendingInput() {
+        return recvBuffer.hasRemaining();
+    }
+
+    /*
+     * Write a message directly into sendBuffer without building a Message.
+     * The length word is reserved here and filled in by endMessage().
+     */
+    public void beginMessage(char type) throws IOException {
+        assert messageStart < 0;
+
+        if (sendBuffer.remaining() < ByteBuffers.BYTE_BYTES + ByteBuffers.INTEGER_BYTES) {
+            if (socketChannel == null)
+                sendBuffer = ByteBuffers.enlargeByteBuffer(sendBuffer, ByteBuffers.BYTE_BYTES + ByteBuffers.INTEGER_BYTES);
+            else
+                flush();
+        }
+
+        sendBuffer.put((byte) type);
+        messageStart = sendBuffer.position();
+        sendBuffer.putInt(0);
+    }
+
+    public void writeShort(short h) throws IOException {
+        ensureMessageCapacity(ByteBuffers.SHORT_BYTES);
+        sendBuffer.putShort(h);
+    }
+
+    public void writeInt(int i) throws IOException {
+        ensureMessageCapacity(ByteBuffers.INTEGER_BYTES);
+        sendBuffer.putInt(i);
+    }
+
+    public void writeLong(long l) throws IOException {
+        ensureMessageCapacity(ByteBuffers.LONG_BYTES);
+        sendBuffer.putLong(l);
+    }
+
+    public void writeByte(byte b) throws IOException {
+        ensureMessageCapacity(ByteBuffers.BYTE_BYTES);
+        sendBuffer.put(b);
+    }
+
+    public void writeBytes(byte[] bytes) throws IOException {
+        ensureMessageCapacity(bytes.length);
+        sendBuffer.put(bytes);
+    }
+
+    public void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+        ensureMessageCapacity(length);
+        sendBuffer.put(bytes, offset, length);
+    }
+
+    public int getSendBufferSize() {
+        return sendBuffer.capacity();
+    }
+
+    // length of the message being written including the length word
+    public int getMessageLength() {
+        assert messageStart >= 0;
+
+        return sendBuffer.position() - messageStart;
+    }
+
+    public void endMessage() throws IOException {
+        assert messageStart >= 0;
+
+        /* length count includes itself */
+        sendBuffer.putInt(messageStart, sendBuffer.position() - messageStart);
+        messageStart = -1;
+
+        if (flushIntervalNanos > 0 && System.nanoTime() - lastFlushTime >= flushIntervalNanos)
+            flush();
+    }
+
+    // discard the message being written, it has not been sent yet
+    public void cancelMessage() {
+        if (messageStart < 0)
+            return;
+
+        sendBuffer.position(messageStart - ByteBuffers.BYTE_BYTES);
+        messageStart = -1;
+    }
+
+    // length of the messages kept by a stream created by buffer()
+    public int getBufferedLength() {
+        return sendBuffer.position();
+    }
+
+    /*
+     * Move the messages kept by this stream, created by buffer(), to out.
+     * They are copied into the send buffer of out if they fit, otherwise
+     * written to the client directly.
+     */
+    public void transferTo(MessageStream out) throws IOException {
+        assert socketChannel == null && messageStart < 0;
+        assert out.messageStart < 0;
+
+        sendBuffer.flip();
+        if (out.sendBuffer.remaining() < sendBuffer.remaining())
+            out.flush();
+        if (out.sendBuffer.remaining() >= sendBuffer.remaining()) {
+            out.sendBuffer.put(sendBuffer);
+            if (out.flushIntervalNanos > 0 && System.nanoTime() - out.lastFlushTime >= out.flushIntervalNanos)
+                out.flush();
+        } else {
+            while (sendBuffer.hasRemaining())
+                out.socketChannel.write(sendBuffer);
+            out.lastFlushTime = System.nanoTime();
+        }
+        sendBuffer.clear();
+    }
+
+    // write the messages kept by this stream, created by buffer(), to channel
+    public void transferTo(WritableByteChannel channel) throws IOException {
+        assert socketChannel == null && messageStart < 0;
+
+        sendBuffer.flip();
+        while (sendBuffer.hasRemaining())
+            channel.write(sendBuffer);
+        sendBuffer.clear();
+    }
+
+    /*
+     * Send count bytes of messages stored in file from position, after the
+     * buffered messages. The file is sent without copying it into the heap.
+     */
+    public void transferFrom(FileChannel file, long position, long count) throws IOException {
+        assert messageStart < 0;
+
+        flush();
+
+        long pos = position;
+        long end = position + count;
+        while (pos < end)
+            pos += file.transferTo(pos, end - pos, socketChannel);
+
+        lastFlushTime = System.nanoTime();
+    }
+
+    /*
+     * The message being written must stay in sendBuffer to fill in its
+     * length later. So, send preceding messages and move it to the front,
+     * then enlarge sendBuffer if it is still too small.
+     */
+    private void ensureMessageCapacity(int needed) throws IOException {
+        if (sendBuffer.remaining() >= needed)
+            return;
+
+        // type byte of the message
+        int start = messageStart - ByteBuffers.BYTE_BYTES;
+        if (start > 0 && socketChannel != null) {
+            sendBuffer.flip();
+            int end = sendBuffer.limit();
+            sendBuffer.limit(start);
+            while (sendBuffer.hasRemaining())
+                socketChannel.write(sendBuffer);
+            sendBuffer.limit(end);
+            sendBuffer.compact();
+
+            messageStart -= start;
+        }
+
+        if (sendBuffer.remaining() < needed)
+            sendBuffer = ByteBuffers.enlargeByteBuffer(sendBuffer, needed);
+    }
+
+    private Message receiveMessage(char type) throws IOException {
         int len = getInt();
         /* length count includes itself */
         if (len < ByteBuffers.INTEGER_BYTES)
             throw new EOFException("invalid message length");
-        byte[] body = new byte[len - ByteBuffers.INTEGER_BYTES];
-        getBytes(body);
-        return body;
+        len -= ByteBuffers.INTEGER_BYTES;
+
+        if (len <= recvBuffer.capacity()) {
+            // parse the message in place
+            while (recvBuffer.remaining() < len)
+                read();
+
+            int pos = recvBuffer.position();
+            recvView.limit(pos + len);
+            recvView.position(pos);
+            recvBuffer.position(pos + len);
+            recvMessage.reset(type, recvView);
+        } else {
+            ByteBuffer buf = overflowBuffer;
+            if (buf == null || buf.capacity() < len) {
+                buf = ByteBuffer.allocate(len);
+                if (len <= OVERFLOW_BUFFER_RETAIN_MAX)
+                    overflowBuffer = buf;
+            }
+            buf.clear();
+            buf.limit(len);
+            getBytes(buf);
+            buf.flip();
+            recvMessage.reset(type, buf);
+        }
+
+        return recvMessage;
     }
 
     private char getChar() throws IOException {
-        if (recvBuffer.remaining() < ByteBuffers.BYTE_BYTES)
+        while (recvBuffer.remaining() < ByteBuffers.BYTE_BYTES)
             read();
 
         return (char) recvBuffer.get();
     }
 
     private int getInt() throws IOException {
-        if (recvBuffer.remaining() < ByteBuffers.INTEGER_BYTES)
+        while (recvBuffer.remaining() < ByteBuffers.INTEGER_BYTES)
             read();
 
         return recvBuffer.getInt();
     }
 
-    private void getBytes(byte[] bytes) throws IOException {
-        int pos = 0;
-        int len = bytes.length;
-        while (len > 0) {
+    private void getBytes(ByteBuffer dst) throws IOException {
+        while (dst.hasRemaining()) {
             if (!recvBuffer.hasRemaining())
                 read();
 
-            int amount = recvBuffer.remaining();
-            if (amount > len)
-                amount = len;
-            recvBuffer.get(bytes, pos, amount);
-
-            pos += amount;
-            len -= amount;
+            int amount = Math.min(recvBuffer.remaining(), dst.remaining());
+            int limit = recvBuffer.limit();
+            recvBuffer.limit(recvBuffer.position() + amount);
+            dst.put(recvBuffer);
+            recvBuffer.limit(limit);
         }
     }
 
@@ -114,23 +364,6 @@ public final class MessageStream {
         sendBuffer.putInt(i);
     }
 
-    private void putBytes(byte[] bytes) throws IOException {
-        int pos = 0;
-        int len = bytes.length;
-        while (len > 0) {
-            if (!sendBuffer.hasRemaining())
-                flush();
-
-            int amount = sendBuffer.remaining();
-            if (amount > len)
-                amount = len;
-            sendBuffer.put(bytes, pos, amount);
-
-            pos += amount;
-            len -= amount;
-        }
-    }
-
     private void read() throws IOException {
         recvBuffer.compact();
 
@@ -147,11 +380,15 @@ public final class MessageStream {
     }
 
     public void flush() throws IOException {
+        assert messageStart < 0;
+
         sendBuffer.flip();
 
         while (sendBuffer.hasRemaining())
             socketChannel.write(sendBuffer);
 
         sendBuffer.clear();
+
+        lastFlushTime = System.nanoTime();
     }
 }
@@ -17,8 +17,12 @@ package kr.co.bitnine.octopus.postgres.utils;
 public enum PostgresSQLState {
     SUCCESSFUL_COMPLETION   ("00000"),
     WARNING                 ("01000"),
+    CONNECTION_FAILURE      ("08006"),
     PROTOCOL_VIOLATION      ("08P01"),
     FEATURE_NOT_SUPPORTED   ("0A000"),
+    INVALID_PARAMETER_VALUE ("22023"),
+    INVALID_TEXT_REPRESENTATION ("22P02"),
+    BAD_COPY_FILE_FORMAT    ("22P04"),
     UNDEFINED_PSTATEMENT    ("26000"),
     INVALID_PASSWORD        ("28P01"),
     UNDEFINED_CURSOR        ("34000"),
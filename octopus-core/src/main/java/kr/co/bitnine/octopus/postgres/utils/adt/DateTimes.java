@@ -0,0 +1,57 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.postgres.utils.adt;
+
+import java.util.TimeZone;
+
+/*
+ * Binary DATE and TIMESTAMP (integer_datetimes = on) count days and
+ * microseconds from 2000-01-01 00:00:00 of the wall clock, while
+ * java.sql.Date and java.sql.Timestamp hold UTC milliseconds of the local
+ * wall clock. These convert between the two.
+ */
+final class DateTimes {
+    static final long MILLIS_PER_DAY = 86400000L;
+    static final long MICROS_PER_MILLI = 1000L;
+    static final long MICROS_PER_SECOND = 1000000L;
+
+    // 2000-01-01 - 1970-01-01
+    static final int POSTGRES_EPOCH_DAYS = 10957;
+    static final long POSTGRES_EPOCH_MILLIS = POSTGRES_EPOCH_DAYS * MILLIS_PER_DAY;
+
+    private DateTimes() { }
+
+    // Math.floorDiv() since Java 8
+    static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0))
+            q--;
+        return q;
+    }
+
+    static long floorMod(long x, long y) {
+        return x - floorDiv(x, y) * y;
+    }
+
+    static long toWallClockMillis(long utcMillis) {
+        return utcMillis + TimeZone.getDefault().getOffset(utcMillis);
+    }
+
+    static long toUtcMillis(long wallClockMillis) {
+        TimeZone tz = TimeZone.getDefault();
+        long guess = wallClockMillis - tz.getRawOffset();
+        return wallClockMillis - tz.getOffset(guess);
+    }
+}
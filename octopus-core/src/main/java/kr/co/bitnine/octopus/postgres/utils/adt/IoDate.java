@@ -14,12 +14,16 @@
 
 package kr.co.bitnine.octopus.postgres.utils.adt;
 
+import kr.co.bitnine.octopus.postgres.libpq.ByteBuffers;
+
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.sql.Date;
 
 public final class IoDate implements IoFunction {
     @Override
     public Object in(byte[] bytes) {
-        return null; // TODO
+        return Date.valueOf(new String(bytes, StandardCharsets.UTF_8));
     }
 
     @Override
@@ -29,11 +33,17 @@ public final class IoDate implements IoFunction {
 
     @Override
     public Object recv(byte[] bytes) {
-        return null; // TODO
+        long days = ByteBuffer.wrap(bytes).getInt() + (long) DateTimes.POSTGRES_EPOCH_DAYS;
+        return new Date(DateTimes.toUtcMillis(days * DateTimes.MILLIS_PER_DAY));
     }
 
     @Override
     public byte[] send(Object value) {
-        return value == null ? null : new byte[0]; // TODO
+        if (value == null)
+            return null;
+
+        long millis = DateTimes.toWallClockMillis(((Date) value).getTime());
+        long days = DateTimes.floorDiv(millis, DateTimes.MILLIS_PER_DAY) - DateTimes.POSTGRES_EPOCH_DAYS;
+        return ByteBuffer.allocate(ByteBuffers.INTEGER_BYTES).putInt((int) days).array();
     }
 }
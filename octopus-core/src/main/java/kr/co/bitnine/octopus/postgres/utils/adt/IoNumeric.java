@@ -14,13 +14,38 @@
 
 package kr.co.bitnine.octopus.postgres.utils.adt;
 
+import kr.co.bitnine.octopus.postgres.libpq.ByteBuffers;
+
 import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
+/*
+ * Binary NUMERIC is a sequence of base-10000 digits:
+ *
+ *   int16 ndigits, int16 weight, int16 sign, int16 dscale, int16[ndigits]
+ *
+ * The value is sum(digits[i] * 10000^(weight - i)) and dscale is the number
+ * of decimal digits after the decimal point.
+ */
 public final class IoNumeric implements IoFunction {
+    private static final int NBASE = 10000;
+    private static final int DEC_DIGITS = 4;
+
+    private static final BigInteger BIG_NBASE = BigInteger.valueOf(NBASE);
+    private static final long[] POW10 = {1, 10, 100, 1000};
+    // 10000^n, 4 digits of NBASE fit in long
+    private static final long[] POW_NBASE = {1L, 10000L, 100000000L, 1000000000000L, 10000000000000000L};
+
+    private static final short NUMERIC_POS = 0x0000;
+    private static final short NUMERIC_NEG = 0x4000;
+    private static final short NUMERIC_NAN = (short) 0xC000;
+
     @Override
     public Object in(byte[] bytes) {
-        return null; // TODO
+        return new BigDecimal(new String(bytes, StandardCharsets.UTF_8));
     }
 
     @Override
@@ -31,11 +56,122 @@ public final class IoNumeric implements IoFunction {
 
     @Override
     public Object recv(byte[] bytes) {
-        return null; // TODO
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        int ndigits = buf.getShort();
+        int weight = buf.getShort();
+        short sign = buf.getShort();
+        int dscale = buf.getShort();
+
+        if (sign == NUMERIC_NAN)
+            throw new NumberFormatException("NaN is not supported for NUMERIC");
+        if (sign != NUMERIC_POS && sign != NUMERIC_NEG)
+            throw new NumberFormatException("invalid sign in binary NUMERIC");
+
+        if (ndigits == 0)
+            return BigDecimal.ZERO.setScale(dscale);
+
+        // accumulate every 4 digits in long and then in BigInteger
+        BigInteger unscaled = null;
+        long chunk = 0;
+        int chunkDigits = 0;
+        for (int i = 0; i < ndigits; i++) {
+            chunk = chunk * NBASE + checkDigit(buf.getShort());
+            if (++chunkDigits == POW_NBASE.length - 1) {
+                unscaled = appendChunk(unscaled, chunk, chunkDigits);
+                chunk = 0;
+                chunkDigits = 0;
+            }
+        }
+        if (chunkDigits > 0)
+            unscaled = appendChunk(unscaled, chunk, chunkDigits);
+        if (sign == NUMERIC_NEG)
+            unscaled = unscaled.negate();
+
+        // the last digit is at 10000^(weight - ndigits + 1)
+        BigDecimal d = new BigDecimal(unscaled, (ndigits - 1 - weight) * DEC_DIGITS);
+        return d.setScale(dscale, RoundingMode.DOWN);
+    }
+
+    private static BigInteger appendChunk(BigInteger unscaled, long chunk, int chunkDigits) {
+        BigInteger c = BigInteger.valueOf(chunk);
+        if (unscaled == null)
+            return c;
+        return unscaled.multiply(BigInteger.valueOf(POW_NBASE[chunkDigits])).add(c);
+    }
+
+    private static int checkDigit(short digit) {
+        if (digit < 0 || digit >= NBASE)
+            throw new NumberFormatException("invalid digit in binary NUMERIC");
+        return digit;
     }
 
     @Override
     public byte[] send(Object value) {
-        return value == null ? null : new byte[0]; // TODO
+        if (value == null)
+            return null;
+
+        BigDecimal d = (BigDecimal) value;
+        int dscale = Math.max(d.scale(), 0);
+        if (d.scale() < 0)
+            d = d.setScale(0);
+
+        // align the decimal point to a boundary of base-10000 digits
+        int scale = d.scale();
+        int pad = (DEC_DIGITS - scale % DEC_DIGITS) % DEC_DIGITS;
+        int fracDigits = (scale + pad) / DEC_DIGITS;
+
+        // base-10000 digits from the least significant one
+        BigInteger unscaled = d.unscaledValue().abs();
+        short[] rdigits;
+        int ndigits = 0;
+        if (unscaled.bitLength() < Long.SIZE) {
+            long v = unscaled.longValue();
+            rdigits = new short[6];
+            if (pad > 0 && v != 0) {
+                long lowest = POW10[DEC_DIGITS - pad];
+                rdigits[ndigits++] = (short) (v % lowest * POW10[pad]);
+                v /= lowest;
+            }
+            while (v != 0) {
+                rdigits[ndigits++] = (short) (v % NBASE);
+                v /= NBASE;
+            }
+        } else {
+            BigInteger v = unscaled.multiply(BigInteger.valueOf(POW10[pad]));
+            rdigits = new short[v.bitLength() / 13 + 1];
+            while (v.signum() != 0) {
+                BigInteger[] qr = v.divideAndRemainder(BIG_NBASE);
+                rdigits[ndigits++] = qr[1].shortValue();
+                v = qr[0];
+            }
+        }
+        int weight = ndigits - fracDigits - 1;
+
+        short[] digits = new short[ndigits];
+        for (int i = 0; i < ndigits; i++)
+            digits[i] = rdigits[ndigits - 1 - i];
+
+        // strip leading and trailing zero digits
+        int first = 0;
+        while (first < ndigits && digits[first] == 0)
+            first++;
+        int last = ndigits;
+        while (last > first && digits[last - 1] == 0)
+            last--;
+        weight -= first;
+        int n = last - first;
+
+        short sign = d.signum() < 0 ? NUMERIC_NEG : NUMERIC_POS;
+        if (n == 0)
+            weight = 0;
+
+        ByteBuffer buf = ByteBuffer.allocate(ByteBuffers.SHORT_BYTES * (4 + n));
+        buf.putShort((short) n);
+        buf.putShort((short) weight);
+        buf.putShort(sign);
+        buf.putShort((short) dscale);
+        for (int i = first; i < last; i++)
+            buf.putShort(digits[i]);
+        return buf.array();
     }
 }
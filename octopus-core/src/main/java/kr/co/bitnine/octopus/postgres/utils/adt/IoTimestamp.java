@@ -14,12 +14,16 @@
 
 package kr.co.bitnine.octopus.postgres.utils.adt;
 
+import kr.co.bitnine.octopus.postgres.libpq.ByteBuffers;
+
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
 
 public final class IoTimestamp implements IoFunction {
     @Override
     public Object in(byte[] bytes) {
-        return null; // TODO
+        return Timestamp.valueOf(new String(bytes, StandardCharsets.UTF_8));
     }
 
     @Override
@@ -29,11 +33,25 @@ public final class IoTimestamp implements IoFunction {
 
     @Override
     public Object recv(byte[] bytes) {
-        return null; // TODO
+        long micros = ByteBuffer.wrap(bytes).getLong();
+
+        long seconds = DateTimes.floorDiv(micros, DateTimes.MICROS_PER_SECOND);
+        long millis = seconds * 1000 + DateTimes.POSTGRES_EPOCH_MILLIS;
+        Timestamp ts = new Timestamp(DateTimes.toUtcMillis(millis));
+        ts.setNanos((int) DateTimes.floorMod(micros, DateTimes.MICROS_PER_SECOND) * 1000);
+        return ts;
     }
 
     @Override
     public byte[] send(Object value) {
-        return value == null ? null : new byte[0]; // TODO
+        if (value == null)
+            return null;
+
+        Timestamp ts = (Timestamp) value;
+        // getTime() has milliseconds of getNanos() already
+        long millis = DateTimes.toWallClockMillis(ts.getTime()) - DateTimes.POSTGRES_EPOCH_MILLIS;
+        long seconds = DateTimes.floorDiv(millis, 1000);
+        long micros = seconds * DateTimes.MICROS_PER_SECOND + ts.getNanos() / 1000;
+        return ByteBuffer.allocate(ByteBuffers.LONG_BYTES).putLong(micros).array();
     }
 }
@@ -15,6 +15,7 @@
 package kr.co.bitnine.octopus.postgres.utils.cache;
 
 import kr.co.bitnine.octopus.postgres.access.common.TupleDesc;
+import kr.co.bitnine.octopus.postgres.commands.CopyOptions;
 import kr.co.bitnine.octopus.postgres.catalog.PostgresType;
 import kr.co.bitnine.octopus.postgres.utils.PostgresException;
 
@@ -39,6 +40,12 @@ public abstract class CachedQuery {
 
     public abstract String getCommandTag();
 
+    // null if this is not a COPY statement
+    public abstract CopyOptions getCopyOptions();
+
+    // true if this is COPY ... FROM STDIN
+    public abstract boolean isCopyFrom();
+
     public abstract TupleDesc describe() throws PostgresException;
 
     public abstract void close();
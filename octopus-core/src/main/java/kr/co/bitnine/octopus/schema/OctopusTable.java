@@ -21,6 +21,7 @@ import org.apache.calcite.linq4j.QueryProvider;
 import org.apache.calcite.linq4j.Queryable;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.rel.type.RelDataTypeImpl;
 import org.apache.calcite.rel.type.RelDataTypeSystem;
 import org.apache.calcite.rel.type.RelProtoDataType;
@@ -29,6 +30,10 @@ import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.sql.type.SqlTypeFactoryImpl;
 import org.apache.calcite.sql.type.SqlTypeName;
 
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
 public abstract class OctopusTable extends AbstractQueryableTable {
     private Schema.TableType tableType;
     private RelProtoDataType protoRowType;
@@ -71,6 +76,27 @@ public abstract class OctopusTable extends AbstractQueryableTable {
         return protoRowType.apply(relDataTypeFactory);
     }
 
+    /*
+     * Whether the table has the same columns as metaTable in the same
+     * order, so that it need not be built again.
+     */
+    public final boolean hasColumnsOf(MetaTable metaTable) {
+        RelDataTypeFactory typeFactory = new SqlTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+        List<RelDataTypeField> fields = getRowType(typeFactory).getFieldList();
+        Collection<MetaColumn> metaColumns = metaTable.getColumns();
+        if (fields.size() != metaColumns.size())
+            return false;
+
+        Iterator<RelDataTypeField> fi = fields.iterator();
+        for (MetaColumn metaColumn : metaColumns) {
+            RelDataTypeField field = fi.next();
+            if (!field.getName().equals(metaColumn.getName())
+                    || field.getType().getSqlTypeName() != SqlTypeName.getNameForJdbcType(metaColumn.getType()))
+                return false;
+        }
+        return true;
+    }
+
     @Override
     public final Schema.TableType getJdbcTableType() {
         return tableType;
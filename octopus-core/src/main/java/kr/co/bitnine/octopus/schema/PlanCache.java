@@ -0,0 +1,160 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.schema;
+
+import kr.co.bitnine.octopus.engine.QueryAnalysis;
+import kr.co.bitnine.octopus.postgres.catalog.PostgresType;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.sql.SqlNode;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Validated queries shared by all sessions
+ *
+ * A Plan is valid only for the schema version it is validated against.
+ * SchemaManager changes the version and clears this cache whenever data
+ * sources change. Validated queries must not be modified by users.
+ */
+public final class PlanCache {
+    private final int maxSize;
+    private final Map<Key, Plan> plans;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    PlanCache(final int maxSize) {
+        this.maxSize = maxSize;
+        plans = new LinkedHashMap<Key, Plan>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Plan> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public Plan get(String queryString, PostgresType[] paramTypes, long schemaVersion) {
+        if (maxSize <= 0)
+            return null;
+
+        Plan plan;
+        synchronized (plans) {
+            plan = plans.get(new Key(queryString, paramTypes));
+        }
+        if (plan == null || plan.schemaVersion != schemaVersion) {
+            missCount.incrementAndGet();
+            return null;
+        }
+
+        hitCount.incrementAndGet();
+        return plan;
+    }
+
+    public void put(String queryString, PostgresType[] paramTypes, Plan plan) {
+        if (maxSize <= 0)
+            return;
+
+        synchronized (plans) {
+            plans.put(new Key(queryString, paramTypes.clone()), plan);
+        }
+    }
+
+    void clear() {
+        synchronized (plans) {
+            plans.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (plans) {
+            return plans.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public static final class Plan {
+        private final SqlNode validatedQuery;
+        private final RelDataType rowType;
+        private final PostgresType[] paramTypes;
+        private final QueryAnalysis analysis;
+        private final long schemaVersion;
+
+        public Plan(SqlNode validatedQuery, RelDataType rowType,
+                    PostgresType[] paramTypes, QueryAnalysis analysis,
+                    long schemaVersion) {
+            this.validatedQuery = validatedQuery;
+            this.rowType = rowType;
+            this.paramTypes = paramTypes;
+            this.analysis = analysis;
+            this.schemaVersion = schemaVersion;
+        }
+
+        public SqlNode getValidatedQuery() {
+            return validatedQuery;
+        }
+
+        public RelDataType getRowType() {
+            return rowType;
+        }
+
+        // types the validator inferred for the parameters, null if unknown
+        public PostgresType[] getParamTypes() {
+            return paramTypes.clone();
+        }
+
+        public QueryAnalysis getAnalysis() {
+            return analysis;
+        }
+    }
+
+    private static final class Key {
+        private final String queryString;
+        private final PostgresType[] paramTypes;
+        private final int hash;
+
+        Key(String queryString, PostgresType[] paramTypes) {
+            this.queryString = queryString;
+            this.paramTypes = paramTypes;
+            hash = 31 * queryString.hashCode() + Arrays.hashCode(paramTypes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+
+            Key k = (Key) o;
+            return queryString.equals(k.queryString)
+                    && Arrays.equals(paramTypes, k.paramTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -14,16 +14,20 @@
 
 package kr.co.bitnine.octopus.schema;
 
+import kr.co.bitnine.octopus.conf.OctopusConfiguration;
 import kr.co.bitnine.octopus.meta.MetaContext;
 import kr.co.bitnine.octopus.meta.MetaException;
 import kr.co.bitnine.octopus.meta.MetaStore;
 import kr.co.bitnine.octopus.meta.model.MetaDataSource;
+import kr.co.bitnine.octopus.meta.model.MetaSchema;
+import kr.co.bitnine.octopus.meta.model.MetaTable;
 import kr.co.bitnine.octopus.postgres.utils.PostgresErrorData;
 import kr.co.bitnine.octopus.postgres.utils.PostgresException;
 import kr.co.bitnine.octopus.postgres.utils.PostgresSQLState;
 import kr.co.bitnine.octopus.postgres.utils.PostgresSeverity;
-import kr.co.bitnine.octopus.schema.jdbc.JdbcUtils;
 import kr.co.bitnine.octopus.schema.jdbc.OctopusJdbcDataSource;
+import kr.co.bitnine.octopus.schema.jdbc.OctopusJdbcSchema;
+import com.google.common.collect.ImmutableMap;
 import org.apache.calcite.jdbc.CalciteSchema;
 import org.apache.calcite.schema.Schema;
 import org.apache.calcite.schema.SchemaPlus;
@@ -31,13 +35,17 @@ import org.apache.calcite.schema.Table;
 import org.apache.calcite.tools.Frameworks;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.service.AbstractService;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.ArrayList;
+import java.util.Set;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -51,6 +59,7 @@ import kr.co.bitnine.octopus.schema.metamodel.OctopusMetaModelDataSource;
 public final class SchemaManager extends AbstractService {
     private static final Log LOG = LogFactory.getLog(SchemaManager.class);
     private static SchemaManager singletonInstance;
+    private static final int PLAN_CACHE_SIZE_DEFAULT = 1024;
 
     private final MetaStore metaStore;
     private SchemaPlus rootSchema;
@@ -64,6 +73,10 @@ public final class SchemaManager extends AbstractService {
     private final Lock readLock = lock.readLock();
     private final Lock writeLock = lock.writeLock();
 
+    // changed with rootSchema under writeLock
+    private volatile long version;
+    private PlanCache planCache;
+
     private SchemaManager(MetaStore metaStore) {
         super(SchemaManager.class.getName());
 
@@ -73,6 +86,9 @@ public final class SchemaManager extends AbstractService {
         dataSourceMap = new HashMap<>();
         schemaMap = new HashMap<>();
         tableMap = new HashMap<>();
+
+        version = 0;
+        planCache = new PlanCache(PLAN_CACHE_SIZE_DEFAULT);
     }
 
     public static SchemaManager getSingletonInstance(MetaStore metaStore) {
@@ -83,6 +99,15 @@ public final class SchemaManager extends AbstractService {
         return singletonInstance;
     }
 
+    @Override
+    protected void serviceInit(Configuration conf) throws Exception {
+        planCache = new PlanCache(conf.getInt(
+                OctopusConfiguration.MASTER_PLAN_CACHE_SIZE,
+                PLAN_CACHE_SIZE_DEFAULT));
+
+        super.serviceInit(conf);
+    }
+
     @Override
     protected void serviceStart() throws Exception {
         loadMeta();
@@ -93,16 +118,11 @@ public final class SchemaManager extends AbstractService {
     @Override
     protected void serviceStop() throws Exception {
         LOG.info("stop service - " + getName());
-        resetDataSourcePool();
         singletonInstance = null;
 
         super.serviceStop();
     }
 
-    public void resetDataSourcePool() throws Exception {
-        JdbcUtils.DataSourcePool.INSTANCE.closeAll();
-    }
-
     private void loadMeta() throws MetaException {
         MetaContext mc = metaStore.getMetaContext();
 
@@ -139,6 +159,7 @@ public final class SchemaManager extends AbstractService {
                 }
             }
             rootSchema.add(octopusDataSource.getName(), octopusDataSource);
+            schemaChanged();
         } finally {
             writeLock.unlock();
         }
@@ -194,6 +215,7 @@ public final class SchemaManager extends AbstractService {
                 if (dataSources.isEmpty())
                     di.remove();
             }
+            schemaChanged();
         } finally {
             writeLock.unlock();
         }
@@ -201,6 +223,128 @@ public final class SchemaManager extends AbstractService {
         return octopusDataSource;
     }
 
+    /*
+     * Unlike dropDataSource() followed by addDataSource(), only schemas
+     * whose tables have changed are built again, and the maps and Calcite
+     * Schema are patched under writeLock instead of being rebuilt.
+     */
+    public void updateDataSource(MetaDataSource metaDataSource) {
+        String dataSourceName = metaDataSource.getName();
+
+        OctopusDataSource dataSource;
+        readLock.lock();
+        try {
+            dataSource = findDataSource(dataSourceName);
+        } finally {
+            readLock.unlock();
+        }
+        if (!(dataSource instanceof OctopusJdbcDataSource)) {
+            dropDataSource(dataSourceName);
+            addDataSource(metaDataSource);
+            return;
+        }
+
+        Map<String, Schema> oldSchemas = dataSource.getSubSchemaMap();
+        ImmutableMap.Builder<String, Schema> builder = ImmutableMap.builder();
+        List<OctopusSchema> addedSchemas = new ArrayList<>();
+        List<OctopusSchema> removedSchemas = new ArrayList<>();
+        Set<String> schemaNames = new HashSet<>();
+        for (MetaSchema metaSchema : metaDataSource.getSchemas()) {
+            String schemaName = metaSchema.getName();
+            schemaNames.add(schemaName);
+
+            OctopusSchema oldSchema = (OctopusSchema) oldSchemas.get(schemaName);
+            if (oldSchema != null && hasTablesOf(oldSchema, metaSchema)) {
+                builder.put(schemaName, oldSchema);
+                continue;
+            }
+
+            OctopusSchema newSchema = new OctopusJdbcSchema(metaSchema, dataSource);
+            builder.put(schemaName, newSchema);
+            addedSchemas.add(newSchema);
+            if (oldSchema != null)
+                removedSchemas.add(oldSchema);
+        }
+        for (Map.Entry<String, Schema> e : oldSchemas.entrySet()) {
+            if (!schemaNames.contains(e.getKey()))
+                removedSchemas.add((OctopusSchema) e.getValue());
+        }
+
+        LOG.info("Update DataSource in Calcite Schema. DataSourceName: " + dataSourceName
+                + ", schemas built: " + addedSchemas.size() + ", schemas dropped: " + removedSchemas.size());
+        if (addedSchemas.isEmpty() && removedSchemas.isEmpty())
+            return;
+
+        writeLock.lock();
+        try {
+            // changed by another request in the meantime
+            if (findDataSource(dataSourceName) != dataSource) {
+                if (findDataSource(dataSourceName) != null) {
+                    dropDataSource(dataSourceName);
+                    addDataSource(metaDataSource);
+                }
+                return;
+            }
+
+            dataSource.setSubSchemaMap(builder.build());
+            for (OctopusSchema schema : removedSchemas) {
+                removeFromListMap(schemaMap, schema.getName(), schema);
+                for (Table cTable : schema.getTableMap().values()) {
+                    OctopusTable table = (OctopusTable) cTable;
+                    removeFromListMap(tableMap, table.getName(), table);
+                }
+            }
+            for (OctopusSchema schema : addedSchemas) {
+                addToListMap(schemaMap, schema.getName(), schema);
+                for (Table cTable : schema.getTableMap().values()) {
+                    OctopusTable table = (OctopusTable) cTable;
+                    addToListMap(tableMap, table.getName(), table);
+                }
+            }
+            // replaces the cached Calcite Schema of the data source only
+            rootSchema.add(dataSourceName, dataSource);
+            schemaChanged();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static boolean hasTablesOf(OctopusSchema schema, MetaSchema metaSchema) {
+        Map<String, Table> tables = schema.getTableMap();
+        Collection<MetaTable> metaTables = metaSchema.getTables();
+        if (tables.size() != metaTables.size())
+            return false;
+
+        for (MetaTable metaTable : metaTables) {
+            OctopusTable table = (OctopusTable) tables.get(metaTable.getName());
+            if (table == null || !table.hasColumnsOf(metaTable))
+                return false;
+        }
+        return true;
+    }
+
+    private OctopusDataSource findDataSource(String dataSourceName) {
+        List<OctopusDataSource> dataSources = dataSourceMap.get(dataSourceName);
+        return dataSources == null || dataSources.isEmpty() ? null : dataSources.get(0);
+    }
+
+    private void schemaChanged() {
+        version++;
+        planCache.clear();
+    }
+
+    /*
+     * Plans validated under lockRead() are valid while the version is the
+     * same. Read it while holding lockRead().
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public PlanCache getPlanCache() {
+        return planCache;
+    }
+
     private <T> void addToListMap(Map<String, List<T>> map, String key, T value) {
         List<T> values = map.get(key);
         if (values == null) {
@@ -210,6 +354,15 @@ public final class SchemaManager extends AbstractService {
         values.add(value);
     }
 
+    private <T> void removeFromListMap(Map<String, List<T>> map, String key, T value) {
+        List<T> values = map.get(key);
+        if (values == null)
+            return;
+        values.remove(value);
+        if (values.isEmpty())
+            map.remove(key);
+    }
+
     public SchemaPlus getCurrentSchema() {
         return rootSchema;
     }
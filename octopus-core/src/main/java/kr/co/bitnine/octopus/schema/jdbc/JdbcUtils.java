@@ -14,9 +14,6 @@
 
 package kr.co.bitnine.octopus.schema.jdbc;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -37,19 +34,13 @@ import org.apache.calcite.linq4j.function.Function0;
 import org.apache.calcite.linq4j.function.Function1;
 import org.apache.calcite.linq4j.tree.Primitive;
 import org.apache.calcite.sql.SqlDialect;
-import org.apache.calcite.util.ImmutableNullableList;
 import org.apache.calcite.util.IntList;
 import org.apache.calcite.util.Pair;
-import org.apache.commons.dbcp2.BasicDataSource;
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
 
 /**
  * Utilities for the JDBC provider.
  */
 public final class JdbcUtils {
-    private static final Log LOG = LogFactory.getLog(JdbcUtils.class);
-
     private JdbcUtils() {
         throw new AssertionError("no instances!");
     }
@@ -201,52 +192,4 @@ public final class JdbcUtils {
             return new Date(time + offset);
         }
     }
-
-    /**
-     * Ensures that if two data sources have the same definition, they will use
-     * the same object.
-     * <p/>
-     * <p>This in turn makes it easier to cache
-     * {@link org.apache.calcite.sql.SqlDialect} objects. Otherwise, each time we
-     * see a new data source, we have to open a connection to find out what
-     * database product and version it is.
-     */
-    public static final class DataSourcePool {
-        public static final DataSourcePool INSTANCE = new DataSourcePool();
-
-        private final LoadingCache<List<String>, BasicDataSource> cache =
-                CacheBuilder.newBuilder().softValues().build(
-                        new CacheLoader<List<String>, BasicDataSource>() {
-                            @Override
-                            public BasicDataSource load(List<String> key) {
-                                BasicDataSource dataSource = new BasicDataSource();
-                                dataSource.setUrl(key.get(0));
-                                dataSource.setDriverClassName(key.get(1));
-                                dataSource.setValidationQuery("SELECT 1");
-                                LOG.info("load DataSource:" + dataSource + ", " + key.get(0) + " " + key.get(1));
-                                return dataSource;
-                            }
-                        });
-
-        public DataSource get(String url, String driverClassName) {
-            // Get data source objects from a cache, so that we don't have to sniff
-            // out what kind of database they are quite as often.
-            final List<String> key =
-                    ImmutableNullableList.of(url, driverClassName);
-            DataSource dataSource = cache.apply(key);
-            LOG.info("get DataSource:" + dataSource + ", " + url + " " + driverClassName);
-            return dataSource;
-        }
-
-        /* This method is for running Unit Tests in Octopus code.
-           There is no synchronization between closeAll() and get().
-         */
-        public void closeAll() throws SQLException {
-            for (BasicDataSource datasource : cache.asMap().values()) {
-                LOG.info("close DataSource:" + datasource);
-                datasource.close();
-            }
-            cache.invalidateAll();
-        }
-    }
 }
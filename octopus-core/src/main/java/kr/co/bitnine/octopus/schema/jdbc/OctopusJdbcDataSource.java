@@ -15,7 +15,9 @@
 package kr.co.bitnine.octopus.schema.jdbc;
 
 import com.google.common.collect.ImmutableMap;
+import java.sql.SQLException;
 import javax.sql.DataSource;
+import kr.co.bitnine.octopus.frame.ConnectionManager;
 import kr.co.bitnine.octopus.meta.model.MetaDataSource;
 import kr.co.bitnine.octopus.meta.model.MetaSchema;
 import kr.co.bitnine.octopus.schema.OctopusDataSource;
@@ -38,7 +40,7 @@ public final class OctopusJdbcDataSource extends OctopusDataSource {
         super(metaDataSource);
 
         LOG.debug("create OctopusJdbcDataSource. dataSourceName: " + metaDataSource.getName());
-        dataSource = dataSource(metaDataSource.getConnectionString(), metaDataSource.getDriverName());
+        dataSource = dataSource(metaDataSource.getName());
 
         /* TODO: what is this? */
         final Expression expression =
@@ -54,10 +56,14 @@ public final class OctopusJdbcDataSource extends OctopusDataSource {
     }
 
     /**
-     * Creates a JDBC data source with the given specification.
+     * Returns the pooled JDBC data source shared with by-pass queries.
      */
-    public static DataSource dataSource(String connectionString, String driverClassName) {
-        return JdbcUtils.DataSourcePool.INSTANCE.get(connectionString, driverClassName);
+    public static DataSource dataSource(String dataSourceName) {
+        try {
+            return ConnectionManager.getDataSource(dataSourceName);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     /**
@@ -25,7 +25,10 @@ import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 import static kr.co.bitnine.octopus.sql.OctopusSqlObjectPrivileges.OctopusSqlGrantObjPrivs;
@@ -34,6 +37,15 @@ import static kr.co.bitnine.octopus.sql.OctopusSqlSystemPrivileges.OctopusSqlGra
 import static kr.co.bitnine.octopus.sql.OctopusSqlSystemPrivileges.OctopusSqlRevokeSysPrivs;
 
 public final class OctopusSql {
+    /*
+     * Every statement of the grammar starts with one of these keywords.
+     * Others, such as queries, never parse and can skip parse().
+     */
+    private static final Set<String> DDL_KEYWORDS = new HashSet<>(Arrays.asList(
+            "ALTER", "COMMENT", "CREATE", "DROP", "GRANT", "REVOKE", "SET", "SHOW"));
+    private static final int DDL_KEYWORD_LENGTH_MIN = 3;
+    private static final int DDL_KEYWORD_LENGTH_MAX = 7;
+
     private OctopusSql() { }
 
     private static class Listener extends OctopusSqlBaseListener {
@@ -103,6 +115,18 @@ public final class OctopusSql {
             commands.add(new OctopusSqlDropDataSource(dataSourceName));
         }
 
+        @Override
+        public void exitAlterDataSource(OctopusSqlParser.AlterDataSourceContext ctx) {
+            String dataSourceName = ctx.dataSourceName().getText();
+            // null value resets the option to its default
+            Map<String, String> poolOptions = new LinkedHashMap<>();
+            for (OctopusSqlParser.PoolOptionContext option : ctx.poolOption()) {
+                String value = option.K_DEFAULT() == null ? option.NUMERIC_LITERAL().getText() : null;
+                poolOptions.put(option.poolOptionName().getText(), value);
+            }
+            commands.add(new OctopusSqlAlterDataSource(dataSourceName, poolOptions));
+        }
+
         @Override
         public void exitCreateUser(OctopusSqlParser.CreateUserContext ctx) {
             String name = ctx.user().getText();
@@ -185,6 +209,12 @@ public final class OctopusSql {
             sysPrivs.add(SystemPrivilege.SELECT_ANY_TABLE);
         }
 
+        @Override
+        public void exitSysPrivInsertAnyTable(OctopusSqlParser.SysPrivInsertAnyTableContext ctx) {
+            assert sysPrivs != null;
+            sysPrivs.add(SystemPrivilege.INSERT_ANY_TABLE);
+        }
+
         @Override
         public void exitSysPrivCreateUser(OctopusSqlParser.SysPrivCreateUserContext ctx) {
             assert sysPrivs != null;
@@ -279,6 +309,12 @@ public final class OctopusSql {
             objPrivs.add(ObjectPrivilege.SELECT);
         }
 
+        @Override
+        public void exitObjPrivInsert(OctopusSqlParser.ObjPrivInsertContext ctx) {
+            assert objPrivs != null;
+            objPrivs.add(ObjectPrivilege.INSERT);
+        }
+
         @Override
         public void exitObjPrivComment(OctopusSqlParser.ObjPrivCommentContext ctx) {
             assert objPrivs != null;
@@ -434,6 +470,28 @@ public final class OctopusSql {
         }
     }
 
+    // cheap check whether parse() may accept the query
+    public static boolean startsWithDdlKeyword(String query) {
+        int len = query.length();
+        int i = 0;
+        while (i < len) {
+            char c = query.charAt(i);
+            // WHITESPACES and leading ';'s of ddlStmts
+            if (c != ' ' && c != '\t' && c != '\r' && c != '\n' && c != ';')
+                break;
+            i++;
+        }
+
+        int start = i;
+        while (i < len && Character.isLetter(query.charAt(i)))
+            i++;
+        int keywordLen = i - start;
+        if (keywordLen < DDL_KEYWORD_LENGTH_MIN || keywordLen > DDL_KEYWORD_LENGTH_MAX)
+            return false;
+
+        return DDL_KEYWORDS.contains(query.substring(start, i).toUpperCase(Locale.ROOT));
+    }
+
     public static List<OctopusSqlCommand> parse(String query) {
         ANTLRInputStream input = new ANTLRInputStream(query);
         OctopusSqlLexer lexer = new OctopusSqlLexer(input);
@@ -467,6 +525,10 @@ public final class OctopusSql {
             OctopusSqlDropDataSource dropDataSource = (OctopusSqlDropDataSource) command;
             runner.dropDataSource(dropDataSource.getDataSourceName());
             break;
+        case ALTER_DATASOURCE:
+            OctopusSqlAlterDataSource alterDataSource = (OctopusSqlAlterDataSource) command;
+            runner.alterDataSourcePool(alterDataSource.getDataSourceName(), alterDataSource.getPoolOptions());
+            break;
         case CREATE_USER:
             OctopusSqlCreateUser createUser = (OctopusSqlCreateUser) command;
             runner.createUser(createUser.getName(), createUser.getPassword());
@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.sql;
+
+import java.util.Map;
+
+class OctopusSqlAlterDataSource extends OctopusSqlCommand {
+    private final String dataSourceName;
+    private final Map<String, String> poolOptions;
+
+    OctopusSqlAlterDataSource(String dataSourceName, Map<String, String> poolOptions) {
+        this.dataSourceName = dataSourceName;
+        this.poolOptions = poolOptions;
+    }
+
+    String getDataSourceName() {
+        return dataSourceName;
+    }
+
+    Map<String, String> getPoolOptions() {
+        return poolOptions;
+    }
+
+    @Override
+    public Type getType() {
+        return Type.ALTER_DATASOURCE;
+    }
+}
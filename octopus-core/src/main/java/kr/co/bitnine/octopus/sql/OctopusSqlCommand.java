@@ -19,6 +19,7 @@ public abstract class OctopusSqlCommand {
         SET,
         ADD_DATASOURCE,
         UPDATE_DATASOURCE,
+        ALTER_DATASOURCE,
         DROP_DATASOURCE,
         CREATE_USER,
         ALTER_USER,
@@ -19,6 +19,7 @@ import kr.co.bitnine.octopus.meta.privilege.SystemPrivilege;
 import kr.co.bitnine.octopus.postgres.executor.TupleSet;
 
 import java.util.List;
+import java.util.Map;
 
 public interface OctopusSqlRunner {
     void set(String confParam, String confValue) throws Exception;
@@ -29,6 +30,8 @@ public interface OctopusSqlRunner {
 
     void dropDataSource(String dataSourceName) throws Exception;
 
+    void alterDataSourcePool(String dataSourceName, Map<String, String> poolOptions) throws Exception;
+
     void createUser(String name, String password) throws Exception;
 
     void alterUser(String name, String password, String oldPassword) throws Exception;
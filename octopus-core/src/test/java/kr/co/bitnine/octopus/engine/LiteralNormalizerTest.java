@@ -0,0 +1,133 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.engine;
+
+import kr.co.bitnine.octopus.postgres.catalog.PostgresType;
+import kr.co.bitnine.octopus.postgres.utils.adt.IoFunction;
+import kr.co.bitnine.octopus.postgres.utils.adt.IoFunctions;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.tools.Frameworks;
+import org.apache.calcite.tools.Planner;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LiteralNormalizerTest {
+    private static final PostgresType[] NO_PARAMS = new PostgresType[0];
+
+    @Test
+    public void testNormalize() throws Exception {
+        LiteralNormalizer n = LiteralNormalizer.normalize(
+                "SELECT \"name\" FROM \"employee\" WHERE \"id\" >= ? AND \"name\" LIKE 'it''s%' AND \"id\" <> 3000000000",
+                new PostgresType[] {PostgresType.INT4});
+        assertEquals("SELECT \"name\" FROM \"employee\" WHERE \"id\" >= ? AND \"name\" LIKE ? AND \"id\" <> ?",
+                n.getQueryString());
+        assertArrayEquals(new PostgresType[] {PostgresType.INT4, PostgresType.VARCHAR, PostgresType.INT8},
+                n.getBindParamTypes());
+        assertArrayEquals(new boolean[] {false, true, true}, n.getLiteralSlots());
+        assertEquals("it's%", new String(n.getLiteralValues()[0], StandardCharsets.UTF_8));
+        assertEquals("3000000000", new String(n.getLiteralValues()[1], StandardCharsets.UTF_8));
+
+        n = LiteralNormalizer.normalize("SELECT * FROM t WHERE a=1.5 AND b > 2e3", NO_PARAMS);
+        assertEquals("SELECT * FROM t WHERE a=? AND b > ?", n.getQueryString());
+        assertArrayEquals(new PostgresType[] {PostgresType.NUMERIC, PostgresType.FLOAT8},
+                n.getBindParamTypes());
+    }
+
+    @Test
+    public void testWithParamTypes() throws Exception {
+        LiteralNormalizer n = LiteralNormalizer.normalize(
+                "SELECT * FROM t WHERE d = '2016-01-01' AND a > ? AND b < 7", new PostgresType[] {PostgresType.INT4});
+        LiteralNormalizer typed = n.withParamTypes(
+                new PostgresType[] {PostgresType.DATE, PostgresType.NUMERIC, PostgresType.INT8});
+        assertEquals(n.getQueryString(), typed.getQueryString());
+        // the type of a parameter given by the client is kept
+        assertArrayEquals(new PostgresType[] {PostgresType.DATE, PostgresType.INT4, PostgresType.INT8},
+                typed.getBindParamTypes());
+
+        // not a date
+        n = LiteralNormalizer.normalize("SELECT * FROM t WHERE d = 'yesterday'", NO_PARAMS);
+        assertNull(n.withParamTypes(new PostgresType[] {PostgresType.DATE}));
+        // fractions are not integers
+        n = LiteralNormalizer.normalize("SELECT * FROM t WHERE a = 1.5", NO_PARAMS);
+        assertNull(n.withParamTypes(new PostgresType[] {PostgresType.INT4}));
+        // not compared as text
+        n = LiteralNormalizer.normalize("SELECT * FROM t WHERE s = 7", NO_PARAMS);
+        assertNull(n.withParamTypes(new PostgresType[] {PostgresType.VARCHAR}));
+        // e.g. BOOLEAN
+        n = LiteralNormalizer.normalize("SELECT * FROM t WHERE b = 'true'", NO_PARAMS);
+        assertNull(n.withParamTypes(new PostgresType[] {PostgresType.UNSPECIFIED}));
+        assertNull(n.withParamTypes(new PostgresType[] {null}));
+    }
+
+    /*
+     * SQLite reports DATE columns as VARCHAR, so the normalized query is
+     * validated against a table of Calcite with a DATE column.
+     */
+    @Test
+    public void testDateColumn() throws Exception {
+        SchemaPlus rootSchema = Frameworks.createRootSchema(true);
+        rootSchema.add("t", new AbstractTable() {
+            @Override
+            public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+                return typeFactory.builder()
+                        .add("id", SqlTypeName.INTEGER)
+                        .add("d", SqlTypeName.DATE)
+                        .build();
+            }
+        });
+        Planner planner = Frameworks.getPlanner(Frameworks.newConfigBuilder()
+                .defaultSchema(rootSchema)
+                .build());
+
+        LiteralNormalizer n = LiteralNormalizer.normalize(
+                "SELECT \"id\" FROM \"t\" WHERE \"d\" = '2016-01-01' AND \"id\" = '7'", NO_PARAMS);
+        RelNode rel = planner.rel(planner.validate(planner.parse(n.getQueryString()))).rel;
+        PostgresType[] paramTypes = QueryEngine.inferParamTypes(rel, n.getBindParamTypes().length);
+        assertArrayEquals(new PostgresType[] {PostgresType.DATE, PostgresType.INT4}, paramTypes);
+
+        LiteralNormalizer typed = n.withParamTypes(paramTypes);
+        assertArrayEquals(paramTypes, typed.getBindParamTypes());
+        IoFunction io = IoFunctions.ofType(typed.getBindParamTypes()[0]);
+        assertEquals(Date.valueOf("2016-01-01"), io.in(typed.getLiteralValues()[0]));
+    }
+
+    @Test
+    public void testKeepLiterals() throws Exception {
+        assertNull(LiteralNormalizer.normalize("SELECT \"id\" FROM \"employee\"", NO_PARAMS));
+        assertNull(LiteralNormalizer.normalize(
+                "SELECT CAST(a AS DECIMAL(10, 2)) FROM t ORDER BY 1 LIMIT 10", NO_PARAMS));
+        assertNull(LiteralNormalizer.normalize("SELECT * FROM t WHERE d = DATE '2016-01-01'", NO_PARAMS));
+        assertNull(LiteralNormalizer.normalize("SELECT * FROM t WHERE a IN (1, 2) AND b = -1", NO_PARAMS));
+        assertNull(LiteralNormalizer.normalize("SELECT * FROM t WHERE a = 'x' 'y'", NO_PARAMS));
+        assertNull(LiteralNormalizer.normalize(
+                "SELECT \"a = 1\" FROM t -- WHERE a = 1\n/* b = 'c' */", NO_PARAMS));
+
+        // unterminated string
+        assertNull(LiteralNormalizer.normalize("SELECT * FROM t WHERE a = 'x", NO_PARAMS));
+        // parameters without types
+        assertNull(LiteralNormalizer.normalize("SELECT * FROM t WHERE a = ? AND b = 1", NO_PARAMS));
+    }
+}
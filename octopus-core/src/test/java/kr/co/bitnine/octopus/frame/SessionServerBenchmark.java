@@ -0,0 +1,214 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.frame;
+
+import kr.co.bitnine.octopus.conf.OctopusConfiguration;
+import kr.co.bitnine.octopus.meta.MetaContext;
+import kr.co.bitnine.octopus.meta.MetaStore;
+import kr.co.bitnine.octopus.meta.MetaStoreService;
+import kr.co.bitnine.octopus.meta.MetaStores;
+import kr.co.bitnine.octopus.meta.logs.StdoutUpdateLoggerFactory;
+import kr.co.bitnine.octopus.meta.model.MetaUser;
+import kr.co.bitnine.octopus.meta.privilege.SystemPrivilege;
+import kr.co.bitnine.octopus.schema.SchemaManager;
+import kr.co.bitnine.octopus.testutils.MemoryDatabase;
+import kr.co.bitnine.octopus.util.NetUtils;
+import org.apache.hadoop.conf.Configuration;
+
+import java.net.InetSocketAddress;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Compares the throughput of the session modes (blocking, selector and
+ * virtual) with many concurrent connections running by-pass SELECTs.
+ * The virtual mode is skipped on Java versions without virtual threads.
+ * This is not run as a unit test.
+ *
+ *   java -cp target/test-classes:target/classes:<dependencies> \
+ *       kr.co.bitnine.octopus.frame.SessionServerBenchmark [clients [queries [workers]]]
+ *
+ * workers is master.session.max of the selector mode; the blocking mode
+ * needs a thread for every connection.
+ */
+public final class SessionServerBenchmark {
+    private static final String QUERY = "SELECT \"id\", \"name\" FROM \"employee\"";
+    private static final int CLIENTS_DEFAULT = 64;
+    private static final int QUERIES_DEFAULT = 200;
+    private static final int WORKERS_DEFAULT = 8;
+
+    private SessionServerBenchmark() { }
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : CLIENTS_DEFAULT;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : QUERIES_DEFAULT;
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : WORKERS_DEFAULT;
+
+        Class.forName("kr.co.bitnine.octopus.Driver");
+
+        MemoryDatabase metaMemDb = new MemoryDatabase("meta");
+        metaMemDb.start();
+        MemoryDatabase dataMemDb = new MemoryDatabase("data");
+        dataMemDb.start();
+        dataMemDb.importJSON(SessionServerBenchmark.class, "/sample.json");
+
+        Configuration conf = new OctopusConfiguration();
+        conf.set("metastore.jdo.connection.drivername", MemoryDatabase.DRIVER_NAME);
+        conf.set("metastore.jdo.connection.URL", metaMemDb.connectionString);
+        conf.set("metastore.jdo.connection.username", "");
+        conf.set("metastore.jdo.connection.password", "");
+
+        MetaStore metaStore = MetaStores.newInstance(conf.get("metastore.class"));
+        MetaStoreService metaStoreService = new MetaStoreService(metaStore, new StdoutUpdateLoggerFactory());
+        metaStoreService.init(conf);
+        metaStoreService.start();
+
+        MetaContext metaContext = metaStore.getMetaContext();
+        MetaUser user = metaContext.createUser("octopus", "bitnine");
+        metaContext.addSystemPrivileges(Arrays.asList(SystemPrivilege.values()), Arrays.asList(user.getName()));
+
+        ConnectionManager connectionManager = new ConnectionManager(metaStore);
+        connectionManager.init(conf);
+        connectionManager.start();
+
+        SchemaManager schemaManager = SchemaManager.getSingletonInstance(metaStore);
+        schemaManager.init(conf);
+        schemaManager.start();
+
+        SessionFactory sessionFactory = new SessionFactoryImpl(metaStore, connectionManager, schemaManager);
+
+        boolean added = false;
+        for (String mode : new String[] {SessionServer.MODE_BLOCKING, SessionServer.MODE_SELECTOR, SessionServer.MODE_VIRTUAL}) {
+            if (SessionServer.MODE_VIRTUAL.equals(mode) && !isVirtualThreadSupported()) {
+                System.out.println(String.format("%-8s skipped, virtual threads are not supported", mode));
+                continue;
+            }
+
+            Configuration modeConf = new Configuration(conf);
+            modeConf.set(OctopusConfiguration.MASTER_SESSION_MODE, mode);
+            modeConf.setInt(OctopusConfiguration.MASTER_SESSION_MAX,
+                    SessionServer.MODE_SELECTOR.equals(mode) ? workers : clients);
+            SessionServer sessionServer = new SessionServer(sessionFactory);
+            sessionServer.init(modeConf);
+            sessionServer.start();
+            try {
+                if (!added) {
+                    Connection conn = getConnection();
+                    Statement stmt = conn.createStatement();
+                    stmt.execute("ALTER SYSTEM ADD DATASOURCE \"" + dataMemDb.name
+                            + "\" CONNECT TO '" + dataMemDb.connectionString
+                            + "' USING '" + MemoryDatabase.DRIVER_NAME + "'");
+                    stmt.close();
+                    conn.close();
+                    added = true;
+                }
+
+                // warm up
+                run(clients, queries / 10 + 1);
+
+                long nanos = run(clients, queries);
+                long n = (long) clients * queries;
+                System.out.println(String.format("%-8s %d clients x %d queries: %8.0f queries/s, %6.2f ms/query",
+                        mode, clients, queries, n / (nanos / 1000000000.0),
+                        nanos / 1000000.0 / queries));
+            } finally {
+                sessionServer.stop();
+            }
+        }
+
+        schemaManager.stop();
+        connectionManager.stop();
+        metaStoreService.stop();
+        dataMemDb.stop();
+        metaMemDb.stop();
+    }
+
+    private static boolean isVirtualThreadSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static Connection getConnection() throws Exception {
+        InetSocketAddress addr = NetUtils.createSocketAddr("127.0.0.1:58000");
+        String url = "jdbc:octopus://" + NetUtils.getHostPortString(addr);
+
+        Properties info = new Properties();
+        info.setProperty("user", "octopus");
+        info.setProperty("password", "bitnine");
+        info.setProperty("prepareThreshold", "1");
+        return DriverManager.getConnection(url, info);
+    }
+
+    // returns the nanoseconds from the start until the last client is done
+    private static long run(int clients, final int queries) throws Exception {
+        final CountDownLatch ready = new CountDownLatch(clients);
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        Connection conn;
+                        try {
+                            conn = getConnection();
+                        } finally {
+                            ready.countDown();
+                        }
+                        try {
+                            start.await();
+                            for (int q = 0; q < queries; q++) {
+                                Statement stmt = conn.createStatement();
+                                ResultSet rs = stmt.executeQuery(QUERY);
+                                while (rs.next())
+                                    rs.getString(2);
+                                rs.close();
+                                stmt.close();
+                            }
+                        } finally {
+                            conn.close();
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            ready.await();
+            long t0 = System.nanoTime();
+            start.countDown();
+            for (Future<Void> future : futures)
+                future.get();
+            return System.nanoTime() - t0;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
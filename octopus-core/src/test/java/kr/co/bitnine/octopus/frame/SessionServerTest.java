@@ -14,7 +14,10 @@
 
 package kr.co.bitnine.octopus.frame;
 
+import java.io.File;
 import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
 import kr.co.bitnine.octopus.conf.OctopusConfiguration;
 import kr.co.bitnine.octopus.meta.MetaContext;
 import kr.co.bitnine.octopus.meta.MetaStore;
@@ -23,6 +26,7 @@ import kr.co.bitnine.octopus.meta.MetaStores;
 import kr.co.bitnine.octopus.meta.logs.StdoutUpdateLoggerFactory;
 import kr.co.bitnine.octopus.meta.model.MetaUser;
 import kr.co.bitnine.octopus.meta.privilege.SystemPrivilege;
+import kr.co.bitnine.octopus.schema.PlanCache;
 import kr.co.bitnine.octopus.schema.SchemaManager;
 import kr.co.bitnine.octopus.testutils.MemoryDatabase;
 import kr.co.bitnine.octopus.util.NetUtils;
@@ -31,30 +35,39 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.junit.After;
 import org.junit.AfterClass;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.FixMethodOrder;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
 
 import java.net.InetSocketAddress;
+import java.nio.file.Files;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.Arrays;
 import java.util.Properties;
+import java.util.concurrent.Executors;
 import org.junit.rules.TestWatcher;
 import org.junit.runner.Description;
 import org.junit.runners.MethodSorters;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public class SessionServerTest {
@@ -65,6 +78,7 @@ public class SessionServerTest {
     private static MetaStoreService metaStoreService;
     private static ConnectionManager connectionManager;
     private static SchemaManager schemaManager;
+    private static SessionFactory sessionFactory;
     private static SessionServer sessionServer;
 
     @Rule
@@ -122,9 +136,9 @@ public class SessionServerTest {
         schemaManager.init(conf);
         schemaManager.start();
 
-        SessionFactory sessFactory = new SessionFactoryImpl(
+        sessionFactory = new SessionFactoryImpl(
                 metaStore, connectionManager, schemaManager);
-        sessionServer = new SessionServer(sessFactory);
+        sessionServer = new SessionServer(sessionFactory);
         sessionServer.init(conf);
         sessionServer.start();
 
@@ -149,15 +163,19 @@ public class SessionServerTest {
     }
 
     private static Connection getConnection(String user, String password) throws Exception {
+        return getConnection(user, password, new Properties());
+    }
+
+    private static Connection getConnection(String user, String password, Properties info) throws Exception {
         InetSocketAddress addr = NetUtils.createSocketAddr("127.0.0.1:58000");
         String url = "jdbc:octopus://" + NetUtils.getHostPortString(addr);
 
-        Properties info = new Properties();
         info.setProperty("user", user);
         info.setProperty("password", password);
 
 //        info.setProperty("prepareThreshold", "-1");
-        info.setProperty("prepareThreshold", "1");
+        if (!info.containsKey("prepareThreshold"))
+            info.setProperty("prepareThreshold", "1");
 
 //        info.setProperty("binaryTransfer", "true");
 
@@ -240,6 +258,91 @@ public class SessionServerTest {
         newMemDb.stop();
     }
 
+    @Test
+    public void testAlterDataSourcePool() throws Exception {
+        Connection conn = getConnection("octopus", "bitnine");
+        Statement stmt = conn.createStatement();
+
+        stmt.execute("ALTER DATASOURCE \"" + dataMemDb.name
+                + "\" SET POOL max_total = 2, min_idle = 1, validation_interval = 1000");
+        assertEquals(10, checkNumRows(stmt, "employee"));
+        stmt.execute("ALTER DATASOURCE \"" + dataMemDb.name + "\" SET POOL min_idle = DEFAULT");
+
+        String[] badOptions = {
+            "max_size = 2",
+            "max_total = 0",
+            "min_idle = 3",
+            "max_idle = 2147483648"
+        };
+        for (String badOption : badOptions) {
+            try {
+                stmt.execute("ALTER DATASOURCE \"" + dataMemDb.name + "\" SET POOL " + badOption);
+                fail("invalid pool option must be rejected - " + badOption);
+            } catch (SQLException e) {
+                System.out.println("expected exception - " + e.getMessage());
+            }
+        }
+
+        // validated on borrow without the interval
+        stmt.execute("ALTER DATASOURCE \"" + dataMemDb.name + "\" SET POOL validation_interval = 0");
+        assertEquals(10, checkNumRows(stmt, "employee"));
+        stmt.execute("ALTER DATASOURCE \"" + dataMemDb.name + "\" SET POOL validation_interval = DEFAULT");
+
+        stmt.close();
+        conn.close();
+    }
+
+    @Test
+    public void testPlanCache() throws Exception {
+        MemoryDatabase newMemDb = new MemoryDatabase("DATA2");
+        newMemDb.start();
+        newMemDb.runExecuteUpdate("CREATE TABLE \"TMP\" (\"ID\" INTEGER, \"NAME\" STRING)");
+
+        Connection conn = getConnection("octopus", "bitnine");
+        Statement stmt = conn.createStatement();
+        stmt.execute("ALTER SYSTEM ADD DATASOURCE \"" + newMemDb.name
+                + "\" CONNECT TO '" + newMemDb.connectionString
+                + "' USING '" + MemoryDatabase.DRIVER_NAME + "'");
+
+        String query = "SELECT \"ID\" FROM \"" + newMemDb.name + "\".\"__DEFAULT\".\"TMP\"";
+        PlanCache planCache = schemaManager.getPlanCache();
+        long hits = planCache.getHitCount();
+        stmt.executeQuery(query).close();
+        stmt.executeQuery(query).close();
+        assertTrue(planCache.getHitCount() > hits);
+
+        // queries differing only in literals share a plan
+        stmt.executeQuery("SELECT \"id\" FROM \"employee\" WHERE \"id\" = 1").close();
+        hits = planCache.getHitCount();
+        ResultSet rs = stmt.executeQuery("SELECT \"id\", \"name\" FROM \"employee\" WHERE \"name\" = 'jack'");
+        rs.close();
+        rs = stmt.executeQuery("SELECT \"id\" FROM \"employee\" WHERE \"id\" = 2");
+        assertTrue(rs.next());
+        assertEquals(2, rs.getInt(1));
+        assertFalse(rs.next());
+        rs.close();
+        rs = stmt.executeQuery("SELECT \"id\", \"name\" FROM \"employee\" WHERE \"name\" = 'jill'");
+        assertTrue(rs.next());
+        assertEquals("jill", rs.getString(2));
+        assertFalse(rs.next());
+        rs.close();
+        assertEquals(hits + 2, planCache.getHitCount());
+
+        // plans of the dropped data source must not be used
+        stmt.execute("ALTER SYSTEM DROP DATASOURCE \"" + newMemDb.name + '"');
+        assertEquals(0, planCache.size());
+        try {
+            stmt.executeQuery(query);
+            fail("query on a dropped data source succeeded");
+        } catch (SQLException e) {
+            System.out.println("expected exception - " + e.getMessage());
+        }
+
+        stmt.close();
+        conn.close();
+        newMemDb.stop();
+    }
+
     @Test
     public void testDropDataSource2() throws Exception {
         MemoryDatabase newMemDb = new MemoryDatabase("DATA2");
@@ -501,13 +604,286 @@ public class SessionServerTest {
         conn.close();
     }
 
-    /*
-     * Calcite has a problem that Connection for Data source in Octopus is not closed in a right way.
-     * This is because ResultSetEnumerator.close() is not called.
-     * So, if we test complex queries, the next test case has a problem that the Sqlite DB is not destroyed.
-     * For now, we temporarily decide not to conduct test cases for complex queries.
-     */
-    /*
+    @Test
+    public void testStatementCache() throws Exception {
+        Connection conn = getConnection("octopus", "bitnine");
+
+        PreparedStatement pstmt = conn.prepareStatement("SELECT \"name\" FROM \"employee\" WHERE \"id\" = ?");
+        for (int i = 0; i < 4; i++) {
+            pstmt.setInt(1, i);
+            ResultSet rs = pstmt.executeQuery();
+            assertTrue(rs.next());
+            rs.close();
+        }
+        pstmt.close();
+        conn.close();
+
+        // the backend prepares the query once on the pooled connection
+        assertEquals(0.75, ConnectionManager.getStatementCacheHitRate(dataMemDb.name), 0.0);
+    }
+
+    @Test
+    public void testDescribe() throws Exception {
+        Connection conn = getConnection("octopus", "bitnine");
+
+        // the row type is described before the query is executed
+        PreparedStatement pstmt = conn.prepareStatement("SELECT \"id\", \"name\" FROM \"employee\" WHERE \"id\" >= ?");
+        ResultSetMetaData rsmd = pstmt.getMetaData();
+        assertEquals(2, rsmd.getColumnCount());
+        assertEquals("id", rsmd.getColumnName(1));
+        assertEquals("name", rsmd.getColumnName(2));
+        assertEquals(Types.VARCHAR, rsmd.getColumnType(2));
+
+        pstmt.setInt(1, 7);
+        ResultSet rs = pstmt.executeQuery();
+        assertEquals(rsmd.getColumnType(1), rs.getMetaData().getColumnType(1));
+        assertTrue(rs.next());
+        rs.close();
+        pstmt.close();
+
+        conn.close();
+    }
+
+    @Test
+    public void testDescribeAggregate() throws Exception {
+        MemoryDatabase newMemDb = new MemoryDatabase("DATA2");
+        newMemDb.start();
+        newMemDb.runExecuteUpdate("CREATE TABLE \"NUMS\" (\"N\" INTEGER)");
+        newMemDb.runExecuteUpdate("INSERT INTO \"NUMS\" VALUES (2147483647)");
+        newMemDb.runExecuteUpdate("INSERT INTO \"NUMS\" VALUES (2)");
+
+        Connection conn = getConnection("octopus", "bitnine");
+        Statement stmt = conn.createStatement();
+        stmt.execute("ALTER SYSTEM ADD DATASOURCE \"" + newMemDb.name
+                + "\" CONNECT TO '" + newMemDb.connectionString
+                + "' USING '" + MemoryDatabase.DRIVER_NAME + "'");
+
+        // Calcite infers INTEGER for AVG, the data source does not
+        PreparedStatement pstmt = conn.prepareStatement("SELECT \"N\", AVG(\"N\") AS \"A\" FROM \""
+                + newMemDb.name + "\".\"__DEFAULT\".\"NUMS\" WHERE \"N\" > ? GROUP BY \"N\" ORDER BY \"N\"");
+        pstmt.setInt(1, 0);
+        ResultSet rs = pstmt.executeQuery();
+        ResultSetMetaData rsmd = rs.getMetaData();
+        assertEquals(Types.INTEGER, rsmd.getColumnType(1));
+        assertEquals("A", rsmd.getColumnName(2));
+        assertNotEquals(Types.INTEGER, rsmd.getColumnType(2));
+        assertTrue(rs.next());
+        assertEquals(2, rs.getInt(1));
+        assertTrue(rs.next());
+        assertEquals(2147483647, rs.getInt(1));
+        assertEquals(2147483647.0, rs.getDouble(2), 0.0);
+        assertFalse(rs.next());
+        rs.close();
+        pstmt.close();
+
+        rs = stmt.executeQuery("SELECT AVG(\"N\") FROM \"" + newMemDb.name + "\".\"__DEFAULT\".\"NUMS\"");
+        assertTrue(rs.next());
+        assertEquals(1073741824.5, rs.getDouble(1), 0.0);
+        rs.close();
+
+        stmt.execute("ALTER SYSTEM DROP DATASOURCE \"" + newMemDb.name + '"');
+        stmt.close();
+        conn.close();
+        newMemDb.stop();
+    }
+
+    @Test
+    public void testPipelinedSelect() throws Exception {
+        // restart the server to fetch rows of by-pass queries ahead and spool them
+        sessionServer.stop();
+        File spoolDir = Files.createTempDirectory("octopus-spool").toFile();
+        Configuration conf = new OctopusConfiguration();
+        conf.setInt(OctopusConfiguration.MASTER_BYPASS_PIPELINE_DEPTH, 1);
+        conf.set(OctopusConfiguration.MASTER_BYPASS_SPOOL_DIR, spoolDir.getPath());
+        // spools are removed and started over while rows are fetched
+        conf.setLong(OctopusConfiguration.MASTER_BYPASS_SPOOL_MAX_SIZE, 64);
+        conf.setInt(OctopusConfiguration.MASTER_SESSION_SEND_BUFFER_SIZE, 64);
+        sessionServer = new SessionServer(sessionFactory);
+        sessionServer.init(conf);
+        sessionServer.start();
+
+        Connection conn = getConnection("octopus", "bitnine");
+        Statement stmt = conn.createStatement();
+        for (int i = 0; i < 2; i++) {
+            ResultSet rs = stmt.executeQuery("SELECT \"id\", \"name\" FROM \"employee\" ORDER BY \"id\"");
+            int cnt = 0;
+            while (rs.next()) {
+                assertEquals(cnt, rs.getInt("id"));
+                cnt++;
+            }
+            assertEquals(10, cnt);
+            rs.close();
+        }
+        stmt.close();
+
+        conn.close();
+
+        // spool files are removed when the portal is closed
+        assertEquals(0, spoolDir.list().length);
+        assertTrue(spoolDir.delete());
+    }
+
+    @Test
+    public void testCopyToStdout() throws Exception {
+        Connection conn = getConnection("octopus", "bitnine");
+
+        Statement stmt = conn.createStatement();
+        int numRows = checkNumRows(stmt, "employee");
+        stmt.close();
+
+        CopyManager copyManager = ((PGConnection) conn).getCopyAPI();
+        StringWriter out = new StringWriter();
+        long copied = copyManager.copyOut("COPY (SELECT \"id\", \"name\" FROM \"employee\") TO STDOUT", out);
+        assertEquals(numRows, copied);
+        assertEquals(numRows, out.toString().split("\n").length);
+
+        out = new StringWriter();
+        copied = copyManager.copyOut("COPY (SELECT \"id\", \"name\" FROM \"employee\") TO STDOUT WITH CSV HEADER", out);
+        assertEquals(numRows, copied);
+        String[] lines = out.toString().split("\n");
+        assertEquals(numRows + 1, lines.length);
+        assertEquals("id,name", lines[0]);
+
+        conn.close();
+    }
+
+    @Test
+    public void testCopyFromStdin() throws Exception {
+        Connection conn = getConnection("octopus", "bitnine");
+
+        Statement stmt = conn.createStatement();
+        int numRows = checkNumRows(stmt, "employee");
+
+        CopyManager copyManager = ((PGConnection) conn).getCopyAPI();
+        String rows = "101\tcopy1\n102\t\\N\n103\ttab\\tin\\\\name\n";
+        long copied = copyManager.copyIn("COPY \"employee\" (\"id\", \"name\") FROM STDIN", new StringReader(rows));
+        assertEquals(3, copied);
+        assertEquals(numRows + 3, checkNumRows(stmt, "employee"));
+
+        ResultSet rs = stmt.executeQuery("SELECT \"name\" FROM \"employee\" WHERE \"name\" LIKE 'tab%'");
+        assertTrue(rs.next());
+        assertEquals("tab\tin\\name", rs.getString(1));
+        rs.close();
+
+        rows = "id,name\n201,\"quoted, \"\"name\"\"\"\n202,";
+        copied = copyManager.copyIn("COPY \"employee\" (\"id\", \"name\") FROM STDIN WITH CSV HEADER", new StringReader(rows));
+        assertEquals(2, copied);
+        assertEquals(numRows + 5, checkNumRows(stmt, "employee"));
+
+        // nothing is stored if a row is invalid
+        rows = "301\tok\n302\n";
+        try {
+            copyManager.copyIn("COPY \"employee\" (\"id\", \"name\") FROM STDIN", new StringReader(rows));
+            fail("COPY with a missing column succeeded");
+        } catch (SQLException e) {
+            System.out.println("expected exception - " + e.getMessage());
+        }
+        assertEquals(numRows + 5, checkNumRows(stmt, "employee"));
+
+        // the target must be columns of a single table
+        String[] badCopies = {
+            "COPY \"employee\", \"team\" FROM STDIN",
+            "COPY \"employee\" WHERE \"id\" > 0 FROM STDIN",
+            "COPY \"employee\" (\"id\", UPPER(\"name\")) FROM STDIN"
+        };
+        for (String badCopy : badCopies) {
+            try {
+                copyManager.copyIn(badCopy, new StringReader("401\tbad\n"));
+                fail("COPY succeeded - " + badCopy);
+            } catch (SQLException e) {
+                System.out.println("expected exception - " + e.getMessage());
+            }
+        }
+        assertEquals(numRows + 5, checkNumRows(stmt, "employee"));
+
+        stmt.close();
+        conn.close();
+    }
+
+    private void restartSessionServer(String mode, int sessMax) throws Exception {
+        Configuration conf = new Configuration(sessionServer.getConfig());
+        sessionServer.stop();
+
+        conf.set(OctopusConfiguration.MASTER_SESSION_MODE, mode);
+        conf.setInt(OctopusConfiguration.MASTER_SESSION_MAX, sessMax);
+        sessionServer = new SessionServer(sessionFactory);
+        sessionServer.init(conf);
+        sessionServer.start();
+    }
+
+    private void runConcurrentSessions(int numSessions) throws Exception {
+        Connection[] conns = new Connection[numSessions];
+        for (int i = 0; i < conns.length; i++)
+            conns[i] = getConnection("octopus", "bitnine");
+
+        for (int n = 0; n < 2; n++) {
+            for (Connection conn : conns) {
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT \"id\", \"name\" FROM \"employee\"");
+                int numRows = 0;
+                while (rs.next())
+                    numRows++;
+                assertTrue(numRows > 0);
+                rs.close();
+                stmt.close();
+            }
+        }
+
+        for (Connection conn : conns)
+            conn.close();
+    }
+
+    @Test
+    public void testBinaryTransfer() throws Exception {
+        Connection conn = getConnection("octopus", "bitnine");
+        Statement stmt = conn.createStatement();
+        ResultSet rs = stmt.executeQuery("SELECT \"id\", \"name\" FROM \"employee\"");
+        StringBuilder expected = new StringBuilder();
+        while (rs.next())
+            expected.append(rs.getInt(1)).append(',').append(rs.getString(2)).append('\n');
+        rs.close();
+        stmt.close();
+        conn.close();
+
+        // binary results from the first execution
+        Properties info = new Properties();
+        info.setProperty("prepareThreshold", "-1");
+        info.setProperty("binaryTransfer", "true");
+        conn = getConnection("octopus", "bitnine", info);
+        PreparedStatement pstmt = conn.prepareStatement("SELECT \"id\", \"name\" FROM \"employee\"");
+        rs = pstmt.executeQuery();
+        StringBuilder actual = new StringBuilder();
+        while (rs.next())
+            actual.append(rs.getInt(1)).append(',').append(rs.getString(2)).append('\n');
+        rs.close();
+        pstmt.close();
+        conn.close();
+
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test
+    public void testSelectorMode() throws Exception {
+        // idle sessions do not hold the only worker thread
+        restartSessionServer(SessionServer.MODE_SELECTOR, 1);
+        runConcurrentSessions(4);
+    }
+
+    @Test
+    public void testVirtualMode() throws Exception {
+        boolean supported = true;
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            supported = false;
+        }
+        Assume.assumeTrue(supported);
+
+        // master.session.max is not applied to virtual threads
+        restartSessionServer(SessionServer.MODE_VIRTUAL, 1);
+        runConcurrentSessions(4);
+    }
+
     @Test
     public void testComplexSelect() throws Exception {
         MemoryDatabase newMemDb = new MemoryDatabase("DATA2");
@@ -518,8 +894,6 @@ public class SessionServerTest {
         newMemDb.runExecuteUpdate("INSERT INTO \"TMP2\" VALUES (1, 'bitnine')");
         newMemDb.runExecuteUpdate("INSERT INTO \"TMP2\" VALUES (1, 'bitnine')");
 
-        newMemDb.selectFrom("SELECT * FROM \"TMP2\"");
-
         Connection conn = getConnection("octopus", "bitnine");
 
         Statement stmt = conn.createStatement();
@@ -527,23 +901,27 @@ public class SessionServerTest {
                 + "\" CONNECT TO '" + newMemDb.connectionString
                 + "' USING '" + MemoryDatabase.DRIVER_NAME + "'");
 
-        stmt = conn.createStatement();
-        ResultSet rs = stmt.executeQuery(
-                "SELECT \"EM\".\"name\" " +
-                        "FROM \"employee\" \"EM\", " +
-                        "\"DATA2\".\"__DEFAULT\".\"TMP2\" \"TM\" " +
-                        "WHERE \"EM\".\"id\" = \"TM\".\"ID\"");
+        // Calcite returns the connections it borrowed from the shared pools
+        for (int i = 0; i < 3; i++) {
+            ResultSet rs = stmt.executeQuery(
+                    "SELECT \"EM\".\"name\" "
+                            + "FROM \"employee\" \"EM\", "
+                            + "\"DATA2\".\"__DEFAULT\".\"TMP2\" \"TM\" "
+                            + "WHERE \"EM\".\"id\" = \"TM\".\"ID\"");
+            while (rs.next())
+                assertEquals("v.p.", rs.getString(1));
+            rs.close();
 
-        while (rs.next()) {
-            System.out.println(rs.getString(1));
+            assertEquals(0, ConnectionManager.getNumActive(dataMemDb.name));
+            assertEquals(0, ConnectionManager.getNumActive(newMemDb.name));
         }
 
-        rs.close();
+        stmt.execute("ALTER SYSTEM DROP DATASOURCE \"" + newMemDb.name + '"');
+
         stmt.close();
         conn.close();
         newMemDb.stop();
     }
-    */
 
     @Test
     public void testUser() throws Exception {
@@ -0,0 +1,173 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.postgres.libpq;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class MessageStreamTest {
+    private ServerSocketChannel serverChannel;
+    private SocketChannel sendChannel;
+    private SocketChannel recvChannel;
+
+    @Before
+    public void setUp() throws Exception {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress("127.0.0.1", 0));
+        sendChannel = SocketChannel.open(serverChannel.getLocalAddress());
+        recvChannel = serverChannel.accept();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sendChannel.close();
+        recvChannel.close();
+        serverChannel.close();
+    }
+
+    @Test
+    public void testWriteMessage() throws Exception {
+        final MessageStream sendStream = new MessageStream(sendChannel);
+        MessageStream recvStream = new MessageStream(recvChannel);
+
+        final byte[] small = "octopus".getBytes("UTF-8");
+        final byte[] large = new byte[20 * 1024]; // larger than the send buffer
+        Arrays.fill(large, (byte) 'x');
+        final int numRows = 100;
+
+        Thread sender = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < numRows; i++) {
+                        sendStream.beginMessage('D');
+                        sendStream.writeShort((short) 3);
+                        sendStream.writeInt(small.length);
+                        sendStream.writeBytes(small);
+                        sendStream.writeInt(-1);
+                        byte[] bytes = i % 10 == 0 ? large : small;
+                        sendStream.writeInt(bytes.length);
+                        sendStream.writeBytes(bytes);
+                        sendStream.endMessage();
+                    }
+                    sendStream.putMessageAndFlush(Message.builder('Z').putChar('I').build());
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        sender.start();
+
+        for (int i = 0; i < numRows; i++) {
+            Message msg = recvStream.getMessage();
+            assertEquals('D', msg.getType());
+            assertEquals(3, msg.getShort());
+            assertArrayEquals(small, msg.getBytes(msg.getInt()));
+            assertEquals(-1, msg.getInt());
+            byte[] expected = i % 10 == 0 ? large : small;
+            assertArrayEquals(expected, msg.getBytes(msg.getInt()));
+        }
+        Message msg = recvStream.getMessage();
+        assertEquals('Z', msg.getType());
+        assertEquals('I', msg.getChar());
+
+        sender.join();
+    }
+
+    @Test
+    public void testTransferTo() throws Exception {
+        final MessageStream sendStream = new MessageStream(sendChannel);
+        MessageStream recvStream = new MessageStream(recvChannel);
+
+        final byte[] large = new byte[20 * 1024]; // larger than the send buffer
+        Arrays.fill(large, (byte) 'x');
+        final int numBatches = 10;
+
+        Thread sender = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    MessageStream batch = MessageStream.buffer(1024);
+                    for (int i = 0; i < numBatches; i++) {
+                        for (int j = 0; j <= i; j++) {
+                            batch.beginMessage('D');
+                            batch.writeInt(j);
+                            if (i % 3 == 0)
+                                batch.writeBytes(large);
+                            batch.endMessage();
+                        }
+                        batch.transferTo(sendStream);
+                        assertEquals(0, batch.getBufferedLength());
+                    }
+                    sendStream.putMessageAndFlush(Message.builder('Z').putChar('I').build());
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        sender.start();
+
+        for (int i = 0; i < numBatches; i++) {
+            for (int j = 0; j <= i; j++) {
+                Message msg = recvStream.getMessage();
+                assertEquals('D', msg.getType());
+                assertEquals(j, msg.getInt());
+                if (i % 3 == 0)
+                    assertArrayEquals(large, msg.getBytes(large.length));
+            }
+        }
+        Message msg = recvStream.getMessage();
+        assertEquals('Z', msg.getType());
+
+        sender.join();
+    }
+
+    @Test
+    public void testReceiveMessage() throws Exception {
+        MessageStream sendStream = new MessageStream(sendChannel);
+        MessageStream recvStream = new MessageStream(recvChannel);
+
+        byte[] large = new byte[20 * 1024]; // larger than the receive buffer
+        Arrays.fill(large, (byte) 'x');
+
+        sendStream.putMessage(Message.builder('Q').putCString("SELECT 1").build());
+        sendStream.putMessage(Message.builder('B').putInt(large.length).putBytes(large).build());
+        sendStream.putMessageAndFlush(Message.builder('Q').putCString("SELECT 2").build());
+
+        Message msg = recvStream.getMessage();
+        assertEquals('Q', msg.getType());
+        assertEquals("SELECT 1", msg.getCString());
+
+        msg = recvStream.getMessage();
+        assertEquals('B', msg.getType());
+        assertEquals(large.length, msg.getInt());
+        assertEquals(ByteBuffer.wrap(large), msg.getByteBuffer(large.length));
+
+        msg = recvStream.getMessage();
+        assertEquals('Q', msg.getType());
+        assertArrayEquals("SELECT 2\0".getBytes("UTF-8"), msg.getBody());
+        assertEquals("SELECT 2", msg.getCString());
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.postgres.utils.adt;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.Random;
+
+/*
+ * Compares the throughput of text (in/out) and binary (recv/send) formats
+ * of NUMERIC, DATE and TIMESTAMP. This is not run as a unit test.
+ *
+ *   java -cp target/test-classes:target/classes \
+ *       kr.co.bitnine.octopus.postgres.utils.adt.IoFunctionBenchmark
+ */
+public final class IoFunctionBenchmark {
+    private static final int NUM_VALUES = 100000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+
+    private IoFunctionBenchmark() { }
+
+    public static void main(String[] args) {
+        Random random = new Random(7);
+        Object[] numerics = new Object[NUM_VALUES];
+        Object[] dates = new Object[NUM_VALUES];
+        Object[] timestamps = new Object[NUM_VALUES];
+        for (int i = 0; i < NUM_VALUES; i++) {
+            numerics[i] = BigDecimal.valueOf(random.nextLong(), random.nextInt(10));
+            long millis = (long) (random.nextDouble() * 4102444800000L);
+            dates[i] = Date.valueOf(new Date(millis).toString());
+            Timestamp ts = new Timestamp(millis);
+            ts.setNanos(random.nextInt(1000000) * 1000);
+            timestamps[i] = ts;
+        }
+
+        run("NUMERIC", new IoNumeric(), numerics);
+        run("DATE", new IoDate(), dates);
+        run("TIMESTAMP", new IoTimestamp(), timestamps);
+    }
+
+    private static void run(String name, IoFunction io, Object[] values) {
+        byte[][] texts = new byte[values.length][];
+        byte[][] binaries = new byte[values.length][];
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++)
+            roundTrip(io, values, texts, binaries);
+
+        long outNanos = 0;
+        long inNanos = 0;
+        long sendNanos = 0;
+        long recvNanos = 0;
+        long textBytes = 0;
+        long binaryBytes = 0;
+        for (int r = 0; r < ROUNDS; r++) {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < values.length; i++)
+                texts[i] = io.out(values[i]);
+            long t1 = System.nanoTime();
+            for (int i = 0; i < values.length; i++)
+                io.in(texts[i]);
+            long t2 = System.nanoTime();
+            for (int i = 0; i < values.length; i++)
+                binaries[i] = io.send(values[i]);
+            long t3 = System.nanoTime();
+            for (int i = 0; i < values.length; i++)
+                io.recv(binaries[i]);
+            long t4 = System.nanoTime();
+
+            outNanos += t1 - t0;
+            inNanos += t2 - t1;
+            sendNanos += t3 - t2;
+            recvNanos += t4 - t3;
+        }
+        for (int i = 0; i < values.length; i++) {
+            textBytes += texts[i].length;
+            binaryBytes += binaries[i].length;
+        }
+
+        long n = (long) values.length * ROUNDS;
+        System.out.println(String.format(
+                "%-9s text: out %8.0f ops/ms, in %8.0f ops/ms, %5.1f bytes/value",
+                name, opsPerMilli(n, outNanos), opsPerMilli(n, inNanos),
+                (double) textBytes / values.length));
+        System.out.println(String.format(
+                "%-9s binary: send %8.0f ops/ms, recv %8.0f ops/ms, %5.1f bytes/value",
+                name, opsPerMilli(n, sendNanos), opsPerMilli(n, recvNanos),
+                (double) binaryBytes / values.length));
+    }
+
+    private static void roundTrip(IoFunction io, Object[] values,
+                                  byte[][] texts, byte[][] binaries) {
+        for (int i = 0; i < values.length; i++) {
+            texts[i] = io.out(values[i]);
+            io.in(texts[i]);
+            binaries[i] = io.send(values[i]);
+            io.recv(binaries[i]);
+        }
+    }
+
+    private static double opsPerMilli(long ops, long nanos) {
+        return ops / (nanos / 1000000.0);
+    }
+}
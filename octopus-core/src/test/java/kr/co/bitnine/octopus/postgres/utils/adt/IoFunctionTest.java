@@ -16,6 +16,11 @@ package kr.co.bitnine.octopus.postgres.utils.adt;
 
 import org.junit.Test;
 
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 public class IoFunctionTest {
@@ -44,4 +49,68 @@ public class IoFunctionTest {
         bytes = ioVarchar.send(s);
         assertEquals(s, ioVarchar.recv(bytes));
     }
+
+    @Test
+    public void testNumeric() throws Exception {
+        IoNumeric ioNumeric = new IoNumeric();
+
+        String[] values = {"0", "0.00", "1", "-1", "10000", "123.45",
+            "-0.0001", "0.000012", "99999999.99999999", "1E+5", "1E-20",
+            "-9223372036854775808", "1234567890123456.789",
+            "-123456789012345678901234567890.123456789"};
+        for (String v : values) {
+            BigDecimal d = new BigDecimal(v);
+
+            byte[] bytes = ioNumeric.out(d);
+            assertEquals(0, d.compareTo((BigDecimal) ioNumeric.in(bytes)));
+
+            bytes = ioNumeric.send(d);
+            BigDecimal r = (BigDecimal) ioNumeric.recv(bytes);
+            assertEquals(0, d.compareTo(r));
+            assertEquals(Math.max(d.scale(), 0), r.scale());
+        }
+
+        // 123.45 = 123 * 10000^0 + 4500 * 10000^-1
+        byte[] expected = {0, 2, 0, 0, 0, 0, 0, 2, 0, 123, 0x11, (byte) 0x94};
+        assertArrayEquals(expected, ioNumeric.send(new BigDecimal("123.45")));
+    }
+
+    @Test
+    public void testDate() throws Exception {
+        IoDate ioDate = new IoDate();
+
+        String[] values = {"2000-01-01", "1999-12-31", "1970-01-01", "2016-02-29"};
+        for (String v : values) {
+            Date d = Date.valueOf(v);
+
+            byte[] bytes = ioDate.out(d);
+            assertEquals(d, ioDate.in(bytes));
+
+            bytes = ioDate.send(d);
+            assertEquals(d, ioDate.recv(bytes));
+        }
+
+        assertArrayEquals(new byte[] {0, 0, 0, 0}, ioDate.send(Date.valueOf("2000-01-01")));
+        assertArrayEquals(new byte[] {-1, -1, -1, -1}, ioDate.send(Date.valueOf("1999-12-31")));
+    }
+
+    @Test
+    public void testTimestamp() throws Exception {
+        IoTimestamp ioTimestamp = new IoTimestamp();
+
+        String[] values = {"2000-01-01 00:00:00", "1999-12-31 23:59:59.999999",
+            "1970-01-01 00:00:00.5", "2016-07-04 12:34:56.123456"};
+        for (String v : values) {
+            Timestamp ts = Timestamp.valueOf(v);
+
+            byte[] bytes = ioTimestamp.out(ts);
+            assertEquals(ts, ioTimestamp.in(bytes));
+
+            bytes = ioTimestamp.send(ts);
+            assertEquals(ts, ioTimestamp.recv(bytes));
+        }
+
+        byte[] expected = {0, 0, 0, 0, 0, 0x0F, 0x42, 0x41};
+        assertArrayEquals(expected, ioTimestamp.send(Timestamp.valueOf("2000-01-01 00:00:01.000001")));
+    }
 }
@@ -0,0 +1,84 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.sql;
+
+import org.antlr.v4.runtime.RecognitionException;
+import org.apache.calcite.avatica.util.Casing;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.calcite.sql.parser.SqlParser;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/*
+ * Compares the parse latency of typical queries between trying
+ * OctopusSql.parse() first and classifying them by the leading keyword.
+ * This is not run as a unit test.
+ *
+ *   java -cp target/test-classes:target/classes:<dependencies> \
+ *       kr.co.bitnine.octopus.sql.OctopusSqlBenchmark
+ */
+public final class OctopusSqlBenchmark {
+    private static final String[] QUERIES = {
+        "SELECT \"id\", \"name\" FROM \"employee\"",
+        "SELECT \"id\", \"name\" FROM \"employee\" WHERE \"id\" >= ?",
+        "SELECT COUNT(*) FROM \"data\".\"__DEFAULT\".\"employee\" e, \"team\" t WHERE e.\"id\" = t.\"id\"",
+        "SELECT \"name\" FROM \"employee\" WHERE \"name\" LIKE 'tab%' ORDER BY \"name\" LIMIT 10"
+    };
+    private static final int WARMUP_ITERATIONS = 20000;
+    private static final int ITERATIONS = 50000;
+
+    private static final SqlParser.Config PARSER_CONF = SqlParser.configBuilder()
+            .setUnquotedCasing(Casing.TO_LOWER)
+            .build();
+
+    private OctopusSqlBenchmark() { }
+
+    public static void main(String[] args) throws Exception {
+        // ANTLR reports syntax errors of queries on stderr
+        PrintStream stderr = System.err;
+        System.setErr(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) { }
+        }));
+        try {
+            run(true, WARMUP_ITERATIONS);
+            run(false, WARMUP_ITERATIONS);
+
+            double before = run(true, ITERATIONS);
+            double after = run(false, ITERATIONS);
+            System.out.println(String.format("OctopusSql.parse() first: %8.2f us/query", before));
+            System.out.println(String.format("leading keyword check   : %8.2f us/query", after));
+        } finally {
+            System.setErr(stderr);
+        }
+    }
+
+    // returns microseconds per query
+    private static double run(boolean tryOctopusSql, int iterations) throws SqlParseException {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            String query = QUERIES[i % QUERIES.length];
+            if (tryOctopusSql || OctopusSql.startsWithDdlKeyword(query)) {
+                try {
+                    if (!OctopusSql.parse(query).isEmpty())
+                        continue;
+                } catch (RecognitionException ignore) { }
+            }
+            SqlParser.create(query, PARSER_CONF).parseQuery();
+        }
+        return (System.nanoTime() - start) / 1000.0 / iterations;
+    }
+}
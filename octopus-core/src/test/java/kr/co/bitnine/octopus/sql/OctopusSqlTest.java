@@ -28,9 +28,14 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 @RunWith(JMockit.class)
 public class OctopusSqlTest {
     @Mocked
@@ -170,6 +175,18 @@ public class OctopusSqlTest {
         }};
     }
 
+    @Test
+    public void testAlterDataSourcePool() throws Exception {
+        final String dataSourceName = "bitnine";
+        parseAndRun("ALTER DATASOURCE \"" + dataSourceName + "\" SET POOL max_total = 4, min_idle TO DEFAULT");
+        new Verifications() {{
+            Map<String, String> poolOptions = new LinkedHashMap<>();
+            poolOptions.put("max_total", "4");
+            poolOptions.put("min_idle", null);
+            anyRunner.alterDataSourcePool(dataSourceName, poolOptions);
+        }};
+    }
+
     @Test
     public void testUser() throws Exception {
         final String name = "octopus";
@@ -362,4 +379,17 @@ public class OctopusSqlTest {
             anyRunner.setDataCategoryOn(withArgThat(targetEqualTo(target)), category);
         }};
     }
+
+    @Test
+    public void testStartsWithDdlKeyword() throws Exception {
+        assertTrue(OctopusSql.startsWithDdlKeyword("SET \"param\" = 7"));
+        assertTrue(OctopusSql.startsWithDdlKeyword("  ;\n\tshow TABLES"));
+        assertTrue(OctopusSql.startsWithDdlKeyword("Alter SYSTEM DROP DATASOURCE \"ds\""));
+        assertTrue(OctopusSql.startsWithDdlKeyword("COMMENT ON DATASOURCE \"ds\" IS 'c'"));
+
+        assertFalse(OctopusSql.startsWithDdlKeyword("SELECT * FROM \"employee\""));
+        assertFalse(OctopusSql.startsWithDdlKeyword("settings"));
+        assertFalse(OctopusSql.startsWithDdlKeyword("(SELECT 1)"));
+        assertFalse(OctopusSql.startsWithDdlKeyword(""));
+    }
 }
@@ -73,13 +73,18 @@ public final class JDOMetaContext implements MetaContext {
 
     private final PersistenceManager pm;
     private final UpdateLoggerFactory updateLoggerFactory;
+    private final int importThreads;
+    private final int importBatchSize;
 
     private UpdateLogger updateLogger;
 
     public JDOMetaContext(PersistenceManager persistenceManager,
-                          UpdateLoggerFactory updateLoggerFactory) {
+                          UpdateLoggerFactory updateLoggerFactory,
+                          int importThreads, int importBatchSize) {
         pm = persistenceManager;
         this.updateLoggerFactory = updateLoggerFactory;
+        this.importThreads = importThreads;
+        this.importBatchSize = importBatchSize;
     }
 
     private MUser getMUser(String name, boolean nothrow) throws MetaException {
@@ -224,18 +229,18 @@ public final class JDOMetaContext implements MetaContext {
             throw new MetaException(e);
         }
 
+        // read the catalog before the transaction begins; it may take long
+        Map<String, List<Table>> catalog =
+                new JdbcCatalogCrawler(name, connectionString, importThreads).crawl();
+
         Transaction tx = pm.currentTransaction();
-        Connection conn = null;
         try {
-            conn = DriverManager.getConnection(connectionString);
-            DataContext dc = DataContextFactory.createJdbcDataContext(conn);
-
             tx.begin();
 
             MDataSource mDataSource = new MDataSource(name, driverName, connectionString, MetaDataSource.DataSourceType.JDBC);
             pm.makePersistent(mDataSource);
 
-            addDataSourceInternal(dc, mDataSource);
+            importJdbcCatalog(catalog, mDataSource);
 
             tx.commit();
 
@@ -246,11 +251,6 @@ public final class JDOMetaContext implements MetaContext {
         } catch (Exception e) {
             throw new MetaException("failed to add data source '" + name + "' - " + e.getMessage(), e);
         } finally {
-            if (conn != null) {
-                try {
-                    conn.close();
-                } catch (SQLException ignore) { }
-            }
             if (tx.isActive())
                 tx.rollback();
         }
@@ -440,6 +440,51 @@ public final class JDOMetaContext implements MetaContext {
         }
     }
 
+    /*
+     * Objects are flushed every importBatchSize objects instead of one by
+     * one, so that the metastore can batch the inserts.
+     */
+    private void importJdbcCatalog(Map<String, List<Table>> catalog, MDataSource mDataSource) throws MetaException {
+        int tableCount = 0;
+        for (List<Table> tables : catalog.values())
+            tableCount += tables.size();
+
+        pm.setProperty("datanucleus.flush.mode", "MANUAL");
+        try {
+            int tablesDone = 0;
+            int pending = 0;
+            for (Map.Entry<String, List<Table>> e : catalog.entrySet()) {
+                String schemaName = e.getKey();
+                if (schemaName == null)
+                    schemaName = "__DEFAULT";
+
+                LOG.debug("add schema. schemaName=" + schemaName);
+                MSchema mSchema = new MSchema(schemaName, mDataSource);
+                pm.makePersistent(mSchema);
+
+                for (Table rawTable : e.getValue()) {
+                    LOG.debug("add table. tableName=" + rawTable.getName());
+                    MTable mTable = new MTable(rawTable.getName(), rawTable.getType().name(), mSchema);
+                    pm.makePersistent(mTable);
+                    addColumnsOfTable(rawTable, mTable);
+
+                    tablesDone++;
+                    pending += 1 + rawTable.getColumnCount();
+                    if (pending >= importBatchSize) {
+                        pm.flush();
+                        pending = 0;
+                        LOG.info("data source '" + mDataSource.getName() + "': stored " + tablesDone + "/"
+                                + tableCount + " tables");
+                    }
+                }
+            }
+            pm.flush();
+            LOG.info("data source '" + mDataSource.getName() + "': stored " + tablesDone + "/" + tableCount + " tables");
+        } finally {
+            pm.setProperty("datanucleus.flush.mode", "AUTO");
+        }
+    }
+
     private void updateColumnsOfTable(Table rawTable, MTable mTable) throws MetaException {
         Map<String, MColumn> oldColumns = new HashMap<>();
 
@@ -612,6 +657,17 @@ public final class JDOMetaContext implements MetaContext {
         }
     }
 
+    @Override
+    public void setDataSourcePoolOptions(String name, String poolOptions) throws MetaException {
+        MDataSource mDataSource = (MDataSource) getDataSource(name);
+        mDataSource.setPoolOptions(poolOptions);
+        try {
+            pm.makePersistent(mDataSource);
+        } catch (RuntimeException e) {
+            throw new MetaException("failed to set pool options of data source '" + name + "'", e);
+        }
+    }
+
     @Override
     public Collection<MetaDataSource> getDataSources() throws MetaException {
         try {
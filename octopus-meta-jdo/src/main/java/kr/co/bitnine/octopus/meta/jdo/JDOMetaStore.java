@@ -28,8 +28,13 @@ import java.util.Properties;
 public final class JDOMetaStore implements MetaStore {
     private static final Log LOG = LogFactory.getLog(JDOMetaStore.class);
 
+    private static final String IMPORT_THREADS_DEFAULT = "4";
+    private static final String IMPORT_BATCH_SIZE_DEFAULT = "1000";
+
     private static PersistenceManagerFactory pmf;
     private static UpdateLoggerFactory ulf;
+    private static int importThreads;
+    private static int importBatchSize;
 
     @Override
     public void start(Properties conf, UpdateLoggerFactory updateLoggerFactory)
@@ -51,6 +56,13 @@ public final class JDOMetaStore implements MetaStore {
             props.setProperty("datanucleus.connectionPoolingType.nontx", "None");
         }
 
+        importThreads = Integer.parseInt(conf.getProperty("metastore.jdo.import.threads", IMPORT_THREADS_DEFAULT));
+        if (importThreads <= 0)
+            throw new MetaException("metastore.jdo.import.threads must be positive: " + importThreads);
+        importBatchSize = Integer.parseInt(conf.getProperty("metastore.jdo.import.batch.size", IMPORT_BATCH_SIZE_DEFAULT));
+        if (importBatchSize <= 0)
+            throw new MetaException("metastore.jdo.import.batch.size must be positive: " + importBatchSize);
+
         pmf = JDOHelper.getPersistenceManagerFactory(props);
         JDOMetaStore.ulf = updateLoggerFactory;
     }
@@ -62,6 +74,6 @@ public final class JDOMetaStore implements MetaStore {
 
     @Override
     public MetaContext getMetaContext() {
-        return new JDOMetaContext(pmf.getPersistenceManager(), ulf);
+        return new JDOMetaContext(pmf.getPersistenceManager(), ulf, importThreads, importBatchSize);
     }
 }
@@ -0,0 +1,242 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.meta.jdo;
+
+import kr.co.bitnine.octopus.meta.MetaException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.metamodel.DataContext;
+import org.apache.metamodel.DataContextFactory;
+import org.apache.metamodel.schema.Schema;
+import org.apache.metamodel.schema.Table;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Reads tables and their columns of a JDBC data source. Schemas and
+ * tables are listed once, and then their columns are read by as many
+ * workers as there are threads, each of which has its own connection
+ * and a share of the tables.
+ */
+final class JdbcCatalogCrawler {
+    private static final Log LOG = LogFactory.getLog(JdbcCatalogCrawler.class);
+
+    private final String dataSourceName;
+    private final String connectionString;
+    private final int threads;
+    // the connection of the worker (or the lister) running on the thread
+    private final ThreadLocal<Connection> boundConnection = new ThreadLocal<>();
+
+    JdbcCatalogCrawler(String dataSourceName, String connectionString, int threads) {
+        this.dataSourceName = dataSourceName;
+        this.connectionString = connectionString;
+        this.threads = threads;
+    }
+
+    /*
+     * Returns tables with their columns loaded by schema name (null for
+     * the default schema) in the order the data source gives them.
+     */
+    Map<String, List<Table>> crawl() throws MetaException {
+        Map<String, List<Table>> catalog = new LinkedHashMap<>();
+        List<Table> allTables = new ArrayList<>();
+        try {
+            bindConnection();
+            try {
+                /*
+                 * MetaModel loads columns lazily through the connection it
+                 * gets from the DataSource, which is the one bound to the
+                 * thread asking for them.
+                 */
+                DataContext dc = DataContextFactory.createJdbcDataContext(new BoundDataSource());
+                for (Schema rawSchema : dc.getSchemas()) {
+                    if ("information_schema".equalsIgnoreCase(rawSchema.getName()))
+                        continue;
+                    List<Table> tables = Arrays.asList(rawSchema.getTables());
+                    catalog.put(rawSchema.getName(), tables);
+                    allTables.addAll(tables);
+                }
+            } finally {
+                unbindConnection();
+            }
+        } catch (SQLException e) {
+            throw new MetaException(e);
+        }
+        LOG.info("data source '" + dataSourceName + "': listed " + catalog.size() + " schemas, "
+                + allTables.size() + " tables");
+
+        int workers = Math.max(1, Math.min(threads, allTables.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                List<Table> share = new ArrayList<>();
+                for (int j = i; j < allTables.size(); j += workers)
+                    share.add(allTables.get(j));
+                futures.add(executor.submit(new ColumnReader(share)));
+            }
+
+            int tableCount = 0;
+            for (Future<Integer> future : futures) {
+                tableCount += future.get();
+                LOG.info("data source '" + dataSourceName + "': read columns of " + tableCount + "/"
+                        + allTables.size() + " tables");
+            }
+            return catalog;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MetaException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof MetaException)
+                throw (MetaException) cause;
+            throw new MetaException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void bindConnection() throws SQLException {
+        boundConnection.set(DriverManager.getConnection(connectionString));
+    }
+
+    private void unbindConnection() {
+        Connection conn = boundConnection.get();
+        boundConnection.remove();
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException ignore) { }
+        }
+    }
+
+    private final class ColumnReader implements Callable<Integer> {
+        private final List<Table> tables;
+
+        ColumnReader(List<Table> tables) {
+            this.tables = tables;
+        }
+
+        @Override
+        public Integer call() throws Exception {
+            bindConnection();
+            try {
+                // columns are loaded lazily; load them while connected
+                for (Table table : tables)
+                    table.getColumns();
+            } finally {
+                unbindConnection();
+            }
+
+            LOG.debug("data source '" + dataSourceName + "': read columns of " + tables.size() + " tables");
+            return tables.size();
+        }
+    }
+
+    /*
+     * Hands out a connection which forwards to the one bound to the thread
+     * using it. MetaModel asks for a connection whenever columns are read,
+     * even if they are loaded already, and closes it after every use; the
+     * bound connection is closed only when it is unbound.
+     */
+    private final class BoundDataSource implements DataSource {
+        @Override
+        public Connection getConnection() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] {Connection.class}, new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            switch (method.getName()) {
+                            case "close":
+                                return null;
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "toString":
+                                return "connection bound to a thread of data source '" + dataSourceName + "'";
+                            default:
+                                break;
+                            }
+
+                            Connection conn = boundConnection.get();
+                            if (conn == null)
+                                throw new SQLException("no connection is bound to the current thread");
+                            try {
+                                return method.invoke(conn, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        }
+                    });
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) {
+            return getConnection();
+        }
+
+        @Override
+        public PrintWriter getLogWriter() {
+            return null;
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) { }
+
+        @Override
+        public void setLoginTimeout(int seconds) { }
+
+        @Override
+        public int getLoginTimeout() {
+            return 0;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            throw new SQLException("not a wrapper");
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) {
+            return false;
+        }
+    }
+}
@@ -51,6 +51,10 @@ public final class MDataSource implements MetaDataSource {
     @Column(length = MetaConstants.COMMENT_MAX)
     private String comment;
 
+    @Persistent
+    @Column(length = MetaConstants.POOL_OPTIONS_MAX)
+    private String poolOptions;
+
     @Persistent(mappedBy = "dataSource", dependentElement = "true")
     private Collection<MSchema> schemas;
 
@@ -60,6 +64,7 @@ public final class MDataSource implements MetaDataSource {
         this.connectionString = connectionString;
         this.dataSourceType = dataSourceType;
         comment = "";
+        poolOptions = "";
     }
 
     @Override
@@ -91,6 +96,16 @@ public final class MDataSource implements MetaDataSource {
         this.comment = comment;
     }
 
+    @Override
+    public String getPoolOptions() {
+        // data sources stored before the column existed have no options
+        return poolOptions == null ? "" : poolOptions;
+    }
+
+    public void setPoolOptions(String poolOptions) {
+        this.poolOptions = poolOptions;
+    }
+
     @Override
     public Collection<MetaSchema> getSchemas() {
         return new ArrayList<MetaSchema>(schemas);
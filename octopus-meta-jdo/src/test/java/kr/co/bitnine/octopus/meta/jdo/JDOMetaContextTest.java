@@ -176,6 +176,31 @@ public class JDOMetaContextTest
         metaContext.getDataSource(memDbData.name);
     }
 
+    @Test
+    public void testAddJdbcDataSourceOfManyTables() throws Exception
+    {
+        // more tables than import threads, not divisible by them
+        final int tableCount = 23;
+        final int columnCount = 3;
+
+        MemoryDatabase memDbMany = new MemoryDatabase("many");
+        memDbMany.start();
+        StringBuilder columns = new StringBuilder();
+        for (int i = 0; i < columnCount; i++)
+            columns.append(i == 0 ? "" : ", ").append("\"c").append(i).append("\" VARCHAR(32)");
+        for (int i = 0; i < tableCount; i++)
+            memDbMany.runExecuteUpdate("CREATE TABLE \"t" + i + "\" (" + columns + ")");
+
+        metaContext.addJdbcDataSource(MemoryDatabase.DRIVER_NAME, memDbMany.connectionString, memDbMany.name);
+
+        MetaSchema schema = metaContext.getDataSource(memDbMany.name).getSchemas().iterator().next();
+        assertEquals(tableCount, schema.getTables().size());
+        for (MetaTable table : schema.getTables())
+            assertEquals(columnCount, table.getColumns().size());
+
+        memDbMany.stop();
+    }
+
     @Test
     public void testGetDataSourceFail() throws Exception
     {
@@ -282,10 +307,9 @@ public class JDOMetaContextTest
         assertEquals(objPrivSet, metaContext.getSchemaPrivilege(schemaName, junseok.getName()).getObjectPrivileges());
 
         metaContext.removeObjectPrivileges(
-                Arrays.asList(ObjectPrivilege.SELECT),
+                Arrays.asList(ObjectPrivilege.SELECT, ObjectPrivilege.INSERT),
                 schemaName,
                 Arrays.asList(octopus.getName(), junseok.getName()));
-        objPrivSet.remove(ObjectPrivilege.COMMENT);
 
         assertNull(metaContext.getSchemaPrivilege(schemaName, octopus.getName()));
         assertNull(metaContext.getSchemaPrivilege(schemaName, junseok.getName()));
@@ -0,0 +1,87 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.meta.jdo;
+
+import kr.co.bitnine.octopus.meta.MetaContext;
+import kr.co.bitnine.octopus.meta.MetaStore;
+import kr.co.bitnine.octopus.meta.logs.StdoutUpdateLoggerFactory;
+import kr.co.bitnine.octopus.testutils.MemoryDatabase;
+
+import java.util.Properties;
+
+/*
+ * Measures how long ADD DATASOURCE takes to import a data source of many
+ * tables with different numbers of import threads. This is not run as a
+ * unit test.
+ *
+ *   java -cp target/test-classes:target/classes:<dependencies> \
+ *       kr.co.bitnine.octopus.meta.jdo.JdbcCatalogImportBenchmark
+ */
+public final class JdbcCatalogImportBenchmark {
+    private static final int TABLE_COUNT = 500;
+    private static final int COLUMN_COUNT = 8;
+    private static final int[] THREADS = {1, 2, 4, 8};
+    private static final int ROUNDS = 3;
+
+    private JdbcCatalogImportBenchmark() { }
+
+    public static void main(String[] args) throws Exception {
+        MemoryDatabase memDbData = new MemoryDatabase("large");
+        memDbData.start();
+        StringBuilder columns = new StringBuilder();
+        for (int i = 0; i < COLUMN_COUNT; i++)
+            columns.append(i == 0 ? "" : ", ").append("\"c").append(i).append("\" VARCHAR(32)");
+        for (int i = 0; i < TABLE_COUNT; i++)
+            memDbData.runExecuteUpdate("CREATE TABLE \"t" + i + "\" (" + columns + ")");
+
+        // warm up
+        run(memDbData, THREADS[THREADS.length - 1]);
+
+        for (int threads : THREADS) {
+            long best = Long.MAX_VALUE;
+            for (int r = 0; r < ROUNDS; r++)
+                best = Math.min(best, run(memDbData, threads));
+            System.out.println(String.format("threads %2d: imported %d tables with %d columns in %5d ms",
+                    threads, TABLE_COUNT, COLUMN_COUNT, best));
+        }
+
+        memDbData.stop();
+    }
+
+    private static long run(MemoryDatabase memDbData, int threads) throws Exception {
+        MemoryDatabase memDbMeta = new MemoryDatabase("meta");
+        memDbMeta.start();
+
+        MetaStore metaStore = new JDOMetaStore();
+        Properties conf = new Properties();
+        conf.setProperty("metastore.jdo.connection.drivername", MemoryDatabase.DRIVER_NAME);
+        conf.setProperty("metastore.jdo.connection.URL", memDbMeta.connectionString);
+        conf.setProperty("metastore.jdo.connection.username", "");
+        conf.setProperty("metastore.jdo.connection.password", "");
+        conf.setProperty("metastore.jdo.import.threads", String.valueOf(threads));
+        metaStore.start(conf, new StdoutUpdateLoggerFactory());
+
+        MetaContext metaContext = metaStore.getMetaContext();
+        try {
+            long start = System.nanoTime();
+            metaContext.addJdbcDataSource(MemoryDatabase.DRIVER_NAME, memDbData.connectionString, memDbData.name);
+            return (System.nanoTime() - start) / 1000000;
+        } finally {
+            metaContext.close();
+            metaStore.stop();
+            memDbMeta.stop();
+        }
+    }
+}
@@ -62,6 +62,8 @@ public interface MetaContext {
 
     void commentOnDataSource(String comment, String name) throws MetaException;
 
+    void setDataSourcePoolOptions(String name, String poolOptions) throws MetaException;
+
     Collection<MetaDataSource> getDataSources() throws MetaException;
 
     Collection<ResultOfGetColumns> getColumns(String datasourceName, final String schemaRegex, final String tableRegex, final String columnRegex) throws MetaException;
@@ -21,6 +21,7 @@ public final class MetaConstants {
     public static final int DATACATEGORY_MAX = 64;
     public static final int IDENTIFIER_MAX = 128;
     public static final int PASSWORD_MAX = 64;
+    public static final int POOL_OPTIONS_MAX = 256;
 
     private MetaConstants() { }
 }
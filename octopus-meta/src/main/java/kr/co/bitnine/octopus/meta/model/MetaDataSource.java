@@ -33,5 +33,7 @@ public interface MetaDataSource {
 
     String getComment();
 
+    String getPoolOptions();
+
     Collection<MetaSchema> getSchemas();
 }
@@ -16,5 +16,6 @@ package kr.co.bitnine.octopus.meta.privilege;
 
 public enum ObjectPrivilege {
     SELECT,
-    COMMENT
+    COMMENT,
+    INSERT
 }
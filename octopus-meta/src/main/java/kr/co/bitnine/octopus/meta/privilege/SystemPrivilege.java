@@ -22,5 +22,6 @@ public enum SystemPrivilege {
     DROP_USER,
     COMMENT_ANY,
     GRANT_ANY_OBJECT_PRIVILEGE,
-    GRANT_ANY_PRIVILEGE
+    GRANT_ANY_PRIVILEGE,
+    INSERT_ANY_TABLE
 }
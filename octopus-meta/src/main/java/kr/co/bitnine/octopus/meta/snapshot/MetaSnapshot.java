@@ -0,0 +1,621 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.meta.snapshot;
+
+import kr.co.bitnine.octopus.meta.MetaContext;
+import kr.co.bitnine.octopus.meta.MetaException;
+import kr.co.bitnine.octopus.meta.model.MetaColumn;
+import kr.co.bitnine.octopus.meta.model.MetaDataSource;
+import kr.co.bitnine.octopus.meta.model.MetaSchema;
+import kr.co.bitnine.octopus.meta.model.MetaSchemaPrivilege;
+import kr.co.bitnine.octopus.meta.model.MetaTable;
+import kr.co.bitnine.octopus.meta.model.MetaUser;
+import kr.co.bitnine.octopus.meta.privilege.ObjectPrivilege;
+import kr.co.bitnine.octopus.meta.privilege.SystemPrivilege;
+import kr.co.bitnine.octopus.meta.result.ResultOfGetColumns;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable in-memory copy of users, privileges and data sources (with
+ * their schemas, tables and columns) read from a {@link MetaContext}.
+ * A new snapshot with a higher version is derived after every change.
+ */
+public final class MetaSnapshot {
+    private final long version;
+    private final Map<String, SnapshotUser> users;
+    private final Map<String, SnapshotDataSource> dataSources;
+    // user name -> [data source name, schema name] -> privilege
+    private final Map<String, Map<List<String>, SnapshotSchemaPrivilege>> schemaPrivileges;
+    // users whose credentials or privileges must be read again before use,
+    // with the version in which they are invalidated
+    private final Map<String, Long> staleUsers;
+
+    private MetaSnapshot(long version, Map<String, SnapshotUser> users,
+                         Map<String, SnapshotDataSource> dataSources,
+                         Map<String, Map<List<String>, SnapshotSchemaPrivilege>> schemaPrivileges,
+                         Map<String, Long> staleUsers) {
+        this.version = version;
+        this.users = users;
+        this.dataSources = dataSources;
+        this.schemaPrivileges = schemaPrivileges;
+        this.staleUsers = staleUsers;
+    }
+
+    static MetaSnapshot build(MetaContext mc) throws MetaException {
+        Map<String, SnapshotDataSource> dataSources = new TreeMap<>();
+        for (MetaDataSource ds : mc.getDataSources())
+            dataSources.put(ds.getName(), new SnapshotDataSource(ds));
+
+        Map<String, SnapshotUser> users = new HashMap<>();
+        Map<String, Map<List<String>, SnapshotSchemaPrivilege>> schemaPrivileges = new HashMap<>();
+        Map<String, Long> staleUsers = new HashMap<>();
+        for (UserData user : readUsers(mc))
+            applyUser(user, 0, dataSources, users, schemaPrivileges, staleUsers);
+
+        return new MetaSnapshot(0, users, dataSources, schemaPrivileges, Collections.unmodifiableMap(staleUsers));
+    }
+
+    /*
+     * Reading the metastore and deriving a snapshot are separate steps so
+     * that the former does not need to be serialized. What is read is
+     * applied to whichever snapshot is current at the time.
+     */
+
+    static UserData readUser(MetaContext mc, String name) throws MetaException {
+        if (!mc.userExists(name))
+            return new UserData(name, null, null);
+        return new UserData(name, new SnapshotUser(mc.getUser(name)),
+                mc.getSchemaPrivilegesByUser(name));
+    }
+
+    static Collection<UserData> readUsers(MetaContext mc) throws MetaException {
+        List<UserData> users = new ArrayList<>();
+        for (MetaUser user : mc.getUsers()) {
+            users.add(new UserData(user.getName(), new SnapshotUser(user),
+                    mc.getSchemaPrivilegesByUser(user.getName())));
+        }
+        return users;
+    }
+
+    // null if the data source does not exist
+    static MetaDataSource readDataSource(MetaContext mc, String name) throws MetaException {
+        if (!mc.dataSourceExists(name))
+            return null;
+        return new SnapshotDataSource(mc.getDataSource(name));
+    }
+
+    /*
+     * Only the users which are stale in staleUsersRead are applied, unless
+     * they are invalidated again since; they stay stale. The others may
+     * have been refreshed with newer data in the meantime.
+     */
+    MetaSnapshot withUsers(Collection<UserData> usersRead, Map<String, Long> staleUsersRead) {
+        Map<String, UserData> readByName = new HashMap<>();
+        for (UserData user : usersRead)
+            readByName.put(user.name, user);
+        Set<String> names = new HashSet<>(readByName.keySet());
+        names.addAll(users.keySet());
+
+        Map<String, SnapshotUser> newUsers = new HashMap<>(users);
+        Map<String, Map<List<String>, SnapshotSchemaPrivilege>> newSchemaPrivileges = new HashMap<>(schemaPrivileges);
+        Map<String, Long> newStaleUsers = new HashMap<>(staleUsers);
+        for (String name : names) {
+            Long staleVersion = staleUsers.get(name);
+            if (staleVersion == null || !staleVersion.equals(staleUsersRead.get(name)))
+                continue;
+
+            UserData user = readByName.get(name);
+            if (user == null)
+                user = new UserData(name, null, null);
+            applyUser(user, version + 1, dataSources, newUsers, newSchemaPrivileges, newStaleUsers);
+        }
+
+        return new MetaSnapshot(version + 1, newUsers, dataSources, newSchemaPrivileges,
+                Collections.unmodifiableMap(newStaleUsers));
+    }
+
+    MetaSnapshot withUsersInvalidated(Collection<String> names) {
+        Map<String, Long> newStaleUsers = new HashMap<>(staleUsers);
+        for (String name : names)
+            newStaleUsers.put(name, version + 1);
+        return new MetaSnapshot(version + 1, users, dataSources, schemaPrivileges,
+                Collections.unmodifiableMap(newStaleUsers));
+    }
+
+    MetaSnapshot withAllUsersInvalidated() {
+        return withUsersInvalidated(users.keySet());
+    }
+
+    // user is read after the user is invalidated in the version staleVersion
+    MetaSnapshot withUser(UserData user, long staleVersion) {
+        Long current = staleUsers.get(user.name);
+        if (current == null || current != staleVersion)
+            return this;
+
+        Map<String, SnapshotUser> newUsers = new HashMap<>(users);
+        Map<String, Map<List<String>, SnapshotSchemaPrivilege>> newSchemaPrivileges = new HashMap<>(schemaPrivileges);
+        Map<String, Long> newStaleUsers = new HashMap<>(staleUsers);
+        applyUser(user, version + 1, dataSources, newUsers, newSchemaPrivileges, newStaleUsers);
+        return new MetaSnapshot(version + 1, newUsers, dataSources, newSchemaPrivileges,
+                Collections.unmodifiableMap(newStaleUsers));
+    }
+
+    /*
+     * Serves the user as read to a single lookup when it cannot be
+     * published because the user is invalidated again meanwhile. The
+     * user stays stale in the returned snapshot, which must not be shared.
+     */
+    MetaSnapshot withUserRead(UserData user) {
+        Map<String, SnapshotUser> newUsers = new HashMap<>(users);
+        Map<String, Map<List<String>, SnapshotSchemaPrivilege>> newSchemaPrivileges = new HashMap<>(schemaPrivileges);
+        applyUser(user, version, dataSources, newUsers, newSchemaPrivileges, new HashMap<>(staleUsers));
+        return new MetaSnapshot(version, newUsers, dataSources, newSchemaPrivileges, staleUsers);
+    }
+
+    /*
+     * A privilege on a schema which this snapshot does not have yet (its
+     * data source is being added) keeps the user stale to read it again.
+     */
+    private static void applyUser(UserData user, long newVersion, Map<String, SnapshotDataSource> dataSources,
+                                  Map<String, SnapshotUser> newUsers,
+                                  Map<String, Map<List<String>, SnapshotSchemaPrivilege>> newSchemaPrivileges,
+                                  Map<String, Long> newStaleUsers) {
+        if (user.user == null) {
+            newUsers.remove(user.name);
+            newSchemaPrivileges.remove(user.name);
+            newStaleUsers.remove(user.name);
+            return;
+        }
+
+        boolean linked = true;
+        Map<List<String>, SnapshotSchemaPrivilege> privs = new HashMap<>();
+        for (Map.Entry<List<String>, Set<ObjectPrivilege>> e : user.schemaPrivileges.entrySet()) {
+            SnapshotSchema schema = findSchema(dataSources, e.getKey());
+            if (schema == null)
+                linked = false;
+            else
+                privs.put(e.getKey(), new SnapshotSchemaPrivilege(schema, e.getValue()));
+        }
+        newUsers.put(user.name, user.user);
+        newSchemaPrivileges.put(user.name, privs);
+        if (linked)
+            newStaleUsers.remove(user.name);
+        else
+            newStaleUsers.put(user.name, newVersion);
+    }
+
+    private static SnapshotSchema findSchema(Map<String, SnapshotDataSource> dataSources, List<String> key) {
+        SnapshotDataSource ds = dataSources.get(key.get(0));
+        return ds == null ? null : ds.schemas.get(key.get(1));
+    }
+
+    /*
+     * Privileges on the schemas of the data source are re-linked to the
+     * new schemas, and dropped with the schemas removed; the metastore
+     * drops them too.
+     */
+    MetaSnapshot withDataSource(String name, MetaDataSource dataSourceRead) {
+        Map<String, SnapshotDataSource> newDataSources = new TreeMap<>(dataSources);
+        if (dataSourceRead == null)
+            newDataSources.remove(name);
+        else
+            newDataSources.put(name, (SnapshotDataSource) dataSourceRead);
+
+        Map<String, Map<List<String>, SnapshotSchemaPrivilege>> newSchemaPrivileges = new HashMap<>();
+        for (Map.Entry<String, Map<List<String>, SnapshotSchemaPrivilege>> e : schemaPrivileges.entrySet()) {
+            Map<List<String>, SnapshotSchemaPrivilege> privs = e.getValue();
+            Map<List<String>, SnapshotSchemaPrivilege> newPrivs = null;
+            for (Map.Entry<List<String>, SnapshotSchemaPrivilege> p : privs.entrySet()) {
+                if (!name.equals(p.getKey().get(0)))
+                    continue;
+                if (newPrivs == null)
+                    newPrivs = new HashMap<>(privs);
+
+                SnapshotSchema schema = findSchema(newDataSources, p.getKey());
+                if (schema == null)
+                    newPrivs.remove(p.getKey());
+                else
+                    newPrivs.put(p.getKey(), new SnapshotSchemaPrivilege(schema, p.getValue().objectPrivileges));
+            }
+            newSchemaPrivileges.put(e.getKey(), newPrivs == null ? privs : newPrivs);
+        }
+
+        return new MetaSnapshot(version + 1, users, newDataSources, newSchemaPrivileges, staleUsers);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    boolean isUserStale(String name) {
+        return staleUsers.containsKey(name);
+    }
+
+    // null if the user is not stale
+    Long getStaleVersion(String name) {
+        return staleUsers.get(name);
+    }
+
+    Map<String, Long> getStaleUsers() {
+        return staleUsers;
+    }
+
+    boolean hasStaleUsers() {
+        return !staleUsers.isEmpty();
+    }
+
+    boolean userExists(String name) {
+        return users.containsKey(name);
+    }
+
+    MetaUser getUser(String name) throws MetaException {
+        MetaUser user = users.get(name);
+        if (user == null)
+            throw new MetaException("user '" + name + "' does not exist");
+        return user;
+    }
+
+    Collection<MetaUser> getUsers() {
+        return new ArrayList<MetaUser>(users.values());
+    }
+
+    boolean dataSourceExists(String name) {
+        return dataSources.containsKey(name);
+    }
+
+    // null if the data source does not exist
+    MetaDataSource findDataSource(String name) {
+        return dataSources.get(name);
+    }
+
+    MetaDataSource getDataSource(String name) throws MetaException {
+        MetaDataSource ds = dataSources.get(name);
+        if (ds == null)
+            throw new MetaException("data source '" + name + "' does not exist");
+        return ds;
+    }
+
+    Collection<MetaDataSource> getDataSources() {
+        return new ArrayList<MetaDataSource>(dataSources.values());
+    }
+
+    MetaSchemaPrivilege getSchemaPrivilege(String[] schemaName, String userName) {
+        Map<List<String>, SnapshotSchemaPrivilege> privs = schemaPrivileges.get(userName);
+        return privs == null ? null : privs.get(Arrays.asList(schemaName));
+    }
+
+    Collection<MetaSchemaPrivilege> getSchemaPrivilegesByUser(String userName) {
+        Map<List<String>, SnapshotSchemaPrivilege> privs = schemaPrivileges.get(userName);
+        if (privs == null)
+            return new ArrayList<>();
+        return new ArrayList<MetaSchemaPrivilege>(privs.values());
+    }
+
+    // ordered by data source, schema and table name like the metastore does
+    Collection<ResultOfGetColumns> getColumns(String dataSourceName, String schemaRegex,
+                                              String tableRegex, String columnRegex) {
+        List<ResultOfGetColumns> results = new ArrayList<>();
+        for (SnapshotDataSource ds : dataSources.values()) {
+            if (dataSourceName != null && !dataSourceName.equals(ds.name))
+                continue;
+            for (SnapshotSchema schema : ds.schemas.values()) {
+                if (schemaRegex != null && !schema.name.matches(schemaRegex))
+                    continue;
+                for (SnapshotTable table : schema.tables.values()) {
+                    if (tableRegex != null && !table.name.matches(tableRegex))
+                        continue;
+                    for (SnapshotColumn column : table.columns) {
+                        if (columnRegex != null && !column.name.matches(columnRegex))
+                            continue;
+
+                        ResultOfGetColumns result = new ResultOfGetColumns();
+                        result.setDataSourceName(ds.name);
+                        result.setSchemaName(schema.name);
+                        result.setTableName(table.name);
+                        result.setColumnName(column.name);
+                        result.setColumnType(column.type);
+                        result.setComment(column.comment);
+                        result.setDataCategory(column.dataCategory);
+                        result.setDataSourceComment(ds.comment);
+                        result.setSchemaComment(schema.comment);
+                        result.setTableComment(table.comment);
+                        results.add(result);
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /*
+     * Privilege sets are copied on the way out because callers may modify
+     * them, and snapshots are shared by all sessions.
+     */
+
+    // a user as read from the metastore, user is null if it does not exist
+    static final class UserData {
+        private final String name;
+        private final SnapshotUser user;
+        private final Map<List<String>, Set<ObjectPrivilege>> schemaPrivileges;
+
+        private UserData(String name, SnapshotUser user, Collection<MetaSchemaPrivilege> schemaPrivs) {
+            this.name = name;
+            this.user = user;
+            schemaPrivileges = new HashMap<>();
+            if (schemaPrivs == null)
+                return;
+            for (MetaSchemaPrivilege schemaPriv : schemaPrivs) {
+                MetaSchema schema = schemaPriv.getSchema();
+                Set<ObjectPrivilege> objPrivs = EnumSet.noneOf(ObjectPrivilege.class);
+                objPrivs.addAll(schemaPriv.getObjectPrivileges());
+                schemaPrivileges.put(Arrays.asList(schema.getDataSource().getName(), schema.getName()), objPrivs);
+            }
+        }
+    }
+
+    private static final class SnapshotUser implements MetaUser {
+        private final String name;
+        private final String password;
+        private final EnumSet<SystemPrivilege> systemPrivileges;
+        private final String comment;
+
+        SnapshotUser(MetaUser user) {
+            name = user.getName();
+            password = user.getPassword();
+            systemPrivileges = EnumSet.noneOf(SystemPrivilege.class);
+            systemPrivileges.addAll(user.getSystemPrivileges());
+            comment = user.getComment();
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getPassword() {
+            return password;
+        }
+
+        @Override
+        public Set<SystemPrivilege> getSystemPrivileges() {
+            return EnumSet.copyOf(systemPrivileges);
+        }
+
+        @Override
+        public String getComment() {
+            return comment;
+        }
+    }
+
+    private static final class SnapshotSchemaPrivilege implements MetaSchemaPrivilege {
+        private final MetaSchema schema;
+        private final EnumSet<ObjectPrivilege> objectPrivileges;
+
+        SnapshotSchemaPrivilege(MetaSchema schema, Set<ObjectPrivilege> objectPrivileges) {
+            this.schema = schema;
+            this.objectPrivileges = EnumSet.noneOf(ObjectPrivilege.class);
+            this.objectPrivileges.addAll(objectPrivileges);
+        }
+
+        @Override
+        public MetaSchema getSchema() {
+            return schema;
+        }
+
+        @Override
+        public Set<ObjectPrivilege> getObjectPrivileges() {
+            return EnumSet.copyOf(objectPrivileges);
+        }
+    }
+
+    private static final class SnapshotDataSource implements MetaDataSource {
+        private final String name;
+        private final String driverName;
+        private final String connectionString;
+        private final DataSourceType dataSourceType;
+        private final String comment;
+        private final String poolOptions;
+        private final Map<String, SnapshotSchema> schemas;
+
+        SnapshotDataSource(MetaDataSource ds) {
+            name = ds.getName();
+            driverName = ds.getDriverName();
+            connectionString = ds.getConnectionString();
+            dataSourceType = ds.getDataSourceType();
+            comment = ds.getComment();
+            poolOptions = ds.getPoolOptions();
+            Map<String, SnapshotSchema> schemaMap = new TreeMap<>();
+            for (MetaSchema schema : ds.getSchemas())
+                schemaMap.put(schema.getName(), new SnapshotSchema(this, schema));
+            schemas = Collections.unmodifiableMap(schemaMap);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getDriverName() {
+            return driverName;
+        }
+
+        @Override
+        public String getConnectionString() {
+            return connectionString;
+        }
+
+        @Override
+        public DataSourceType getDataSourceType() {
+            return dataSourceType;
+        }
+
+        @Override
+        public String getComment() {
+            return comment;
+        }
+
+        @Override
+        public String getPoolOptions() {
+            return poolOptions;
+        }
+
+        @Override
+        public Collection<MetaSchema> getSchemas() {
+            return new ArrayList<MetaSchema>(schemas.values());
+        }
+    }
+
+    private static final class SnapshotSchema implements MetaSchema {
+        private final String name;
+        private final MetaDataSource dataSource;
+        private final String comment;
+        private final Map<String, SnapshotTable> tables;
+
+        SnapshotSchema(MetaDataSource dataSource, MetaSchema schema) {
+            name = schema.getName();
+            this.dataSource = dataSource;
+            comment = schema.getComment();
+            Map<String, SnapshotTable> tableMap = new TreeMap<>();
+            for (MetaTable table : schema.getTables())
+                tableMap.put(table.getName(), new SnapshotTable(this, table));
+            tables = Collections.unmodifiableMap(tableMap);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public MetaDataSource getDataSource() {
+            return dataSource;
+        }
+
+        @Override
+        public String getComment() {
+            return comment;
+        }
+
+        @Override
+        public Collection<MetaTable> getTables() {
+            return new ArrayList<MetaTable>(tables.values());
+        }
+    }
+
+    private static final class SnapshotTable implements MetaTable {
+        private final String name;
+        private final String type;
+        private final MetaSchema schema;
+        private final String comment;
+        private final List<SnapshotColumn> columns;
+
+        SnapshotTable(MetaSchema schema, MetaTable table) {
+            name = table.getName();
+            type = table.getType();
+            this.schema = schema;
+            comment = table.getComment();
+            List<SnapshotColumn> columnList = new ArrayList<>();
+            for (MetaColumn column : table.getColumns())
+                columnList.add(new SnapshotColumn(this, column));
+            columns = Collections.unmodifiableList(columnList);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getType() {
+            return type;
+        }
+
+        @Override
+        public MetaSchema getSchema() {
+            return schema;
+        }
+
+        @Override
+        public String getComment() {
+            return comment;
+        }
+
+        @Override
+        public Collection<MetaColumn> getColumns() {
+            return new ArrayList<MetaColumn>(columns);
+        }
+    }
+
+    private static final class SnapshotColumn implements MetaColumn {
+        private final String name;
+        private final int type;
+        private final int typeInfo;
+        private final MetaTable table;
+        private final String comment;
+        private final String dataCategory;
+
+        SnapshotColumn(MetaTable table, MetaColumn column) {
+            name = column.getName();
+            type = column.getType();
+            typeInfo = column.getTypeInfo();
+            this.table = table;
+            comment = column.getComment();
+            dataCategory = column.getDataCategory();
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int getType() {
+            return type;
+        }
+
+        @Override
+        public int getTypeInfo() {
+            return typeInfo;
+        }
+
+        @Override
+        public MetaTable getTable() {
+            return table;
+        }
+
+        @Override
+        public String getComment() {
+            return comment;
+        }
+
+        @Override
+        public String getDataCategory() {
+            return dataCategory;
+        }
+    }
+}
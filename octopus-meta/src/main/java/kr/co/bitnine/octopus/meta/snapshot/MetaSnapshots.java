@@ -0,0 +1,191 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.meta.snapshot;
+
+import kr.co.bitnine.octopus.meta.MetaContext;
+import kr.co.bitnine.octopus.meta.MetaException;
+import kr.co.bitnine.octopus.meta.MetaStore;
+import kr.co.bitnine.octopus.meta.model.MetaDataSource;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current {@link MetaSnapshot} shared by all sessions. Readers
+ * never lock. Changes read the metastore first and then publish a new
+ * snapshot derived from the current one with compare-and-set, so neither
+ * of them holds a monitor during I/O.
+ *
+ * A user changed by GRANT, REVOKE, ALTER USER and the like is only marked
+ * stale and read again when it is looked up next time. Lookups of users
+ * and privileges are counted as hits, or misses if they had to go to the
+ * metastore.
+ */
+public final class MetaSnapshots {
+    private static final Log LOG = LogFactory.getLog(MetaSnapshots.class);
+
+    private final MetaStore metaStore;
+    private final AtomicReference<MetaSnapshot> current = new AtomicReference<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public MetaSnapshots(MetaStore metaStore) {
+        this.metaStore = metaStore;
+    }
+
+    public MetaSnapshot get() throws MetaException {
+        MetaSnapshot snapshot = current.get();
+        if (snapshot != null)
+            return snapshot;
+
+        MetaContext mc = metaStore.getMetaContext();
+        try {
+            snapshot = MetaSnapshot.build(mc);
+        } finally {
+            mc.close();
+        }
+        if (current.compareAndSet(null, snapshot))
+            LOG.info("metadata snapshot is loaded");
+        return current.get();
+    }
+
+    MetaSnapshot getForUser(MetaContext mc, String name) throws MetaException {
+        MetaSnapshot snapshot = get();
+        if (!snapshot.isUserStale(name)) {
+            hits.incrementAndGet();
+            return snapshot;
+        }
+
+        misses.incrementAndGet();
+        return refreshUser(mc, name);
+    }
+
+    MetaSnapshot getForUsers(MetaContext mc) throws MetaException {
+        MetaSnapshot snapshot = get();
+        if (!snapshot.hasStaleUsers()) {
+            hits.incrementAndGet();
+            return snapshot;
+        }
+
+        misses.incrementAndGet();
+        return refreshUsers(mc);
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /*
+     * If the user is invalidated again while it is read, what is read may
+     * be outdated and the user stays stale. It is still newer than what
+     * the current snapshot has, so this lookup is served with it.
+     */
+    private MetaSnapshot refreshUser(MetaContext mc, String name) throws MetaException {
+        Long staleVersion = get().getStaleVersion(name);
+        if (staleVersion == null)
+            return get();
+
+        MetaSnapshot.UserData user = MetaSnapshot.readUser(mc, name);
+        while (true) {
+            MetaSnapshot snapshot = current.get();
+            MetaSnapshot newSnapshot = snapshot.withUser(user, staleVersion);
+            if (newSnapshot == snapshot) {
+                // already refreshed by another lookup
+                if (!snapshot.isUserStale(name))
+                    return snapshot;
+                return snapshot.withUserRead(user);
+            }
+            if (current.compareAndSet(snapshot, newSnapshot)) {
+                LOG.debug("metadata snapshot version " + newSnapshot.getVersion() + ": user '" + name + "' is refreshed");
+                return newSnapshot;
+            }
+        }
+    }
+
+    private MetaSnapshot refreshUsers(MetaContext mc) throws MetaException {
+        Map<String, Long> staleUsers = get().getStaleUsers();
+        Collection<MetaSnapshot.UserData> users = MetaSnapshot.readUsers(mc);
+        while (true) {
+            MetaSnapshot snapshot = current.get();
+            MetaSnapshot newSnapshot = snapshot.withUsers(users, staleUsers);
+            if (current.compareAndSet(snapshot, newSnapshot)) {
+                LOG.debug("metadata snapshot version " + newSnapshot.getVersion() + ": users are refreshed");
+                return newSnapshot;
+            }
+        }
+    }
+
+    void invalidateUsers(Collection<String> names) throws MetaException {
+        get();
+        while (true) {
+            MetaSnapshot snapshot = current.get();
+            MetaSnapshot newSnapshot = snapshot.withUsersInvalidated(names);
+            if (current.compareAndSet(snapshot, newSnapshot)) {
+                LOG.debug("metadata snapshot version " + newSnapshot.getVersion() + ": users " + names
+                        + " are invalidated (hit rate " + getHitRate() + ")");
+                return;
+            }
+        }
+    }
+
+    void invalidateAllUsers() throws MetaException {
+        get();
+        while (true) {
+            MetaSnapshot snapshot = current.get();
+            MetaSnapshot newSnapshot = snapshot.withAllUsersInvalidated();
+            if (current.compareAndSet(snapshot, newSnapshot)) {
+                LOG.debug("metadata snapshot version " + newSnapshot.getVersion() + ": all users are invalidated");
+                return;
+            }
+        }
+    }
+
+    /*
+     * If another change refreshes the data source while it is read, it is
+     * read again since the other one may have seen newer metadata.
+     */
+    void refreshDataSource(MetaContext mc, String name) throws MetaException {
+        MetaDataSource old = get().findDataSource(name);
+        MetaDataSource dataSource = MetaSnapshot.readDataSource(mc, name);
+        while (true) {
+            MetaSnapshot snapshot = current.get();
+            if (snapshot.findDataSource(name) != old) {
+                old = snapshot.findDataSource(name);
+                dataSource = MetaSnapshot.readDataSource(mc, name);
+                continue;
+            }
+
+            MetaSnapshot newSnapshot = snapshot.withDataSource(name, dataSource);
+            if (current.compareAndSet(snapshot, newSnapshot)) {
+                LOG.debug("metadata snapshot version " + newSnapshot.getVersion() + ": data source '" + name + "' is refreshed");
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package kr.co.bitnine.octopus.meta.snapshot;
+
+import kr.co.bitnine.octopus.meta.MetaContext;
+import kr.co.bitnine.octopus.meta.MetaException;
+import kr.co.bitnine.octopus.meta.model.MetaDataSource;
+import kr.co.bitnine.octopus.meta.model.MetaRole;
+import kr.co.bitnine.octopus.meta.model.MetaSchemaPrivilege;
+import kr.co.bitnine.octopus.meta.model.MetaUser;
+import kr.co.bitnine.octopus.meta.privilege.ObjectPrivilege;
+import kr.co.bitnine.octopus.meta.privilege.SystemPrivilege;
+import kr.co.bitnine.octopus.meta.result.ResultOfGetColumns;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * MetaContext which serves reads from the shared {@link MetaSnapshot}
+ * without touching the metastore, and passes changes to the metastore
+ * through {@code metaContext} and then to the snapshot.
+ */
+public final class SnapshotMetaContext implements MetaContext {
+    private final MetaContext metaContext;
+    private final MetaSnapshots snapshots;
+
+    public SnapshotMetaContext(MetaContext metaContext, MetaSnapshots snapshots) {
+        this.metaContext = metaContext;
+        this.snapshots = snapshots;
+    }
+
+    @Override
+    public boolean userExists(String name) throws MetaException {
+        return snapshots.getForUser(metaContext, name).userExists(name);
+    }
+
+    @Override
+    public MetaUser getUser(String name) throws MetaException {
+        return snapshots.getForUser(metaContext, name).getUser(name);
+    }
+
+    @Override
+    public MetaUser createUser(String name, String password) throws MetaException {
+        MetaUser user = metaContext.createUser(name, password);
+        snapshots.invalidateUsers(Collections.singletonList(name));
+        return user;
+    }
+
+    @Override
+    public void alterUser(String name, String newPassword) throws MetaException {
+        metaContext.alterUser(name, newPassword);
+        snapshots.invalidateUsers(Collections.singletonList(name));
+    }
+
+    @Override
+    public void dropUser(String name) throws MetaException {
+        metaContext.dropUser(name);
+        snapshots.invalidateUsers(Collections.singletonList(name));
+    }
+
+    @Override
+    public void commentOnUser(String comment, String name) throws MetaException {
+        metaContext.commentOnUser(comment, name);
+        snapshots.invalidateUsers(Collections.singletonList(name));
+    }
+
+    @Override
+    public Collection<MetaUser> getUsers() throws MetaException {
+        return snapshots.getForUsers(metaContext).getUsers();
+    }
+
+    @Override
+    public boolean dataSourceExists(String name) throws MetaException {
+        return snapshots.get().dataSourceExists(name);
+    }
+
+    @Override
+    public MetaDataSource getDataSource(String name) throws MetaException {
+        return snapshots.get().getDataSource(name);
+    }
+
+    @Override
+    public MetaDataSource addJdbcDataSource(String driverName, String connectionString, String name) throws MetaException {
+        MetaDataSource dataSource = metaContext.addJdbcDataSource(driverName, connectionString, name);
+        snapshots.refreshDataSource(metaContext, name);
+        return dataSource;
+    }
+
+    @Override
+    public MetaDataSource addMetaModelDataSource(String driverName, String connectionString, String name) throws MetaException {
+        MetaDataSource dataSource = metaContext.addMetaModelDataSource(driverName, connectionString, name);
+        snapshots.refreshDataSource(metaContext, name);
+        return dataSource;
+    }
+
+    @Override
+    public void dropJdbcDataSource(String name) throws MetaException {
+        metaContext.dropJdbcDataSource(name);
+        snapshots.refreshDataSource(metaContext, name);
+    }
+
+    @Override
+    public MetaDataSource updateJdbcDataSource(String dataSourceName, String schemaRegex, String tableRegex) throws MetaException {
+        MetaDataSource dataSource = metaContext.updateJdbcDataSource(dataSourceName, schemaRegex, tableRegex);
+        snapshots.refreshDataSource(metaContext, dataSourceName);
+        return dataSource;
+    }
+
+    @Override
+    public void commentOnDataSource(String comment, String name) throws MetaException {
+        metaContext.commentOnDataSource(comment, name);
+        snapshots.refreshDataSource(metaContext, name);
+    }
+
+    @Override
+    public void setDataSourcePoolOptions(String name, String poolOptions) throws MetaException {
+        metaContext.setDataSourcePoolOptions(name, poolOptions);
+        snapshots.refreshDataSource(metaContext, name);
+    }
+
+    @Override
+    public Collection<MetaDataSource> getDataSources() throws MetaException {
+        return snapshots.get().getDataSources();
+    }
+
+    @Override
+    public Collection<ResultOfGetColumns> getColumns(String datasourceName, String schemaRegex, String tableRegex, String columnRegex) throws MetaException {
+        return snapshots.get().getColumns(datasourceName, schemaRegex, tableRegex, columnRegex);
+    }
+
+    @Override
+    public void commentOnSchema(String comment, String dataSourceName, String schemaName) throws MetaException {
+        metaContext.commentOnSchema(comment, dataSourceName, schemaName);
+        snapshots.refreshDataSource(metaContext, dataSourceName);
+    }
+
+    @Override
+    public void commentOnTable(String comment, String dataSourceName, String schemaName, String tableName) throws MetaException {
+        metaContext.commentOnTable(comment, dataSourceName, schemaName, tableName);
+        snapshots.refreshDataSource(metaContext, dataSourceName);
+    }
+
+    @Override
+    public void commentOnColumn(String comment, String dataSourceName, String schemaName, String tableName, String columnName) throws MetaException {
+        metaContext.commentOnColumn(comment, dataSourceName, schemaName, tableName, columnName);
+        snapshots.refreshDataSource(metaContext, dataSourceName);
+    }
+
+    @Override
+    public void setDataCategoryOn(String category, String dataSource, String schema, String table, String column) throws MetaException {
+        metaContext.setDataCategoryOn(category, dataSource, schema, table, column);
+        snapshots.refreshDataSource(metaContext, dataSource);
+    }
+
+    @Override
+    public MetaRole createRole(String name) throws MetaException {
+        return metaContext.createRole(name);
+    }
+
+    @Override
+    public void dropRoleByName(String name) throws MetaException {
+        metaContext.dropRoleByName(name);
+        snapshots.invalidateAllUsers();
+    }
+
+    @Override
+    public void addSystemPrivileges(List<SystemPrivilege> sysPrivs, List<String> userNames) throws MetaException {
+        metaContext.addSystemPrivileges(sysPrivs, userNames);
+        snapshots.invalidateUsers(userNames);
+    }
+
+    @Override
+    public void removeSystemPrivileges(List<SystemPrivilege> sysPrivs, List<String> userNames) throws MetaException {
+        metaContext.removeSystemPrivileges(sysPrivs, userNames);
+        snapshots.invalidateUsers(userNames);
+    }
+
+    @Override
+    public MetaSchemaPrivilege getSchemaPrivilege(String[] schemaName, String userName) throws MetaException {
+        return snapshots.getForUser(metaContext, userName).getSchemaPrivilege(schemaName, userName);
+    }
+
+    @Override
+    public Collection<MetaSchemaPrivilege> getSchemaPrivilegesByUser(String userName) throws MetaException {
+        return snapshots.getForUser(metaContext, userName).getSchemaPrivilegesByUser(userName);
+    }
+
+    @Override
+    public void addObjectPrivileges(List<ObjectPrivilege> objPrivs, String[] schemaName, List<String> userNames) throws MetaException {
+        metaContext.addObjectPrivileges(objPrivs, schemaName, userNames);
+        snapshots.invalidateUsers(userNames);
+    }
+
+    @Override
+    public void removeObjectPrivileges(List<ObjectPrivilege> objPrivs, String[] schemaName, List<String> userNames) throws MetaException {
+        metaContext.removeObjectPrivileges(objPrivs, schemaName, userNames);
+        snapshots.invalidateUsers(userNames);
+    }
+
+    @Override
+    public void close() {
+        metaContext.close();
+    }
+}